@@ -0,0 +1,77 @@
+package bank.benchmarks;
+
+import bank.InsufficientFundsException;
+import bank.SavingsAccount;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Account.deposit/withdraw, including building the log line and queueing it to the
+// (best-effort) async logger. "own" gives each thread its own account; "shared" has all
+// threads hit the same one, so it also measures the account lock under contention.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Logging {
+        @Setup(Level.Trial)
+        public void start() { Fixtures.quietLogging(); }
+
+        @TearDown(Level.Trial)
+        public void stop() {
+            Fixtures.stopLogging();
+            Fixtures.deleteAll();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Own {
+        SavingsAccount account;
+
+        @Setup(Level.Trial)
+        public void setUp(Logging logging) {
+            account = new SavingsAccount("00000001", "Bench", Long.MAX_VALUE / 4, 0.04);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+        SavingsAccount account;
+
+        @Setup(Level.Trial)
+        public void setUp(Logging logging) {
+            account = new SavingsAccount("00000002", "Bench", Long.MAX_VALUE / 4, 0.04);
+        }
+    }
+
+    @Benchmark
+    public void depositOwn(Own s) {
+        s.account.depositCents(1_00);
+    }
+
+    @Benchmark
+    public void depositDouble(Own s) {
+        s.account.deposit(1.00);
+    }
+
+    @Benchmark
+    public void withdrawOwn(Own s) throws InsufficientFundsException {
+        s.account.withdrawCents(1_00);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void depositShared(Shared s) {
+        s.account.depositCents(1_00);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void withdrawShared(Shared s) throws InsufficientFundsException {
+        s.account.withdrawCents(1_00);
+    }
+}
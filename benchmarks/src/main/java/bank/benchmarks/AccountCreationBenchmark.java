@@ -0,0 +1,44 @@
+package bank.benchmarks;
+
+import bank.BankSystem;
+import bank.PersistenceMode;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// createAccountForUserCents end to end: account number allocation and the uniqueness
+// check, the owner/customer bookkeeping, and the journal append. Checkpoints are pushed
+// out of the measurement so the growing snapshot doesn't skew later iterations.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-Dbank.journal.checkpointEvery=2000000000"})
+@State(Scope.Benchmark)
+public class AccountCreationBenchmark {
+    private BankSystem bank;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Fixtures.quietLogging();
+        bank = Fixtures.newBank("bankdata.dat", PersistenceMode.JOURNAL);
+        bank.createUser("bench", "Bench", "pw", "customer");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Fixtures.stopLogging();
+        Fixtures.deleteAll();
+    }
+
+    @Benchmark
+    public String createAccount() {
+        return bank.createAccountForUserCents("bench", "savings", 0);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String createAccountContended() {
+        return bank.createAccountForUserCents("bench", "current", 0);
+    }
+}
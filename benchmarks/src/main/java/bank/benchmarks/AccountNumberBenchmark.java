@@ -0,0 +1,47 @@
+package bank.benchmarks;
+
+import bank.AccountNumberAllocator;
+import bank.BlockAccountNumberAllocator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+// Account number allocation on its own, uncontended and with 8 threads opening accounts
+// at once. The block size trades file syncs (one per block) against numbers lost on restart.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccountNumberBenchmark {
+    @Param({"100", "1000", "10000"})
+    public int blockSize;
+
+    private AccountNumberAllocator allocator;
+
+    // fresh per iteration so a fast run can't use up the 9-digit sequence
+    @Setup(Level.Iteration)
+    public void setUp() {
+        File seq = new File(Fixtures.dir(), "numbers-" + blockSize + ".seq");
+        seq.delete();
+        allocator = new BlockAccountNumberAllocator(seq, 0, blockSize, Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Fixtures.deleteAll();
+    }
+
+    @Benchmark
+    public String next() {
+        return allocator.next();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String nextContended() {
+        return allocator.next();
+    }
+}
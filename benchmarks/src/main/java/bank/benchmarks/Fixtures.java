@@ -0,0 +1,84 @@
+package bank.benchmarks;
+
+import bank.AsyncLogWriter;
+import bank.BankSystem;
+import bank.CurrentAccount;
+import bank.Customer;
+import bank.PersistenceMode;
+import bank.SavingsAccount;
+import bank.TransactionLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.Map;
+
+// Shared setup. Every benchmark fork gets its own temp directory, and the transaction log is
+// pointed there before TransactionLogger is first touched (it reads bank.log.file and
+// bank.events.file once).
+final class Fixtures {
+    private static File dir;
+
+    private Fixtures() {}
+
+    static synchronized File dir() {
+        if (dir == null) {
+            try {
+                dir = Files.createTempDirectory("bank-jmh").toFile();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            System.setProperty("bank.log.file", new File(dir, "transactions.log").getPath());
+            System.setProperty("bank.events.file", new File(dir, "transactions.evt").getPath());
+        }
+        return dir;
+    }
+
+    static File logFile() {
+        return new File(dir(), "transactions.log");
+    }
+
+    // lossy background logging, so benchmarks of other paths aren't dominated by log I/O
+    static void quietLogging() {
+        dir();
+        TransactionLogger.startAsync(AsyncLogWriter.Durability.BEST_EFFORT, 65536, 1024, 100);
+    }
+
+    static void stopLogging() {
+        TransactionLogger.stopAsync();
+    }
+
+    static BankSystem newBank(String name, PersistenceMode mode) {
+        File data = new File(dir(), name);
+        data.delete();
+        new File(data.getPath() + ".wal").delete();
+        return new BankSystem(data.getPath(), mode);
+    }
+
+    // Puts customers and accounts straight into the maps (four accounts per customer), skipping
+    // the per-account journal/snapshot writes that would make a million-account setup take hours.
+    static void populate(BankSystem bank, int accounts) {
+        Map<String, Customer> users = bank.getUsers();
+        Map<String, bank.Account> accts = bank.getAccounts();
+        Customer owner = null;
+        for (int i = 0; i < accounts; i++) {
+            if (i % 4 == 0) {
+                owner = new Customer("C" + i, "Customer " + i, "pw" + i, "customer");
+                users.put(owner.getUserId(), owner);
+            }
+            String acctNo = String.format("%08x", i);
+            accts.put(acctNo, i % 2 == 0
+                    ? new SavingsAccount(acctNo, owner.getName(), 1_000_00L + i, 0.04)
+                    : new CurrentAccount(acctNo, owner.getName(), 1_000_00L + i, 500_00));
+            owner.addAccount(acctNo);
+        }
+    }
+
+    static void deleteAll() {
+        File[] files = dir().listFiles();
+        if (files != null) {
+            for (File f : files) f.delete();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package bank.benchmarks;
+
+import bank.LogReader;
+import bank.TransactionLogger;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Reading the transaction log: the old whole-file readLog(), indexing it for paging,
+// random page reads from a warm LogReader, and a statement for one account.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class LogReadBenchmark {
+    @Param({"10000", "1000000"})
+    public int lines;
+
+    private LogReader reader;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        LocalDateTime t = LocalDateTime.of(2025, 1, 1, 0, 0);
+        try (BufferedWriter w = Files.newBufferedWriter(Fixtures.logFile().toPath())) {
+            for (int i = 0; i < lines; i++) {
+                w.write(t.plusNanos(i * 1_000_000L) + " - Deposit: Bench deposited 1.00 to "
+                        + String.format("%08x", i % 1000) + ". New bal=" + i + ".00");
+                w.newLine();
+            }
+        }
+        reader = TransactionLogger.openLog();
+        TransactionLogger.getStatement("00000000", null, null); // build the statement index once
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        reader.close();
+        Fixtures.deleteAll();
+    }
+
+    @Benchmark
+    public String readWholeLog() {
+        return TransactionLogger.readLog();
+    }
+
+    @Benchmark
+    public long indexLog() throws IOException {
+        try (LogReader r = TransactionLogger.openLog()) {
+            return r.getLineCount();
+        }
+    }
+
+    @Benchmark
+    public List<String> randomPage() throws IOException {
+        return reader.readLines(ThreadLocalRandom.current().nextInt(lines), 100);
+    }
+
+    @Benchmark
+    public List<String> tail() throws IOException {
+        return reader.tail(100).getLines();
+    }
+
+    @Benchmark
+    public List<String> statement() throws IOException {
+        return TransactionLogger.getStatement(String.format("%08x", ThreadLocalRandom.current().nextInt(1000)),
+                null, null);
+    }
+}
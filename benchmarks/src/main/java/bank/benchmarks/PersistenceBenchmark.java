@@ -0,0 +1,60 @@
+package bank.benchmarks;
+
+import bank.BankSystem;
+import bank.PersistenceMode;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Full snapshot write (saveState) and read (loadState through the constructor) at
+// different bank sizes and shard counts (-Dbank.shards). Each call is long, so this times
+// single invocations. With more than one shard saveState only rewrites shards changed since
+// the last write, which between these calls is none; depositCents changes one account and
+// so times the rewrite of a single shard (or of the whole file when unsharded).
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class PersistenceBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int accounts;
+
+    @Param({"1", "8"})
+    public int shards;
+
+    private BankSystem bank;
+    private String dataFile;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Fixtures.quietLogging();
+        System.setProperty("bank.shards", String.valueOf(shards));
+        bank = Fixtures.newBank("bankdata.dat", PersistenceMode.SNAPSHOT);
+        Fixtures.populate(bank, accounts);
+        bank.saveState();
+        dataFile = Fixtures.dir() + "/bankdata.dat";
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Fixtures.stopLogging();
+        Fixtures.deleteAll();
+    }
+
+    @Benchmark
+    public void saveState() {
+        bank.saveState();
+    }
+
+    @Benchmark
+    public boolean depositCents() {
+        return bank.depositCents("00000000", 1);
+    }
+
+    @Benchmark
+    public BankSystem loadState() {
+        return new BankSystem(dataFile, PersistenceMode.SNAPSHOT);
+    }
+}
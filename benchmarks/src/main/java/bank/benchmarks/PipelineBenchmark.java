@@ -0,0 +1,64 @@
+package bank.benchmarks;
+
+import bank.BankSystem;
+import bank.PersistenceMode;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Deposits and transfers from eight threads in JOURNAL mode, called directly (account locks,
+// one journal write per change) and through the single-writer command pipeline (one business
+// thread, one journal write per batch). fsync=true forces every journal write, where the
+// pipeline's batching matters most.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class PipelineBenchmark {
+    private static final int ACCOUNTS = 10_000;
+
+    @Param({"direct", "pipeline"})
+    public String path;
+
+    @Param({"false", "true"})
+    public boolean fsync;
+
+    private BankSystem bank;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Fixtures.quietLogging();
+        System.setProperty("bank.journal.fsync", String.valueOf(fsync));
+        bank = Fixtures.newBank("bankdata.dat", PersistenceMode.JOURNAL);
+        Fixtures.populate(bank, ACCOUNTS);
+        bank.saveState();
+        if (path.equals("pipeline")) bank.startPipeline(1 << 14);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        bank.stopPipeline();
+        Fixtures.stopLogging();
+        Fixtures.deleteAll();
+    }
+
+    @Benchmark
+    public boolean deposit() {
+        return bank.depositCents(account(ThreadLocalRandom.current().nextInt(ACCOUNTS)), 1_00);
+    }
+
+    @Benchmark
+    public boolean transfer() {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        return bank.transferCents(account(rnd.nextInt(ACCOUNTS)), account(rnd.nextInt(ACCOUNTS)), 1);
+    }
+
+    // the numbers Fixtures.populate gives its accounts
+    private static String account(int i) {
+        return String.format("%08x", i);
+    }
+}
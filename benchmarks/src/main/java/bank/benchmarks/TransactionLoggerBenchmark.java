@@ -0,0 +1,52 @@
+package bank.benchmarks;
+
+import bank.AsyncLogWriter;
+import bank.EventType;
+import bank.TransactionLogger;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// TransactionLogger.log from eight threads at once, for the synchronous path and the
+// async writer's durability modes (per_entry forces every entry, so it is left out here:
+// it measures the disk, not the logger). event() logs the same deposit as a typed event,
+// rendered to a text line or encoded as a binary record depending on format.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class TransactionLoggerBenchmark {
+    @Param({"direct", "best_effort", "group_commit"})
+    public String mode;
+
+    @Param({"text", "binary"})
+    public String format;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        System.setProperty("bank.log.format", format); // read once, when TransactionLogger is first touched
+        Fixtures.dir();
+        if (!mode.equals("direct")) {
+            TransactionLogger.startAsync(AsyncLogWriter.Durability.valueOf(mode.toUpperCase()), 8192, 256, 50);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Fixtures.stopLogging();
+        Fixtures.deleteAll();
+    }
+
+    @Benchmark
+    public void log() {
+        TransactionLogger.log("Deposit: Bench deposited 1.00 to 0000abcd. New bal=1234.00");
+    }
+
+    @Benchmark
+    public void event() {
+        TransactionLogger.log(EventType.DEPOSIT, "0000abcd", 1_00, 1234_00, "Bench");
+    }
+}
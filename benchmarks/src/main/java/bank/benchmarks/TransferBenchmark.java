@@ -0,0 +1,66 @@
+package bank.benchmarks;
+
+import bank.BankSystem;
+import bank.PersistenceMode;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// BankSystem.transferCents from four threads between random pairs of accounts, each transfer
+// taking both account locks in order and writing one journal record or snapshot. Amounts are
+// large enough that some transfers are refused for want of funds. After the trial the total
+// across all accounts is checked to be unchanged.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class TransferBenchmark {
+    private static final int ACCOUNTS = 10_000;
+
+    @Param({"journal", "snapshot"})
+    public String mode;
+
+    private BankSystem bank;
+    private long total;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Fixtures.quietLogging();
+        bank = Fixtures.newBank("bankdata.dat", PersistenceMode.valueOf(mode.toUpperCase()));
+        Fixtures.populate(bank, ACCOUNTS);
+        bank.saveState();
+        total = total();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        long after = total();
+        Fixtures.stopLogging();
+        Fixtures.deleteAll();
+        if (after != total) throw new IllegalStateException("total changed: " + total + " -> " + after);
+    }
+
+    @Benchmark
+    public boolean transfer() {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        int a = rnd.nextInt(ACCOUNTS);
+        int b = rnd.nextInt(ACCOUNTS - 1);
+        if (b >= a) b++;
+        return bank.transferCents(account(a), account(b), 1 + rnd.nextInt(500_00));
+    }
+
+    private long total() {
+        long sum = 0;
+        for (int i = 0; i < ACCOUNTS; i++) sum += bank.getAccount(account(i)).getBalanceCents();
+        return sum;
+    }
+
+    // the numbers Fixtures.populate gives its accounts
+    private static String account(int i) {
+        return String.format("%08x", i);
+    }
+}
@@ -0,0 +1,228 @@
+package bank;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.concurrent.locks.ReentrantLock;
+
+public abstract class Account implements Serializable {
+    private static final long serialVersionUID = 1L;
+    protected String accountNumber;
+    protected String ownerName;
+    protected long balanceCents; // minor units, see Money
+    private long lastActivityMillis; // last customer deposit/withdrawal/transfer
+    private boolean dormant; // set by the end-of-day dormancy job, cleared by activity
+
+    // guards balanceCents; BankSystem also holds it while journaling a change so records stay in order
+    private transient ReentrantLock lock = new ReentrantLock();
+    // published balances and dormancy, newest first (see Versions); one ORIGIN node until changed
+    private transient volatile Versions.Node versions;
+
+    public Account(String accountNumber, String ownerName, long initialBalanceCents) {
+        this.accountNumber = accountNumber;
+        this.ownerName = ownerName;
+        this.balanceCents = initialBalanceCents;
+        this.lastActivityMillis = System.currentTimeMillis();
+        this.versions = new Versions.Node(Versions.ORIGIN, initialBalanceCents, false, false, null);
+    }
+
+    public String getAccountNumber() { return accountNumber; }
+    public String getOwnerName() { return ownerName; }
+
+    public long getBalanceCents() {
+        lock.lock();
+        try {
+            return balanceCents;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double getBalance() { return Money.toDouble(getBalanceCents()); }
+
+    ReentrantLock lock() { return lock; }
+
+    Versions.Node versions() { return versions; }
+
+    // Publishes the current balance and dormancy under commit c (removed: the account is being
+    // deleted). Callers hold the lock.
+    Versions.Node pushVersion(Versions.Commit c, boolean removed) {
+        versions = new Versions.Node(c, balanceCents, dormant, removed, versions);
+        return versions;
+    }
+
+    // a new account: it did not exist before commit c
+    Versions.Node startVersions(Versions.Commit c) {
+        versions = new Versions.Node(c, balanceCents, dormant, false, null);
+        return versions;
+    }
+
+    // used when replaying the journal: sets the balance without logging a transaction
+    void restoreBalance(long cents) {
+        lock.lock();
+        try {
+            this.balanceCents = cents;
+            resetVersions();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // likewise for the dormancy flag
+    void restoreDormant(boolean dormant) {
+        lock.lock();
+        try {
+            this.dormant = dormant;
+            resetVersions();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // likewise for a balance journaled with its activity clock and dormancy flag
+    void restoreState(long cents, long lastActivityMillis, boolean dormant) {
+        lock.lock();
+        try {
+            this.balanceCents = cents;
+            this.lastActivityMillis = lastActivityMillis;
+            this.dormant = dormant;
+            resetVersions();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // loaded state has no history
+    private void resetVersions() {
+        versions = new Versions.Node(Versions.ORIGIN, balanceCents, dormant, false, null);
+    }
+
+    // Balance arithmetic only: no logging and no allocation unless the update is refused.
+    // Callers hold the lock and return the new balance.
+    long credit(long cents) {
+        balanceCents = Math.addExact(balanceCents, cents);
+        touch();
+        return balanceCents;
+    }
+
+    long debit(long cents) throws InsufficientFundsException {
+        checkWithdrawal(cents);
+        balanceCents = Math.subtractExact(balanceCents, cents);
+        touch();
+        return balanceCents;
+    }
+
+    // bank-initiated change (interest, fees): no withdrawal rules and not counted as activity
+    long adjust(long deltaCents) {
+        balanceCents = Math.addExact(balanceCents, deltaCents);
+        return balanceCents;
+    }
+
+    private void touch() {
+        lastActivityMillis = System.currentTimeMillis();
+        dormant = false;
+    }
+
+    // rolls back credit/debit calls that were never published (a failed atomic batch); callers hold the lock
+    void undo(long balanceCents, long lastActivityMillis, boolean dormant) {
+        this.balanceCents = balanceCents;
+        this.lastActivityMillis = lastActivityMillis;
+        this.dormant = dormant;
+    }
+
+    // loading a snapshot: the constructor starts the activity clock now
+    void restoreActivity(long lastActivityMillis, boolean dormant) {
+        this.lastActivityMillis = lastActivityMillis;
+        this.dormant = dormant;
+        resetVersions();
+    }
+
+    // callers hold the lock
+    long getLastActivityMillis() { return lastActivityMillis; }
+    boolean isDormantFlag() { return dormant; }
+    void setDormant(boolean dormant) { this.dormant = dormant; }
+
+    public boolean isDormant() {
+        lock.lock();
+        try {
+            return dormant;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void deposit(double amount) {
+        if (amount <= 0) return;
+        depositCents(Money.toCents(amount));
+    }
+
+    // throws ArithmeticException if the balance would overflow
+    public void depositCents(long cents) {
+        if (cents <= 0) return;
+        long newBalance;
+        lock.lock();
+        try {
+            newBalance = credit(cents);
+            TransactionLogger.record(EventType.DEPOSIT, accountNumber, "", newBalance, 0);
+        } finally {
+            lock.unlock();
+        }
+        TransactionLogger.write(EventType.DEPOSIT, 0, accountNumber, "", cents, newBalance, 0, ownerName);
+    }
+
+    public void withdraw(double amount) throws InsufficientFundsException {
+        if (amount <= 0) return;
+        withdrawCents(Money.toCents(amount));
+    }
+
+    public void withdrawCents(long cents) throws InsufficientFundsException {
+        if (cents <= 0) return;
+        long newBalance;
+        lock.lock();
+        try {
+            newBalance = debit(cents);
+            TransactionLogger.record(EventType.WITHDRAWAL, accountNumber, "", newBalance, 0);
+        } finally {
+            lock.unlock();
+        }
+        logWithdrawal(cents, newBalance);
+    }
+
+    // subclasses tighten the rule; always called with the lock held
+    protected void checkWithdrawal(long cents) throws InsufficientFundsException {
+        if (balanceCents < cents) {
+            throw new InsufficientFundsException("Insufficient balance for withdrawal.");
+        }
+    }
+
+    // the balance history already has it (see TransactionLogger.record)
+    protected void logWithdrawal(long cents, long newBalance) {
+        TransactionLogger.write(EventType.WITHDRAWAL, 0, accountNumber, "", cents, newBalance, 0, ownerName);
+    }
+
+    public abstract String getAccountType();
+
+    // Files written before balances moved to cents carry a double "balance" field instead of
+    // "balanceCents"; convert it here so old bankdata.ser files keep loading.
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField f = in.readFields();
+        accountNumber = (String) f.get("accountNumber", null);
+        ownerName = (String) f.get("ownerName", null);
+        balanceCents = f.defaulted("balanceCents")
+                ? Money.toCents(f.get("balance", 0.0))
+                : f.get("balanceCents", 0L);
+        // files from before activity tracking start the dormancy clock at load time
+        lastActivityMillis = f.defaulted("lastActivityMillis")
+                ? System.currentTimeMillis()
+                : f.get("lastActivityMillis", 0L);
+        dormant = f.get("dormant", false);
+        lock = new ReentrantLock();
+        resetVersions();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s Account [%s] Owner: %s Balance: %s",
+                getAccountType(), accountNumber, ownerName, Money.format(getBalanceCents()));
+    }
+}
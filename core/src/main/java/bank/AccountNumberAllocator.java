@@ -0,0 +1,8 @@
+package bank;
+
+// Hands out account numbers for new accounts. Implementations must never return a number
+// twice, including across restarts; BankSystem still skips any number that is already in
+// use. Returns null when no number can be reserved.
+public interface AccountNumberAllocator {
+    String next();
+}
@@ -0,0 +1,351 @@
+package bank;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Background writer for TransactionLogger. Callers hand entries over through a bounded
+// queue; a single thread keeps the log file open and writes them out in batches.
+public class AsyncLogWriter implements Closeable {
+
+    public enum Durability {
+        // each entry is written and forced to disk before log() returns
+        PER_ENTRY,
+        // callers wait until the batch holding their entry has been forced (one fsync per batch)
+        GROUP_COMMIT,
+        // log() returns once the entry is queued; batches are flushed to the OS, never forced
+        BEST_EFFORT
+    }
+
+    private static final class Entry {
+        final LocalDateTime time;
+        final String message; // null for flush markers
+        final Thread waiter;
+        volatile boolean done;
+
+        Entry(LocalDateTime time, String message, Thread waiter) {
+            this.time = time;
+            this.message = message;
+            this.waiter = waiter;
+        }
+    }
+
+    private final ArrayBlockingQueue<Entry> queue;
+    private final Durability durability;
+    private final int maxBatch;
+    private final long flushNanos;
+    private final LogSegments segments; // null: one file, never rolled
+    private FileChannel channel;
+    private int generation;
+    private final Thread worker;
+    private volatile boolean running = true;
+    // Callers check running and enqueue under the read lock, close() clears it under the
+    // write lock: an entry is either queued before the writer starts draining, or refused.
+    private final ReadWriteLock closing = new ReentrantReadWriteLock();
+
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+    private final StringBuilder line = new StringBuilder(256);
+
+    // backpressure / throughput counters
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong blockedPuts = new AtomicLong();
+    private final AtomicLong blockedNanos = new AtomicLong();
+    private volatile int peakDepth;
+    private volatile long written;
+    private volatile long batches;
+    private volatile long forces;
+
+    public AsyncLogWriter(String file, Durability durability, int queueCapacity, int maxBatch, long flushMillis)
+            throws IOException {
+        this(file, null, durability, queueCapacity, maxBatch, flushMillis);
+    }
+
+    // writes to the active segment of segments, rolling it over between batches when due
+    AsyncLogWriter(LogSegments segments, Durability durability, int queueCapacity, int maxBatch, long flushMillis)
+            throws IOException {
+        this(segments.activeFile().getPath(), segments, durability, queueCapacity, maxBatch, flushMillis);
+    }
+
+    private AsyncLogWriter(String file, LogSegments segments, Durability durability, int queueCapacity,
+                           int maxBatch, long flushMillis) throws IOException {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.durability = durability;
+        this.maxBatch = maxBatch;
+        this.flushNanos = TimeUnit.MILLISECONDS.toNanos(flushMillis);
+        this.segments = segments;
+        if (segments != null) generation = segments.getGeneration();
+        this.channel = open(file);
+        this.worker = new Thread(this::run, "transaction-log-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public Durability getDurability() { return durability; }
+
+    // returns false once the writer has been closed; the caller should write the entry itself
+    public boolean log(String message) {
+        boolean wait = durability != Durability.BEST_EFFORT;
+        Entry e = new Entry(LocalDateTime.now(), message, wait ? Thread.currentThread() : null);
+        closing.readLock().lock();
+        try {
+            if (!running) return false;
+            enqueue(e);
+        } finally {
+            closing.readLock().unlock();
+        }
+        if (wait) awaitDone(e);
+        return true;
+    }
+
+    // Queues all messages back to back; in the durable modes only the last one is waited
+    // for, since the writer completes entries in queue order.
+    public boolean logAll(List<String> messages) {
+        boolean wait = durability != Durability.BEST_EFFORT;
+        LocalDateTime now = LocalDateTime.now();
+        Entry last = null;
+        closing.readLock().lock();
+        try {
+            if (!running) return false;
+            for (int i = 0; i < messages.size(); i++) {
+                boolean isLast = i == messages.size() - 1;
+                last = new Entry(now, messages.get(i), wait && isLast ? Thread.currentThread() : null);
+                enqueue(last);
+            }
+        } finally {
+            closing.readLock().unlock();
+        }
+        if (wait && last != null) awaitDone(last);
+        return true;
+    }
+
+    // blocks until everything queued before this call is written (and forced unless BEST_EFFORT)
+    public void flush() {
+        Entry marker = new Entry(null, null, Thread.currentThread());
+        closing.readLock().lock();
+        try {
+            if (!running) return;
+            enqueue(marker);
+        } finally {
+            closing.readLock().unlock();
+        }
+        awaitDone(marker);
+    }
+
+    private void enqueue(Entry e) {
+        if (!queue.offer(e)) {
+            long start = System.nanoTime();
+            blockedPuts.incrementAndGet();
+            try {
+                queue.put(e);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                System.err.println("Logging interrupted, entry dropped: " + e.message);
+                e.done = true;
+                return;
+            } finally {
+                blockedNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+        enqueued.incrementAndGet();
+        int depth = queue.size();
+        if (depth > peakDepth) peakDepth = depth;
+    }
+
+    private void awaitDone(Entry e) {
+        while (!e.done) {
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(10));
+            if (!worker.isAlive() && !e.done) {
+                System.err.println("Log writer stopped before entry was written: " + e.message);
+                return;
+            }
+        }
+    }
+
+    private void run() {
+        List<Entry> pending = new ArrayList<>(maxBatch);
+        long firstPending = 0;
+        while (running || !queue.isEmpty()) {
+            try {
+                long timeout = pending.isEmpty() ? flushNanos : Math.max(0, firstPending + flushNanos - System.nanoTime());
+                Entry e = queue.poll(timeout, TimeUnit.NANOSECONDS);
+                if (e != null) {
+                    if (pending.isEmpty()) firstPending = System.nanoTime();
+                    pending.add(e);
+                    queue.drainTo(pending, maxBatch - pending.size());
+                }
+                boolean full = pending.size() >= maxBatch;
+                boolean due = !pending.isEmpty() && System.nanoTime() - firstPending >= flushNanos;
+                // callers are blocked in the durable modes, so don't hold their batch back for the timer
+                boolean waited = durability != Durability.BEST_EFFORT && queue.isEmpty();
+                boolean marker = !pending.isEmpty() && pending.get(pending.size() - 1).message == null;
+                if (!pending.isEmpty() && (full || due || waited || marker || !running)) {
+                    writeBatch(pending);
+                    pending.clear();
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (!pending.isEmpty()) writeBatch(pending);
+    }
+
+    private static FileChannel open(String file) throws IOException {
+        return FileChannel.open(Paths.get(file),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    // Moves to a new active segment if the batch is due to start one, or if a direct write
+    // (TransactionLogger while the writer starts or stops) already rolled the file away.
+    private void rollIfDue(List<Entry> batch) throws IOException {
+        LocalDateTime first = null;
+        for (Entry e : batch) {
+            if (e.message != null) {
+                first = e.time;
+                break;
+            }
+        }
+        if (first == null) return;
+        if (segments.getGeneration() != generation) reopen();
+        if (segments.rollIfDue(first)) reopen();
+    }
+
+    private void reopen() throws IOException {
+        channel.close();
+        generation = segments.getGeneration();
+        channel = open(segments.activeFile().getPath());
+    }
+
+    private void writeBatch(List<Entry> batch) {
+        try {
+            if (segments != null) rollIfDue(batch);
+            if (durability == Durability.PER_ENTRY) {
+                for (Entry e : batch) {
+                    if (e.message != null) {
+                        buffer.clear();
+                        encode(e);
+                        buffer.flip();
+                        writeFully();
+                        channel.force(false);
+                        forces++;
+                    }
+                    release(e);
+                }
+            } else {
+                buffer.clear();
+                for (Entry e : batch) {
+                    if (e.message != null) encode(e);
+                }
+                buffer.flip();
+                writeFully();
+                if (durability == Durability.GROUP_COMMIT) {
+                    channel.force(false);
+                    forces++;
+                }
+            }
+            batches++;
+        } catch (IOException ex) {
+            System.err.println("Logging failed: " + ex.getMessage());
+        } finally {
+            for (Entry e : batch) release(e);
+        }
+    }
+
+    private void encode(Entry e) {
+        line.setLength(0);
+        line.append(e.time).append(" - ").append(e.message).append(System.lineSeparator());
+        byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+        if (buffer.remaining() < bytes.length) {
+            ByteBuffer bigger = ByteBuffer.allocateDirect(Math.max(buffer.capacity() * 2, buffer.position() + bytes.length));
+            buffer.flip();
+            bigger.put(buffer);
+            buffer = bigger;
+        }
+        buffer.put(bytes);
+        written++;
+    }
+
+    private void writeFully() throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void release(Entry e) {
+        if (e.done) return;
+        e.done = true;
+        if (e.waiter != null) LockSupport.unpark(e.waiter);
+    }
+
+    public Stats getStats() {
+        return new Stats(queue.size(), peakDepth, queue.remainingCapacity() + queue.size(),
+                enqueued.get(), written, batches, forces, blockedPuts.get(), blockedNanos.get());
+    }
+
+    @Override
+    public void close() throws IOException {
+        // waits for callers part-way through enqueueing; the writer keeps draining meanwhile
+        closing.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            closing.writeLock().unlock();
+        }
+        queue.offer(new Entry(null, null, null)); // wake the writer; it drains what is left
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    // point-in-time view of the writer's queue and throughput counters
+    public static final class Stats {
+        public final int queueDepth;
+        public final int peakQueueDepth;
+        public final int queueCapacity;
+        public final long enqueued;
+        public final long written;
+        public final long batches;
+        public final long forces;
+        public final long blockedPuts;
+        public final long blockedNanos;
+
+        Stats(int queueDepth, int peakQueueDepth, int queueCapacity, long enqueued, long written,
+              long batches, long forces, long blockedPuts, long blockedNanos) {
+            this.queueDepth = queueDepth;
+            this.peakQueueDepth = peakQueueDepth;
+            this.queueCapacity = queueCapacity;
+            this.enqueued = enqueued;
+            this.written = written;
+            this.batches = batches;
+            this.forces = forces;
+            this.blockedPuts = blockedPuts;
+            this.blockedNanos = blockedNanos;
+        }
+
+        public double averageBatch() {
+            return batches == 0 ? 0 : (double) written / batches;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("queue=%d/%d peak=%d enqueued=%d written=%d batches=%d avgBatch=%.1f forces=%d blockedPuts=%d blockedMs=%d",
+                    queueDepth, queueCapacity, peakQueueDepth, enqueued, written, batches, averageBatch(),
+                    forces, blockedPuts, TimeUnit.NANOSECONDS.toMillis(blockedNanos));
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package bank;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+// Every balance an account has had, from the typed transaction events (see
+// TransactionLogger.record), so BankSystem.getBalanceCentsAt can answer "what was the balance
+// at 14:00 last Tuesday" without reading the transaction log. Events arrive while the account
+// lock that ordered the change is held, so each account's records are in the order of its changes.
+//
+// File: MAGIC, VERSION, then RECORD-byte records in arrival order:
+//   [long time millis][long balance][long offset of the account's previous record, -1 if none]
+//   [byte kind][14 bytes account number, ASCII, zero-padded][byte unused]
+// Each account's records form a chain back through the file. Every CHECKPOINT-th record of an
+// account is kept in memory as a checkpoint (time, offset), so a query binary-searches the
+// checkpoints and walks back at most CHECKPOINT records from the first one after the asked
+// time. Records are appended through a buffer written out when full, FLUSH_MILLIS after the
+// first one buffered, before a query and on close; a torn record at the end is dropped on open.
+final class BalanceHistory implements Closeable {
+    private static final int MAGIC = 0x42484953; // "BHIS"
+    private static final int VERSION = 1;
+    private static final int HEADER = 8;
+    static final int RECORD = 40;
+    static final int CHECKPOINT = 64;
+    private static final long FLUSH_MILLIS = 1000;
+    private static final int TIME = 0, BALANCE = 8, PREV = 16, KIND = 24, ACCOUNT = 25, ACCOUNT_BYTES = 14;
+
+    // record kinds
+    private static final byte BALANCE_KIND = 1; // the account's balance from then on
+    private static final byte CLOSED = 2;       // deleted; no balance from then on
+
+    // one account's records
+    private static final class Chain {
+        long last = -1;      // offset of the newest record
+        long lastBalance;
+        byte lastKind;
+        int count;
+        long[] cpTimes;      // checkpoints: every CHECKPOINT-th record, oldest first
+        long[] cpOffsets;
+        int cps;
+
+        void add(long offset, long time, long balance, byte kind) {
+            if (count++ % CHECKPOINT == CHECKPOINT - 1) {
+                if (cpTimes == null) {
+                    cpTimes = new long[4];
+                    cpOffsets = new long[4];
+                } else if (cps == cpTimes.length) {
+                    cpTimes = Arrays.copyOf(cpTimes, cps * 2);
+                    cpOffsets = Arrays.copyOf(cpOffsets, cps * 2);
+                }
+                cpTimes[cps] = time;
+                cpOffsets[cps++] = offset;
+            }
+            last = offset;
+            lastBalance = balance;
+            lastKind = kind;
+        }
+    }
+
+    private final File file;
+    private final FileChannel channel;
+    private final Map<String, Chain> chains = new HashMap<>();
+    private final ByteBuffer pending = ByteBuffer.allocateDirect(1024 * RECORD);
+    private long written;        // file length covered by complete records
+    private long firstPending;   // currentTimeMillis of the oldest buffered record
+    private boolean closed;
+
+    BalanceHistory(File file) throws IOException {
+        this.file = file;
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        load();
+    }
+
+    private void load() throws IOException {
+        long size = channel.size();
+        if (size < HEADER) {
+            ByteBuffer h = ByteBuffer.allocate(HEADER).putInt(MAGIC).putInt(VERSION);
+            h.flip();
+            channel.truncate(0);
+            while (h.hasRemaining()) channel.write(h, h.position());
+            written = HEADER;
+            return;
+        }
+        ByteBuffer h = ByteBuffer.allocate(HEADER);
+        while (h.hasRemaining() && channel.read(h, h.position()) > 0) {
+            // header is complete: size >= HEADER
+        }
+        if (h.getInt(0) != MAGIC || h.getInt(4) != VERSION) {
+            throw new IOException(file + " is not a balance history file");
+        }
+        long end = HEADER + (size - HEADER) / RECORD * RECORD;
+        if (end < size) {
+            System.err.println("Dropped a partly written record at the end of " + file);
+            channel.truncate(end);
+        }
+        ByteBuffer buf = ByteBuffer.allocate(16384 * RECORD);
+        for (long pos = HEADER; pos < end; ) {
+            buf.clear();
+            buf.limit((int) Math.min(buf.capacity(), end - pos));
+            while (buf.hasRemaining() && channel.read(buf, pos + buf.position()) > 0) {
+                // fill the chunk
+            }
+            for (int at = 0; at + RECORD <= buf.position(); at += RECORD) {
+                chain(account(buf, at)).add(pos + at, buf.getLong(at + TIME), buf.getLong(at + BALANCE),
+                        buf.get(at + KIND));
+            }
+            pos += buf.position();
+        }
+        written = end;
+    }
+
+    private Chain chain(String account) {
+        Chain c = chains.get(account);
+        if (c == null) {
+            c = new Chain();
+            chains.put(account, c);
+        }
+        return c;
+    }
+
+    // Takes the balances a typed event reports; events that change no balance are ignored.
+    synchronized void event(long timeMillis, EventType type, String account, String counterparty, long balance,
+                            long counterBalance) {
+        switch (type) {
+            case ACCOUNT_OPENED:
+            case DEPOSIT:
+            case WITHDRAWAL:
+            case INTEREST:
+            case OVERDRAFT_FEE:
+            case BATCH_DEPOSIT:
+            case BATCH_WITHDRAWAL:
+                append(timeMillis, account, balance, BALANCE_KIND);
+                break;
+            case TRANSFER:
+                append(timeMillis, account, balance, BALANCE_KIND);
+                append(timeMillis, counterparty, counterBalance, BALANCE_KIND);
+                break;
+            case ACCOUNT_CLOSED:
+                append(timeMillis, account, balance, CLOSED);
+                break;
+            default:
+                break;
+        }
+    }
+
+    // Records the current balance of an account the history has lost track of (it predates
+    // the history, or was changed by a run whose last records never reached the file).
+    synchronized void reconcile(String account, long balance) {
+        Chain c = chains.get(account);
+        if (c != null && c.lastKind == BALANCE_KIND && c.lastBalance == balance) return;
+        append(System.currentTimeMillis(), account, balance, BALANCE_KIND);
+    }
+
+    // Records that an account is gone if its close never reached the file. gone is asked under
+    // this object's lock, which the close or a reopening event also needs, so neither can slip in
+    // between the check and the record.
+    synchronized void reconcileClosed(String account, BooleanSupplier gone) {
+        Chain c = chains.get(account);
+        if (c == null || c.lastKind != BALANCE_KIND || !gone.getAsBoolean()) return;
+        append(System.currentTimeMillis(), account, c.lastBalance, CLOSED);
+    }
+
+    private void append(long timeMillis, String account, long balance, byte kind) {
+        if (closed || account == null || account.isEmpty()) return;
+        long now = System.currentTimeMillis();
+        if (!pending.hasRemaining() || (pending.position() > 0 && now - firstPending >= FLUSH_MILLIS)) flush();
+        if (pending.position() == 0) firstPending = now;
+        Chain c = chain(account);
+        long offset = written + pending.position();
+        int at = pending.position();
+        pending.putLong(at + TIME, timeMillis);
+        pending.putLong(at + BALANCE, balance);
+        pending.putLong(at + PREV, c.last);
+        pending.put(at + KIND, kind);
+        int n = Math.min(account.length(), ACCOUNT_BYTES);
+        for (int i = 0; i < n; i++) pending.put(at + ACCOUNT + i, (byte) account.charAt(i));
+        for (int i = n; i < RECORD - ACCOUNT; i++) pending.put(at + ACCOUNT + i, (byte) 0);
+        pending.position(at + RECORD);
+        c.add(offset, timeMillis, balance, kind);
+    }
+
+    // writes out buffered records
+    synchronized void flush() {
+        if (closed || pending.position() == 0) return;
+        pending.flip();
+        try {
+            while (pending.hasRemaining()) channel.write(pending, written + pending.position());
+            written += pending.limit();
+        } catch (IOException e) {
+            // the chains point past the file now; reconcile() at the next start records the balances again
+            System.err.println("Writing balance history failed: " + e.getMessage());
+            written += pending.limit();
+        } finally {
+            pending.clear();
+        }
+    }
+
+    // Balance of account at timeMillis: that of its last record stamped at or before then.
+    // null if it had none yet or had been deleted.
+    synchronized Long balanceAt(String account, long timeMillis) throws IOException {
+        Chain c = chains.get(account);
+        if (c == null || closed) return null;
+        flush();
+        int lo = 0, hi = c.cps; // first checkpoint after timeMillis
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (c.cpTimes[mid] <= timeMillis) lo = mid + 1;
+            else hi = mid;
+        }
+        long offset = lo < c.cps ? c.cpOffsets[lo] : c.last;
+        ByteBuffer record = ByteBuffer.allocate(RECORD);
+        while (offset >= 0) {
+            record.clear();
+            while (record.hasRemaining() && channel.read(record, offset + record.position()) > 0) {
+                // records below written are complete
+            }
+            if (record.hasRemaining()) throw new IOException("Balance history ends inside record at " + offset);
+            if (record.getLong(TIME) <= timeMillis) {
+                // anything but a balance (a close, or a gap left by a failed write) means none
+                return record.get(KIND) == BALANCE_KIND ? record.getLong(BALANCE) : null;
+            }
+            offset = record.getLong(PREV);
+        }
+        return null;
+    }
+
+    synchronized int getAccountCount() { return chains.size(); }
+
+    // every balance of the account's records, oldest first (closes included); for tests and tools
+    synchronized long[] balancesOf(String account) throws IOException {
+        Chain c = chains.get(account);
+        if (c == null) return new long[0];
+        flush();
+        long[] balances = new long[c.count];
+        ByteBuffer record = ByteBuffer.allocate(RECORD);
+        int n = c.count;
+        for (long offset = c.last; offset >= 0 && n > 0; offset = record.getLong(PREV)) {
+            record.clear();
+            while (record.hasRemaining() && channel.read(record, offset + record.position()) > 0) {
+                // records below written are complete
+            }
+            if (record.hasRemaining()) throw new IOException("Balance history ends inside record at " + offset);
+            balances[--n] = record.getLong(BALANCE);
+        }
+        return n == 0 ? balances : Arrays.copyOfRange(balances, n, balances.length);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        flush();
+        closed = true;
+        channel.close();
+    }
+
+    private static String account(ByteBuffer buf, int at) {
+        int n = 0;
+        while (n < ACCOUNT_BYTES && buf.get(at + ACCOUNT + n) != 0) n++;
+        byte[] b = new byte[n];
+        for (int i = 0; i < n; i++) b[i] = buf.get(at + ACCOUNT + i);
+        return new String(b, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,396 @@
+package bank;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Headless JSON-over-HTTP front end for BankSystem, on the JDK's built-in HttpServer.
+// Requests run on virtual threads where the runtime has them (Java 21+), otherwise on a
+// fixed pool of -Dbank.http.threads (default 256). Idle keep-alive connections don't hold a
+// thread either way, so thousands of clients can stay connected.
+//
+//   POST /login                    {"userId","password"} -> {"token","userId","role"}
+//   POST /accounts                 {"userId","type","initialCents"} -> {"account"}   (staff)
+//   GET  /accounts/{n}             -> {"account","type","owner","balanceCents","balance"}
+//   POST /accounts/{n}/deposit     {"amountCents"} -> {"account","balanceCents"}
+//   POST /accounts/{n}/withdraw    {"amountCents"} -> {"account","balanceCents"}
+//   GET  /log?account=n&from=&to=  statement lines for one account (times as 2025-11-12T21:54)
+//   GET  /log?first=&count=        a page of the whole log, the last page by default (staff)
+//   GET  /metrics                  Metrics.dump() as text
+//
+// Everything but /login and /metrics needs "Authorization: Bearer <token>". Customers only
+// see their own accounts; employees and admins see all. A deposit or withdrawal sent with an
+// "Idempotency-Key" header (up to 200 characters, unique per request) runs once: a retry with
+// the same key from the same user gets the first outcome. Sessions expire after
+// -Dbank.http.sessionMinutes (default 30) without use; at most -Dbank.http.maxSessions
+// (default 100000) are kept, and beyond that the one unused the longest is dropped.
+public class BankServer {
+    private static final int MAX_BODY = 64 * 1024;
+    private static final int MAX_LOG_LINES = 1000;
+    private static final long SWEEP_MILLIS = 60_000;
+
+    private final BankSystem bank;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private final long sessionMillis = Long.getLong("bank.http.sessionMinutes", 30L) * 60_000;
+    private final int maxSessions = Math.max(1, Integer.getInteger("bank.http.maxSessions", 100_000));
+    private volatile long nextSweep; // when login next drops expired sessions
+    private LogReader logReader; // opened by the first page request; guarded by this
+
+    static {
+        // HttpServer closes keep-alive connections beyond 200 idle ones; read once when it loads
+        if (System.getProperty("sun.net.httpserver.maxIdleConnections") == null) {
+            System.setProperty("sun.net.httpserver.maxIdleConnections", "10000");
+        }
+    }
+
+    private static final class Session {
+        final String userId;
+        volatile long expires;
+
+        Session(String userId, long expires) {
+            this.userId = userId;
+            this.expires = expires;
+        }
+    }
+
+    // an error response; thrown from handlers and turned into {"error": message}
+    private static final class HttpError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message, null, false, false);
+            this.status = status;
+        }
+    }
+
+    public BankServer(BankSystem bank, InetSocketAddress address) throws IOException {
+        this.bank = bank;
+        this.server = HttpServer.create(address, Integer.getInteger("bank.http.backlog", 4096));
+        this.executor = newExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    private static ExecutorService newExecutor() {
+        ExecutorService virtual = BankService.newVirtualThreadExecutor();
+        if (virtual != null) return virtual;
+        AtomicInteger n = new AtomicInteger();
+        // unbounded queue: HttpServer has no way to refuse a request the executor rejects
+        return Executors.newFixedThreadPool(Integer.getInteger("bank.http.threads", 256), r -> {
+            Thread t = new Thread(r, "bank-http-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // stops accepting, gives running requests up to delaySeconds, then saves
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+        synchronized (this) {
+            if (logReader != null) {
+                try {
+                    logReader.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+        bank.saveState();
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        String route = "unknown";
+        long start = Metrics.start();
+        try {
+            String[] path = ex.getRequestURI().getPath().replaceAll("/+$", "").split("/");
+            String method = ex.getRequestMethod();
+            String body;
+            if (path.length == 2 && path[1].equals("login")) {
+                route = "login";
+                body = login(post(ex, method));
+            } else if (path.length == 2 && path[1].equals("metrics")) {
+                route = "metrics";
+                get(method);
+                send(ex, 200, "text/plain; charset=utf-8", Metrics.dump());
+                return;
+            } else if (path.length == 2 && path[1].equals("accounts")) {
+                route = "createAccount";
+                body = createAccount(session(ex), post(ex, method));
+            } else if (path.length == 3 && path[1].equals("accounts")) {
+                route = "balance";
+                get(method);
+                body = balance(session(ex), path[2]);
+            } else if (path.length == 4 && path[1].equals("accounts") && path[3].equals("deposit")) {
+                route = "deposit";
+                body = deposit(session(ex), path[2], idempotencyKey(ex), post(ex, method));
+            } else if (path.length == 4 && path[1].equals("accounts") && path[3].equals("withdraw")) {
+                route = "withdraw";
+                body = withdraw(session(ex), path[2], idempotencyKey(ex), post(ex, method));
+            } else if (path.length == 2 && path[1].equals("log")) {
+                route = "log";
+                get(method);
+                body = log(session(ex), query(ex));
+            } else {
+                throw new HttpError(404, "No such endpoint");
+            }
+            send(ex, 200, "application/json", body);
+        } catch (HttpError e) {
+            send(ex, e.status, "application/json", new Json().put("error", e.getMessage()).toString());
+        } catch (IllegalArgumentException e) {
+            send(ex, 400, "application/json", new Json().put("error", e.getMessage()).toString());
+        } catch (RuntimeException e) {
+            System.err.println("HTTP " + ex.getRequestURI() + " failed: " + e);
+            send(ex, 500, "application/json", new Json().put("error", "Internal error").toString());
+        } finally {
+            ex.close();
+            Metrics.histogram("http." + route).recordSince(start);
+        }
+    }
+
+    // ---- endpoints ----
+
+    private String login(Map<String, Object> req) {
+        Customer c = bank.login(string(req, "userId"), string(req, "password"));
+        if (c == null) throw new HttpError(401, "Invalid user id or password");
+        byte[] raw = new byte[16];
+        random.nextBytes(raw);
+        String token = HexFormat.of().formatHex(raw);
+        long now = System.currentTimeMillis();
+        makeRoom(now);
+        sessions.put(token, new Session(c.getUserId(), now + sessionMillis));
+        return new Json().put("token", token).put("userId", c.getUserId()).put("role", c.getRole()).toString();
+    }
+
+    private String createAccount(Customer caller, Map<String, Object> req) {
+        if (!isStaff(caller)) throw new HttpError(403, "Only employees can open accounts");
+        String type = string(req, "type");
+        if (!type.equalsIgnoreCase("savings") && !type.equalsIgnoreCase("current")) {
+            throw new IllegalArgumentException("type must be savings or current");
+        }
+        long initial = req.containsKey("initialCents") ? cents(req, "initialCents", true) : 0;
+        String acctNo = bank.createAccountForUserCents(string(req, "userId"), type.toLowerCase(), initial);
+        if (acctNo == null) throw new HttpError(404, "No such user");
+        return new Json().put("account", acctNo).toString();
+    }
+
+    private String balance(Customer caller, String acctNo) {
+        Account a = ownAccount(caller, acctNo);
+        long cents = a.getBalanceCents();
+        return new Json().put("account", acctNo).put("type", a.getAccountType()).put("owner", a.getOwnerName())
+                .put("balanceCents", cents).put("balance", Money.format(cents)).toString();
+    }
+
+    private String deposit(Customer caller, String acctNo, String key, Map<String, Object> req) {
+        Account a = ownAccount(caller, acctNo);
+        if (!bank.depositCents(scoped(caller, key), acctNo, cents(req, "amountCents", false))) {
+            throw new HttpError(422, "Deposit rejected");
+        }
+        return new Json().put("account", acctNo).put("balanceCents", a.getBalanceCents()).toString();
+    }
+
+    private String withdraw(Customer caller, String acctNo, String key, Map<String, Object> req) {
+        Account a = ownAccount(caller, acctNo);
+        if (!bank.withdrawCents(scoped(caller, key), acctNo, cents(req, "amountCents", false))) {
+            throw new HttpError(422, "Withdrawal rejected (insufficient funds?)");
+        }
+        return new Json().put("account", acctNo).put("balanceCents", a.getBalanceCents()).toString();
+    }
+
+    private String log(Customer caller, Map<String, String> query) {
+        try {
+            String acctNo = query.get("account");
+            if (acctNo != null) {
+                ownAccount(caller, acctNo);
+                List<String> lines = TransactionLogger.getStatement(acctNo, time(query.get("from")), time(query.get("to")));
+                return new Json().put("account", acctNo).put("lines", lines).toString();
+            }
+            if (!isStaff(caller)) throw new HttpError(403, "Only employees can read the whole log");
+            int count = Math.min(MAX_LOG_LINES, query.containsKey("count") ? Integer.parseInt(query.get("count")) : 100);
+            if (count <= 0) throw new IllegalArgumentException("count must be positive");
+            LogPage page;
+            LogReader reader = logReader();
+            TransactionLogger.flush();
+            // the reader is shared: page against the refresh done here, not another request's
+            synchronized (reader) {
+                reader.refresh();
+                page = query.containsKey("first") ? reader.page(Long.parseLong(query.get("first")), count)
+                        : reader.tail(count);
+            }
+            return new Json().put("first", page.getFirstLine()).put("total", page.getTotalLines())
+                    .put("lines", page.getLines()).toString();
+        } catch (IOException e) {
+            throw new HttpError(500, "Cannot read log: " + e.getMessage());
+        }
+    }
+
+    // Tokens that are never presented again would otherwise stay forever: expired sessions are
+    // dropped once a minute (or when the map is full), and a map full of live ones loses the
+    // session unused the longest.
+    private void makeRoom(long now) {
+        if (now < nextSweep && sessions.size() < maxSessions) return;
+        nextSweep = now + SWEEP_MILLIS;
+        sessions.values().removeIf(s -> s.expires < now);
+        while (sessions.size() >= maxSessions) {
+            Map.Entry<String, Session> oldest = null;
+            for (Map.Entry<String, Session> e : sessions.entrySet()) {
+                if (oldest == null || e.getValue().expires < oldest.getValue().expires) oldest = e;
+            }
+            if (oldest == null) break;
+            sessions.remove(oldest.getKey(), oldest.getValue());
+        }
+    }
+
+    private synchronized LogReader logReader() throws IOException {
+        if (logReader == null) logReader = TransactionLogger.openLog();
+        return logReader;
+    }
+
+    // ---- helpers ----
+
+    private static String idempotencyKey(HttpExchange ex) {
+        String key = ex.getRequestHeaders().getFirst("Idempotency-Key");
+        if (key == null || key.isEmpty()) return null;
+        if (key.length() > 200) throw new IllegalArgumentException("Idempotency-Key is longer than 200 characters");
+        return key;
+    }
+
+    // clients pick their own keys, so one user's key can't answer for another's request
+    private static String scoped(Customer caller, String key) {
+        return key == null ? null : caller.getUserId() + ":" + key;
+    }
+
+    private Customer session(HttpExchange ex) {
+        String auth = ex.getRequestHeaders().getFirst("Authorization");
+        if (auth == null || !auth.startsWith("Bearer ")) throw new HttpError(401, "Log in first");
+        String token = auth.substring(7).trim();
+        Session s = sessions.get(token);
+        long now = System.currentTimeMillis();
+        if (s == null || s.expires < now) {
+            if (s != null) sessions.remove(token, s);
+            throw new HttpError(401, "Session expired, log in again");
+        }
+        Customer c = bank.getUsers().get(s.userId);
+        if (c == null) {
+            sessions.remove(token, s);
+            throw new HttpError(401, "User no longer exists");
+        }
+        s.expires = now + sessionMillis;
+        return c;
+    }
+
+    private static boolean isStaff(Customer c) {
+        return c.getRole().equalsIgnoreCase("employee") || c.getRole().equalsIgnoreCase("admin");
+    }
+
+    // the account, if the caller may see it
+    private Account ownAccount(Customer caller, String acctNo) {
+        Account a = bank.getAccount(acctNo);
+        if (a == null || (!isStaff(caller) && !caller.getUserId().equals(bank.getOwnerId(acctNo)))) {
+            throw new HttpError(404, "No such account");
+        }
+        return a;
+    }
+
+    private static void get(String method) {
+        if (!method.equals("GET")) throw new HttpError(405, "Use GET");
+    }
+
+    private static Map<String, Object> post(HttpExchange ex, String method) throws IOException {
+        if (!method.equals("POST")) throw new HttpError(405, "Use POST");
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (InputStream in = ex.getRequestBody()) {
+            byte[] chunk = new byte[4096];
+            int n;
+            while ((n = in.read(chunk)) > 0) {
+                if (buf.size() + n > MAX_BODY) throw new HttpError(413, "Request body too large");
+                buf.write(chunk, 0, n);
+            }
+        }
+        return Json.parseObject(buf.toString(StandardCharsets.UTF_8));
+    }
+
+    private static Map<String, String> query(HttpExchange ex) {
+        Map<String, String> out = new HashMap<>();
+        String q = ex.getRequestURI().getRawQuery();
+        if (q == null) return out;
+        for (String pair : q.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) continue;
+            out.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return out;
+    }
+
+    private static String string(Map<String, Object> req, String key) {
+        Object v = req.get(key);
+        if (!(v instanceof String)) throw new IllegalArgumentException(key + " is required");
+        return (String) v;
+    }
+
+    private static long cents(Map<String, Object> req, String key, boolean zeroOk) {
+        Object v = req.get(key);
+        if (!(v instanceof Long)) throw new IllegalArgumentException(key + " must be a whole number of cents");
+        long cents = (Long) v;
+        if (cents < 0 || (cents == 0 && !zeroOk)) throw new IllegalArgumentException(key + " must be positive");
+        return cents;
+    }
+
+    private static LocalDateTime time(String text) {
+        if (text == null || text.isEmpty()) return null;
+        try {
+            return LocalDateTime.parse(text);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Not a time: " + text);
+        }
+    }
+
+    private static void send(HttpExchange ex, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", contentType);
+        ex.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // java -cp core/target/classes bank.BankServer [port]   (binds -Dbank.http.host, default 127.0.0.1)
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        String host = System.getProperty("bank.http.host", "127.0.0.1");
+        BankServer server = new BankServer(new BankSystem(), new InetSocketAddress(host, port));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(2), "bank-http-shutdown"));
+        server.start();
+        System.out.println("Bank API listening on http://" + host + ":" + server.getPort());
+    }
+}
@@ -0,0 +1,184 @@
+package bank;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Asynchronous front for BankSystem so callers such as the Swing UI never block on disk
+// or lock waits. Every call runs on the service's executor and returns a CompletableFuture;
+// results are plain values (copies, not live maps) so they can be used on any thread.
+public class BankService implements AutoCloseable {
+    private final BankSystem bank;
+    private final ExecutorService executor;
+
+    public BankService(BankSystem bank) {
+        this(bank, newDefaultExecutor());
+    }
+
+    public BankService(BankSystem bank, ExecutorService executor) {
+        this.bank = bank;
+        this.executor = executor;
+    }
+
+    // Loads the bank on the executor; the constructor reads the data file and journal.
+    public static CompletableFuture<BankService> open(Supplier<BankSystem> loader) {
+        ExecutorService executor = newDefaultExecutor();
+        return CompletableFuture.supplyAsync(loader, executor)
+                .thenApply(bank -> {
+                    executor.execute(bank::prepareSearch); // ready by the time someone logs in
+                    return new BankService(bank, executor);
+                });
+    }
+
+    // Virtual threads when the runtime has them (Java 21+), otherwise a bounded pool.
+    static ExecutorService newDefaultExecutor() {
+        ExecutorService virtual = newVirtualThreadExecutor();
+        if (virtual != null) return virtual;
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+        AtomicInteger n = new AtomicInteger();
+        // bounded queue: a flood of requests is refused (see call()) rather than piling up
+        return new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1024),
+                r -> {
+                    Thread t = new Thread(r, "bank-service-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    // a thread per task on Java 21+, or null; found reflectively so the code still builds and runs on Java 17
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    public BankSystem getBankSystem() { return bank; }
+
+    public Executor getExecutor() { return executor; }
+
+    // A call the executor refuses (its queue is full, or it is shut down) returns a failed
+    // future rather than throwing on the caller's thread.
+    private <T> CompletableFuture<T> call(Supplier<T> work) {
+        try {
+            return CompletableFuture.supplyAsync(work, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    public CompletableFuture<Customer> login(String userId, String password) {
+        return call(() -> bank.login(userId, password));
+    }
+
+    public CompletableFuture<Boolean> createUser(String userId, String name, String password, String role) {
+        return call(() -> bank.createUser(userId, name, password, role));
+    }
+
+    public CompletableFuture<Boolean> deleteUser(String userId) {
+        return call(() -> bank.deleteUser(userId));
+    }
+
+    // see BankSystem.searchUsers
+    public CompletableFuture<List<String>> searchUsers(String prefix, String role, int limit) {
+        return call(() -> bank.searchUsers(prefix, role, limit));
+    }
+
+    public CompletableFuture<List<String>> listAccountNumbers(Customer customer) {
+        return call(customer::getAccountNumbers);
+    }
+
+    public CompletableFuture<String> createAccountForUser(String userId, String type, double initialBalance) {
+        return call(() -> bank.createAccountForUser(userId, type, initialBalance));
+    }
+
+    public CompletableFuture<Boolean> deleteAccount(String accountNumber) {
+        return call(() -> bank.deleteAccount(accountNumber));
+    }
+
+    public CompletableFuture<Account> getAccount(String accountNumber) {
+        return call(() -> bank.getAccount(accountNumber));
+    }
+
+    // see BankSystem.getBalanceCentsAt
+    public CompletableFuture<Long> getBalanceCentsAt(String accountNumber, LocalDateTime time) {
+        return call(() -> bank.getBalanceCentsAt(accountNumber, time));
+    }
+
+    // see BankSystem.readView
+    public CompletableFuture<ReadView> readView() {
+        return call(bank::readView);
+    }
+
+    public CompletableFuture<Boolean> deposit(String accountNumber, double amount) {
+        return call(() -> bank.deposit(accountNumber, amount));
+    }
+
+    public CompletableFuture<Boolean> withdraw(String accountNumber, double amount) {
+        return call(() -> bank.withdraw(accountNumber, amount));
+    }
+
+    public CompletableFuture<Boolean> transfer(String fromAccount, String toAccount, double amount) {
+        return call(() -> bank.transfer(fromAccount, toAccount, amount));
+    }
+
+    public CompletableFuture<BatchResult> applyBatch(List<Posting> postings, boolean atomic) {
+        return call(() -> bank.applyBatch(postings, atomic));
+    }
+
+    public CompletableFuture<EndOfDayReport> runEndOfDay(String runId, LocalDate businessDate,
+                                                         List<EndOfDayJob> jobs, EndOfDayListener listener) {
+        return call(() -> bank.runEndOfDay(runId, businessDate, jobs, listener));
+    }
+
+    public CompletableFuture<Void> saveState() {
+        return call(() -> {
+            bank.saveState();
+            return null;
+        });
+    }
+
+    public CompletableFuture<LogReader> openLog() {
+        return call(() -> {
+            try {
+                return TransactionLogger.openLog();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    public CompletableFuture<List<String>> getStatement(String accountNumber, LocalDateTime from, LocalDateTime to) {
+        return call(() -> {
+            try {
+                return TransactionLogger.getStatement(accountNumber, from, to);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    // waits for calls already submitted, then stops the executor
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                System.err.println("Bank service still busy after 30s, shutting down anyway");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+    }
+}
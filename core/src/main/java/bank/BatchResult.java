@@ -0,0 +1,42 @@
+package bank;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Outcome of BankSystem.applyBatch: one entry per posting, in input order.
+public class BatchResult {
+    private final boolean atomic;
+    private final String[] errors; // null where the posting was applied
+    private int applied;
+
+    BatchResult(int size, boolean atomic) {
+        this.atomic = atomic;
+        this.errors = new String[size];
+    }
+
+    void fail(int index, String error) { errors[index] = error; }
+    void setApplied(int applied) { this.applied = applied; }
+
+    public boolean isAtomic() { return atomic; }
+    public int size() { return errors.length; }
+    public int getAppliedCount() { return applied; }
+    public boolean isFullyApplied() { return applied == errors.length; }
+
+    // in an atomic batch a failure on one posting means none were applied
+    public boolean isApplied(int index) { return errors[index] == null && (!atomic || isFullyApplied()); }
+    public String getError(int index) { return errors[index]; }
+
+    public List<Integer> getFailedIndexes() {
+        List<Integer> failed = new ArrayList<>();
+        for (int i = 0; i < errors.length; i++) {
+            if (errors[i] != null) failed.add(i);
+        }
+        return failed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Batch[%s] applied %d of %d postings", atomic ? "all-or-nothing" : "per-item",
+                applied, errors.length);
+    }
+}
@@ -0,0 +1,130 @@
+package bank;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.CharBuffer;
+
+// Sequential account numbers: a 9-digit sequence plus a Luhn check digit, e.g. sequence 12345
+// becomes "0000123455". The sequence is reserved in blocks; the highest reserved value is
+// written (and synced) to a small file before any number of a block is handed out, so a
+// restart continues after it and numbers are never reused, even for deleted accounts.
+// Unused parts of a block are skipped after a restart.
+//
+// Callers are spread over stripes by thread id, each stripe with its own block and lock,
+// so concurrent account openings only meet when a stripe needs a new block.
+public class BlockAccountNumberAllocator implements AccountNumberAllocator {
+    static final int DIGITS = 10;
+    private static final long MAX_SEQUENCE = 999_999_999L;
+    private static final int DEFAULT_BLOCK_SIZE = 1000;
+
+    private final File file;
+    private final int blockSize;
+    private final Stripe[] stripes;
+    private long reserved; // highest sequence handed to a block; guarded by this
+
+    private static final class Stripe {
+        long next;
+        long end; // exclusive; next == end means the stripe needs a new block
+    }
+
+    // block size from -Dbank.accounts.blockSize
+    public BlockAccountNumberAllocator(File file, long floor) {
+        this(file, floor, Integer.getInteger("bank.accounts.blockSize", DEFAULT_BLOCK_SIZE),
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    // floor: highest sequence already in use, in case the file is missing or behind
+    public BlockAccountNumberAllocator(File file, long floor, int blockSize, int stripes) {
+        this.file = file;
+        this.blockSize = Math.max(1, blockSize);
+        this.stripes = new Stripe[Integer.highestOneBit(Math.max(1, stripes) * 2 - 1)];
+        for (int i = 0; i < this.stripes.length; i++) this.stripes[i] = new Stripe();
+        this.reserved = Math.max(floor, readReserved(file));
+    }
+
+    @Override
+    public String next() {
+        Stripe s = stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)];
+        synchronized (s) {
+            if (s.next == s.end) {
+                long start = reserve();
+                if (start < 0) return null;
+                s.next = start;
+                s.end = Math.min(start + blockSize, MAX_SEQUENCE + 1);
+            }
+            return format(s.next++);
+        }
+    }
+
+    // first sequence of a new block, or -1 if it couldn't be recorded or the range is used up
+    private synchronized long reserve() {
+        if (reserved >= MAX_SEQUENCE) {
+            System.err.println("Account numbers exhausted");
+            return -1;
+        }
+        long end = Math.min(reserved + blockSize, MAX_SEQUENCE);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rwd")) {
+            raf.seek(0);
+            raf.writeLong(end);
+        } catch (IOException e) {
+            System.err.println("Cannot reserve account numbers in " + file + ": " + e.getMessage());
+            return -1;
+        }
+        long start = reserved + 1;
+        reserved = end;
+        return start;
+    }
+
+    private static long readReserved(File file) {
+        if (!file.exists()) return 0;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            return raf.length() >= 8 ? raf.readLong() : 0;
+        } catch (IOException e) {
+            System.err.println("Cannot read " + file + ": " + e.getMessage());
+            return 0;
+        }
+    }
+
+    static String format(long sequence) {
+        char[] c = new char[DIGITS];
+        long v = sequence;
+        for (int i = DIGITS - 2; i >= 0; i--) {
+            c[i] = (char) ('0' + v % 10);
+            v /= 10;
+        }
+        c[DIGITS - 1] = (char) ('0' + checkDigit(CharBuffer.wrap(c), DIGITS - 1));
+        return new String(c);
+    }
+
+    // the sequence of a number in this format, or -1 for anything else (e.g. older hex numbers)
+    static long sequenceOf(String accountNumber) {
+        if (!isValid(accountNumber)) return -1;
+        return Long.parseLong(accountNumber.substring(0, DIGITS - 1));
+    }
+
+    public static boolean isValid(CharSequence accountNumber) {
+        if (accountNumber == null || accountNumber.length() != DIGITS) return false;
+        for (int i = 0; i < DIGITS; i++) {
+            char ch = accountNumber.charAt(i);
+            if (ch < '0' || ch > '9') return false;
+        }
+        return accountNumber.charAt(DIGITS - 1) - '0' == checkDigit(accountNumber, DIGITS - 1);
+    }
+
+    // Luhn over the first len digits: doubling starts with the rightmost of them
+    static int checkDigit(CharSequence digits, int len) {
+        int sum = 0;
+        boolean dbl = true;
+        for (int i = len - 1; i >= 0; i--) {
+            int d = digits.charAt(i) - '0';
+            if (dbl) {
+                d *= 2;
+                if (d > 9) d -= 9;
+            }
+            sum += d;
+            dbl = !dbl;
+        }
+        return (10 - sum % 10) % 10;
+    }
+}
@@ -0,0 +1,243 @@
+package bank;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Single-writer execution of BankSystem mutations, in the style of the LMAX disruptor.
+// Callers claim a sequence number, fill the matching slot of a preallocated ring and publish
+// it; one business thread runs the commands in sequence order, so account balances are only
+// ever changed from that thread and their locks are never contended. Two stages follow the
+// business cursor:
+//   journal  writes everything the business thread appended to the journal since its last
+//            pass with one write() (one fsync with -Dbank.journal.fsync), then releases the
+//            callers of those commands
+//   log      hands the transaction log lines of those commands to TransactionLogger at once
+// A slot is reused once its caller has taken the result and the log stage is past it.
+// Threads spin briefly, then park until signalled (or PARK_NANOS pass).
+final class CommandPipeline {
+    static final int DEPOSIT = 1;
+    static final int WITHDRAW = 2;
+    static final int TRANSFER = 3;
+    static final int CREATE_USER = 4;
+    static final int DELETE_USER = 5;
+    static final int CREATE_ACCOUNT = 6;
+    static final int DELETE_ACCOUNT = 7;
+
+    // returned by execute() once the pipeline is closed; the caller runs the command itself
+    static final Object NOT_RUN = new Object();
+
+    private static final long CLOSED = Long.MIN_VALUE;
+    private static final int SPINS = 100;
+    private static final long PARK_NANOS = 1_000_000;
+
+    private static final class Slot {
+        volatile long published = -1; // seq of the command in the slot once it is filled
+        volatile long collected;       // seq whose caller has taken its result
+        int type;
+        String s1, s2, s3, s4;
+        long cents;
+        Object result;
+        Thread caller;
+        final List<String> messages = new ArrayList<>(4);
+        final EventBatch events = new EventBatch(); // typed entries, when the log is binary
+    }
+
+    private final BankSystem bank;
+    private final Slot[] ring;
+    private final int mask;
+    private final AtomicLong next = new AtomicLong(); // next seq to claim; CLOSED after close()
+    private volatile long end = Long.MAX_VALUE;       // seqs below this are run before stopping
+    private volatile long businessCursor = -1;        // last command run
+    private volatile long journalCursor = -1;         // last command journaled and released
+    private volatile long logCursor = -1;             // last command whose lines were logged
+
+    private final Thread business;
+    private final Thread journal;
+    private final Thread log;
+    private volatile boolean businessParked;
+    private volatile boolean journalParked;
+    private volatile boolean logParked;
+
+    CommandPipeline(BankSystem bank, int ringSize) {
+        if (ringSize < 2 || Integer.bitCount(ringSize) != 1) {
+            throw new IllegalArgumentException("ring size must be a power of two: " + ringSize);
+        }
+        this.bank = bank;
+        this.ring = new Slot[ringSize];
+        this.mask = ringSize - 1;
+        for (int i = 0; i < ringSize; i++) {
+            ring[i] = new Slot();
+            ring[i].collected = i - ringSize;
+        }
+        business = new Thread(this::runBusiness, "pipeline-business");
+        journal = new Thread(this::runJournal, "pipeline-journal");
+        log = new Thread(this::runLog, "pipeline-log");
+        for (Thread t : new Thread[] {business, journal, log}) {
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    Thread getBusinessThread() { return business; }
+
+    boolean isBusinessThread() { return Thread.currentThread() == business; }
+
+    // Runs the command on the business thread and returns its result once it is journaled:
+    // Boolean, or the account number (or null) for CREATE_ACCOUNT.
+    Object execute(int type, String s1, String s2, String s3, String s4, long cents) {
+        long seq;
+        do {
+            seq = next.get();
+            if (seq == CLOSED) return NOT_RUN;
+        } while (!next.compareAndSet(seq, seq + 1));
+
+        Slot slot = ring[(int) seq & mask];
+        long previous = seq - ring.length;
+        for (int polls = 0; slot.collected != previous || logCursor < previous; polls++) {
+            if (polls < SPINS) Thread.onSpinWait();
+            else LockSupport.parkNanos(PARK_NANOS / 100); // ring full
+        }
+        slot.type = type;
+        slot.s1 = s1;
+        slot.s2 = s2;
+        slot.s3 = s3;
+        slot.s4 = s4;
+        slot.cents = cents;
+        slot.caller = Thread.currentThread();
+        slot.published = seq;
+        if (businessParked) LockSupport.unpark(business);
+
+        for (int polls = 0; journalCursor < seq; polls++) {
+            if (polls < SPINS) Thread.onSpinWait();
+            else LockSupport.parkNanos(PARK_NANOS);
+        }
+        Object result = slot.result;
+        slot.result = null;
+        slot.s1 = slot.s2 = slot.s3 = slot.s4 = null;
+        slot.caller = null;
+        slot.collected = seq;
+        return result;
+    }
+
+    // Stops taking commands and returns once everything already claimed has run, been
+    // journaled and logged.
+    void close() {
+        end = next.getAndSet(CLOSED);
+        for (Thread t : new Thread[] {business, journal, log}) LockSupport.unpark(t);
+        for (Thread t : new Thread[] {business, journal, log}) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void runBusiness() {
+        long seq = 0;
+        int polls = 0;
+        while (seq < end) {
+            Slot slot = ring[(int) seq & mask];
+            if (slot.published != seq) {
+                if (++polls < SPINS) {
+                    Thread.onSpinWait();
+                } else {
+                    businessParked = true;
+                    if (slot.published != seq && seq < end) LockSupport.parkNanos(PARK_NANOS);
+                    businessParked = false;
+                }
+                continue;
+            }
+            polls = 0;
+            TransactionLogger.capture(slot.messages, slot.events);
+            try {
+                slot.result = run(slot);
+            } catch (RuntimeException e) {
+                System.err.println("Pipeline command " + slot.type + " failed: " + e);
+                slot.result = slot.type == CREATE_ACCOUNT ? null : Boolean.FALSE;
+            } finally {
+                TransactionLogger.capture(null, null);
+            }
+            businessCursor = seq++;
+            if (journalParked) LockSupport.unpark(journal);
+            if (logParked) LockSupport.unpark(log);
+        }
+    }
+
+    private Object run(Slot c) {
+        switch (c.type) {
+            // s3 is the idempotency key, if any
+            case DEPOSIT: return bank.applyDeposit(c.s1, c.cents, c.s3);
+            case WITHDRAW: return bank.applyWithdrawal(c.s1, c.cents, c.s3);
+            case TRANSFER: return bank.applyTransfer(c.s1, c.s2, c.cents, c.s3);
+            // the public methods run directly on this thread
+            case CREATE_USER: return bank.createUser(c.s1, c.s2, c.s3, c.s4);
+            case DELETE_USER: return bank.deleteUser(c.s1);
+            case CREATE_ACCOUNT: return bank.createAccountForUserCents(c.s1, c.s2, c.cents);
+            case DELETE_ACCOUNT: return bank.deleteAccount(c.s1);
+            default: throw new IllegalArgumentException("unknown command " + c.type);
+        }
+    }
+
+    private void runJournal() {
+        long done = -1;
+        int polls = 0;
+        while (true) {
+            long cursor = businessCursor;
+            if (cursor == done) {
+                if (done >= end - 1) return;
+                if (++polls < SPINS) {
+                    Thread.onSpinWait();
+                } else {
+                    journalParked = true;
+                    if (businessCursor == done && done < end - 1) LockSupport.parkNanos(PARK_NANOS);
+                    journalParked = false;
+                }
+                continue;
+            }
+            polls = 0;
+            bank.flushJournal();
+            journalCursor = cursor;
+            for (long seq = done + 1; seq <= cursor; seq++) LockSupport.unpark(ring[(int) seq & mask].caller);
+            done = cursor;
+        }
+    }
+
+    private void runLog() {
+        List<String> batch = new ArrayList<>();
+        EventBatch events = new EventBatch();
+        long done = -1;
+        int polls = 0;
+        while (true) {
+            long cursor = businessCursor;
+            if (cursor == done) {
+                if (done >= end - 1) return;
+                if (++polls < SPINS) {
+                    Thread.onSpinWait();
+                } else {
+                    logParked = true;
+                    if (businessCursor == done && done < end - 1) LockSupport.parkNanos(PARK_NANOS);
+                    logParked = false;
+                }
+                continue;
+            }
+            polls = 0;
+            for (long seq = done + 1; seq <= cursor; seq++) {
+                Slot slot = ring[(int) seq & mask];
+                batch.addAll(slot.messages);
+                slot.messages.clear();
+                events.addAll(slot.events);
+                slot.events.clear();
+            }
+            TransactionLogger.writeAll(events); // their balances were taken when they were captured
+            TransactionLogger.logAll(batch);
+            batch.clear();
+            events.clear();
+            logCursor = cursor;
+            done = cursor;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package bank;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Monotonic count (operations, failures, bytes written); striped so hot paths don't contend.
+public final class Counter implements CounterMBean {
+    private final String name;
+    private final LongAdder value = new LongAdder();
+
+    Counter(String name) {
+        this.name = name;
+    }
+
+    public String getName() { return name; }
+
+    public void increment() {
+        if (Metrics.ENABLED) value.increment();
+    }
+
+    public void add(long n) {
+        if (Metrics.ENABLED) value.add(n);
+    }
+
+    @Override
+    public long getValue() { return value.sum(); }
+}
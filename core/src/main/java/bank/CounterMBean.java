@@ -0,0 +1,5 @@
+package bank;
+
+public interface CounterMBean {
+    long getValue();
+}
@@ -0,0 +1,41 @@
+package bank;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+
+public class CurrentAccount extends Account {
+    private static final long serialVersionUID = 1L;
+    private long overdraftLimitCents; // allowed negative balance up to this amount
+
+    public CurrentAccount(String accountNumber, String ownerName, long initialBalanceCents, long overdraftLimitCents) {
+        super(accountNumber, ownerName, initialBalanceCents);
+        this.overdraftLimitCents = overdraftLimitCents;
+    }
+
+    @Override
+    public String getAccountType() {
+        return "Current";
+    }
+
+    public long getOverdraftLimitCents() { return overdraftLimitCents; }
+
+    @Override
+    protected void checkWithdrawal(long cents) throws InsufficientFundsException {
+        if (balanceCents - cents < -overdraftLimitCents) {
+            throw new InsufficientFundsException("Exceeded overdraft limit.");
+        }
+    }
+
+    @Override
+    protected void logWithdrawal(long cents, long newBalance) {
+        TransactionLogger.write(EventType.WITHDRAWAL, 1, accountNumber, "", cents, newBalance, 0, ownerName);
+    }
+
+    // older files store the limit as a double "overdraftLimit"
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField f = in.readFields();
+        overdraftLimitCents = f.defaulted("overdraftLimitCents")
+                ? Money.toCents(f.get("overdraftLimit", 0.0))
+                : f.get("overdraftLimitCents", 0L);
+    }
+}
@@ -0,0 +1,79 @@
+package bank;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+public class Customer implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private String userId;
+    private String name;
+    private String password; // simple plain-text for learning; in real apps hash it
+    private String role; // "admin", "employee", "customer"
+    // set-backed so membership checks stay O(1) for customers with thousands of accounts;
+    // linked to keep the order accounts were opened in
+    private Set<String> accountNumbers = new LinkedHashSet<>();
+    // created/deleted markers for BankSystem.readView(); null: loaded, never changed since
+    private transient volatile Versions.Node versions;
+
+    public Customer(String userId, String name, String password, String role) {
+        this.userId = userId;
+        this.name = name;
+        this.password = password;
+        this.role = role;
+    }
+
+    public String getUserId() { return userId; }
+    public String getName() { return name; }
+    public boolean checkPassword(String p) { return password.equals(p); }
+    String getPassword() { return password; } // for the snapshot writer only
+    public String getRole() { return role; }
+
+    Versions.Node versions() { return versions; }
+
+    // a user created (removed false) or deleted under commit c; callers hold this monitor
+    // or have not published the customer yet
+    Versions.Node pushVersion(Versions.Commit c, boolean removed) {
+        Versions.Node older = null;
+        if (removed) older = versions != null ? versions : new Versions.Node(Versions.ORIGIN, 0, false, false, null);
+        versions = new Versions.Node(c, 0, false, removed, older);
+        return versions;
+    }
+
+    public synchronized void addAccount(String accountNumber) {
+        accountNumbers.add(accountNumber);
+    }
+    public synchronized void removeAccount(String accountNumber) {
+        accountNumbers.remove(accountNumber);
+    }
+    public synchronized boolean hasAccount(String accountNumber) {
+        return accountNumbers.contains(accountNumber);
+    }
+    public synchronized int getAccountCount() { return accountNumbers.size(); }
+    // a copy, so callers can iterate while accounts are added or removed
+    public synchronized List<String> getAccountNumbers() { return new ArrayList<>(accountNumbers); }
+
+    // files written before the set was introduced hold an ArrayList under the same name
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField f = in.readFields();
+        userId = (String) f.get("userId", null);
+        name = (String) f.get("name", null);
+        password = (String) f.get("password", null);
+        role = (String) f.get("role", null);
+        Object accts = f.get("accountNumbers", null);
+        accountNumbers = new LinkedHashSet<>();
+        if (accts instanceof Collection) {
+            for (Object o : (Collection<?>) accts) accountNumbers.add((String) o);
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("User[%s] %s Role=%s Accounts=%s", userId, name, role, accountNumbers);
+    }
+}
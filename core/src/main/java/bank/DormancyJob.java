@@ -0,0 +1,28 @@
+package bank;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+// flags accounts with no customer activity for the given number of days
+public class DormancyJob implements TypedEndOfDayJob {
+    private final int inactiveDays;
+
+    public DormancyJob(int inactiveDays) {
+        this.inactiveDays = inactiveDays;
+    }
+
+    @Override
+    public String getName() { return "dormancy"; }
+
+    @Override
+    public boolean process(Account account, LocalDate businessDate, EventBatch events) {
+        if (account.isDormantFlag()) return false;
+        LocalDate cutoff = businessDate.minusDays(inactiveDays);
+        long cutoffMillis = cutoff.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        if (account.getLastActivityMillis() >= cutoffMillis) return false;
+        account.setDormant(true);
+        events.add(System.currentTimeMillis(), EventType.DORMANT, 0, account.getAccountNumber(), "",
+                cutoff.toEpochDay(), account.balanceCents, 0, "");
+        return true;
+    }
+}
@@ -0,0 +1,11 @@
+package bank;
+
+import java.time.LocalDate;
+
+// One step of the end-of-day run (see BankSystem.runEndOfDay). process() is called once per
+// account with the account lock held; it returns a log line if it changed the account, else null.
+public interface EndOfDayJob {
+    String getName();
+
+    String process(Account account, LocalDate businessDate);
+}
@@ -0,0 +1,6 @@
+package bank;
+
+// progress callback for BankSystem.runEndOfDay; called from pool threads as partitions finish
+public interface EndOfDayListener {
+    void partitionDone(int partitionsDone, int partitionsTotal, long accountsProcessed);
+}
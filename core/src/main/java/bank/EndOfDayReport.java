@@ -0,0 +1,42 @@
+package bank;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+// summary of one BankSystem.runEndOfDay call
+public class EndOfDayReport {
+    private final String runId;
+    private final int partitions;
+    private final int skippedPartitions;
+    private final long accountsProcessed;
+    private final Map<String, Long> changesByJob;
+    private final long elapsedMillis;
+
+    EndOfDayReport(String runId, int partitions, int skippedPartitions, long accountsProcessed,
+                   Map<String, Long> changesByJob, long elapsedMillis) {
+        this.runId = runId;
+        this.partitions = partitions;
+        this.skippedPartitions = skippedPartitions;
+        this.accountsProcessed = accountsProcessed;
+        this.changesByJob = new TreeMap<>(changesByJob);
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public String getRunId() { return runId; }
+    public int getPartitions() { return partitions; }
+    // partitions already completed by an earlier, interrupted run with the same id
+    public int getSkippedPartitions() { return skippedPartitions; }
+    public long getAccountsProcessed() { return accountsProcessed; }
+    public long getElapsedMillis() { return elapsedMillis; }
+
+    // number of accounts each job changed (by job name)
+    public long getChanges(String jobName) {
+        return changesByJob.getOrDefault(jobName, 0L);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("End of day %s: %d accounts in %d partitions (%d resumed) %s in %d ms",
+                runId, accountsProcessed, partitions, skippedPartitions, changesByJob, elapsedMillis);
+    }
+}
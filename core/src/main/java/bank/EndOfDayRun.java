@@ -0,0 +1,147 @@
+package bank;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Drives BankSystem.runEndOfDay. Accounts are split into partitions by a hash of the account
+// number (stable across restarts), partitions run in parallel on a fork-join pool, and each
+// finished partition is appended to a progress file. Each partition is also posted under an
+// idempotency key, journaled (or saved in the snapshot) together with its balances, which
+// covers a crash before its progress line is written. Rerunning with the same run id skips
+// the partitions that already finished, so nothing is applied twice.
+class EndOfDayRun {
+    private final BankSystem bank;
+    private final File progressFile; // null: not restartable
+    private final int partitions;
+    private final int parallelism;
+
+    EndOfDayRun(BankSystem bank, File progressFile, int partitions, int parallelism) {
+        this.bank = bank;
+        this.progressFile = progressFile;
+        this.partitions = partitions;
+        this.parallelism = parallelism;
+    }
+
+    EndOfDayReport run(String runId, LocalDate businessDate, List<EndOfDayJob> jobs, EndOfDayListener listener) {
+        long start = System.nanoTime();
+        Progress progress = progressFile == null ? new Progress(null, partitions) : Progress.open(progressFile, runId, partitions);
+        int total = progress.partitions;
+
+        List<List<Account>> parts = new ArrayList<>(total);
+        for (int i = 0; i < total; i++) parts.add(new ArrayList<>());
+        for (Account a : bank.getAccounts().values()) {
+            parts.get(Math.floorMod(a.getAccountNumber().hashCode(), total)).add(a);
+        }
+
+        Map<String, LongAdder> counts = new HashMap<>();
+        for (EndOfDayJob job : jobs) counts.put(job.getName(), new LongAdder());
+        int finished = progress.completed();
+        AtomicInteger skipped = new AtomicInteger(finished);
+        AtomicInteger done = new AtomicInteger(finished);
+        AtomicLong processed = new AtomicLong();
+        // in SNAPSHOT mode nothing is durable until the final save, so progress is only recorded then
+        boolean durablePerPartition = bank.isJournaled();
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < total; i++) {
+            if (progress.isDone(i)) continue;
+            int index = i;
+            List<Account> part = parts.get(i);
+            part.sort(Comparator.comparing(Account::getAccountNumber)); // global lock order
+            String key = progressFile == null ? null : "eod/" + runId + "/" + index + "/" + total;
+            tasks.add(() -> {
+                boolean posted = bank.applyEndOfDay(key, part, jobs, businessDate, counts);
+                if (durablePerPartition) progress.markDone(index);
+                if (!posted) skipped.incrementAndGet(); // by an attempt that stopped before its progress line
+                long n = posted ? processed.addAndGet(part.size()) : processed.get();
+                int d = done.incrementAndGet();
+                if (listener != null) listener.partitionDone(d, total, n);
+                return null;
+            });
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            for (Future<Void> f : pool.invokeAll(tasks)) f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("End of day run " + runId + " interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("End of day run " + runId + " failed; rerun to resume", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        bank.saveState();
+        if (!durablePerPartition) {
+            for (int i = 0; i < total; i++) progress.markDone(i);
+        }
+        Map<String, Long> changes = new HashMap<>();
+        counts.forEach((name, n) -> changes.put(name, n.sum()));
+        return new EndOfDayReport(runId, total, skipped.get(), processed.get(), changes,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    // Text file: run id, partition count, then one line per completed partition.
+    // Appending a line per partition keeps the update crash-safe.
+    private static final class Progress {
+        final File file;
+        final int partitions;
+        final BitSet done = new BitSet();
+
+        Progress(File file, int partitions) {
+            this.file = file;
+            this.partitions = partitions;
+        }
+
+        static Progress open(File file, String runId, int defaultPartitions) {
+            if (file.exists()) {
+                try {
+                    List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+                    if (lines.size() >= 2 && lines.get(0).equals(runId)) {
+                        // resume with the partition count the run started with
+                        Progress p = new Progress(file, Integer.parseInt(lines.get(1).trim()));
+                        for (String line : lines.subList(2, lines.size())) {
+                            if (!line.trim().isEmpty()) p.done.set(Integer.parseInt(line.trim()));
+                        }
+                        return p;
+                    }
+                } catch (IOException | NumberFormatException e) {
+                    System.err.println("Ignoring unreadable end-of-day progress file: " + e.getMessage());
+                }
+            }
+            Progress p = new Progress(file, defaultPartitions);
+            try (Writer w = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+                w.write(runId + "\n" + defaultPartitions + "\n");
+            } catch (IOException e) {
+                System.err.println("Cannot write end-of-day progress, run will not be resumable: " + e.getMessage());
+            }
+            return p;
+        }
+
+        synchronized boolean isDone(int partition) { return done.get(partition); }
+        synchronized int completed() { return done.cardinality(); }
+
+        synchronized void markDone(int partition) {
+            done.set(partition);
+            if (file == null) return;
+            try (FileOutputStream out = new FileOutputStream(file, true)) {
+                out.write((partition + "\n").getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                System.err.println("Cannot record end-of-day progress: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package bank;
+
+import java.nio.ByteBuffer;
+
+// Encoded events collected for one write (a batch, an end-of-day partition, a pipeline
+// slot); see TransactionLogger.writeAll. Cleared and reused, so after it has
+// grown to its working size adding events allocates nothing.
+final class EventBatch {
+    private ByteBuffer buf = ByteBuffer.allocate(16 * EventCodec.RECORD);
+    private int count;
+
+    void add(long timeMillis, EventType type, int detail, String account, String counterparty, long amount,
+             long balance, long counterBalance, String actor) {
+        int at = reserve(1);
+        EventCodec.encode(buf, at, timeMillis, type, detail, account, counterparty, amount, balance,
+                counterBalance, actor);
+        count++;
+    }
+
+    void addAll(EventBatch other) {
+        if (other.count == 0) return;
+        int at = reserve(other.count);
+        buf.put(at, other.buf, 0, other.count * EventCodec.RECORD);
+        count += other.count;
+    }
+
+    // offset of room for n more records
+    private int reserve(int n) {
+        int at = count * EventCodec.RECORD;
+        int need = at + n * EventCodec.RECORD;
+        if (need > buf.capacity()) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(buf.capacity() * 2, need));
+            bigger.put(0, buf, 0, at);
+            buf = bigger;
+        }
+        return at;
+    }
+
+    int size() { return count; }
+
+    boolean isEmpty() { return count == 0; }
+
+    void clear() { count = 0; }
+
+    // the records, as a buffer positioned over them
+    ByteBuffer records() {
+        return buf.duplicate().position(0).limit(count * EventCodec.RECORD);
+    }
+
+    TransactionEvent get(int i) {
+        return EventCodec.decode(buf, i * EventCodec.RECORD);
+    }
+}
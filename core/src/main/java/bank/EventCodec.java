@@ -0,0 +1,120 @@
+package bank;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+// Fixed-layout binary form of a TransactionEvent, RECORD bytes each, big-endian:
+//   0  long  time, epoch millis
+//   8  long  amount in cents
+//   16 long  balance in cents
+//   24 long  counterparty balance in cents
+//   32 byte  EventType code
+//   33 byte  detail
+//   34 14 bytes account number, ASCII, zero-padded
+//   48 14 bytes counterparty account number, likewise
+//   62 18 bytes actor, UTF-8, zero-padded, cut at a character boundary if longer
+// Record i of a log starts at byte i * RECORD, so the log needs no index to be paged and
+// a record is read back without parsing text. Encoding writes straight into the caller's
+// buffer and allocates nothing.
+final class EventCodec {
+    static final int RECORD = 80;
+    private static final int TIME = 0, AMOUNT = 8, BALANCE = 16, COUNTER_BALANCE = 24, TYPE = 32, DETAIL = 33;
+    private static final int ACCOUNT = 34, COUNTERPARTY = 48, ACTOR = 62;
+    private static final int ACCOUNT_BYTES = 14, ACTOR_BYTES = 18;
+
+    private EventCodec() {}
+
+    // writes one record at index at of buf; buf's position is left alone
+    static void encode(ByteBuffer buf, int at, long timeMillis, EventType type, int detail, String account,
+                       String counterparty, long amount, long balance, long counterBalance, String actor) {
+        buf.putLong(at + TIME, timeMillis);
+        buf.putLong(at + AMOUNT, amount);
+        buf.putLong(at + BALANCE, balance);
+        buf.putLong(at + COUNTER_BALANCE, counterBalance);
+        buf.put(at + TYPE, type.code);
+        buf.put(at + DETAIL, (byte) detail);
+        putAscii(buf, at + ACCOUNT, ACCOUNT_BYTES, account);
+        putAscii(buf, at + COUNTERPARTY, ACCOUNT_BYTES, counterparty);
+        putUtf8(buf, at + ACTOR, ACTOR_BYTES, actor);
+    }
+
+    private static void putAscii(ByteBuffer buf, int at, int width, String s) {
+        int n = s == null ? 0 : Math.min(s.length(), width);
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            buf.put(at + i, c < 0x80 ? (byte) c : (byte) '?');
+        }
+        for (int i = n; i < width; i++) buf.put(at + i, (byte) 0);
+    }
+
+    private static void putUtf8(ByteBuffer buf, int at, int width, String s) {
+        int len = s == null ? 0 : s.length();
+        int p = 0;
+        for (int i = 0; i < len; i++) {
+            int c = s.charAt(i);
+            int chars = 1;
+            if (Character.isHighSurrogate((char) c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+                c = Character.toCodePoint((char) c, s.charAt(i + 1));
+                chars = 2;
+            } else if (Character.isSurrogate((char) c)) {
+                c = '?';
+            }
+            int bytes = c < 0x80 ? 1 : c < 0x800 ? 2 : c < 0x10000 ? 3 : 4;
+            if (p + bytes > width) break;
+            if (bytes == 1) {
+                buf.put(at + p++, (byte) c);
+            } else {
+                int shift = 6 * (bytes - 1);
+                buf.put(at + p++, (byte) ((0xF00 >> bytes) | (c >> shift)));
+                for (shift -= 6; shift >= 0; shift -= 6) buf.put(at + p++, (byte) (0x80 | ((c >> shift) & 0x3F)));
+            }
+            i += chars - 1;
+        }
+        for (; p < width; p++) buf.put(at + p, (byte) 0);
+    }
+
+    // null if the record's type is unknown (a torn or foreign record)
+    static TransactionEvent decode(ByteBuffer buf, int at) {
+        EventType type = EventType.of(buf.get(at + TYPE));
+        if (type == null) return null;
+        return new TransactionEvent(buf.getLong(at + TIME), type, buf.get(at + DETAIL),
+                string(buf, at + ACCOUNT, ACCOUNT_BYTES), string(buf, at + COUNTERPARTY, ACCOUNT_BYTES),
+                buf.getLong(at + AMOUNT), buf.getLong(at + BALANCE), buf.getLong(at + COUNTER_BALANCE),
+                string(buf, at + ACTOR, ACTOR_BYTES));
+    }
+
+    // the text log line for the record, or a placeholder for an unreadable one
+    static String render(ByteBuffer buf, int at) {
+        TransactionEvent e = decode(buf, at);
+        return e != null ? e.toString() : "(unreadable record " + buf.get(at + TYPE) + ")";
+    }
+
+    static long time(ByteBuffer buf, int at) {
+        return buf.getLong(at + TIME);
+    }
+
+    // a record time as text log lines are stamped, in the system time zone
+    static LocalDateTime localTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    // the record's account and counterparty, for StatementIndex; "" when unused
+    static String account(ByteBuffer buf, int at) {
+        return string(buf, at + ACCOUNT, ACCOUNT_BYTES);
+    }
+
+    static String counterparty(ByteBuffer buf, int at) {
+        return string(buf, at + COUNTERPARTY, ACCOUNT_BYTES);
+    }
+
+    private static String string(ByteBuffer buf, int at, int width) {
+        int n = 0;
+        while (n < width && buf.get(at + n) != 0) n++;
+        byte[] b = new byte[n];
+        for (int i = 0; i < n; i++) b[i] = buf.get(at + i);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,279 @@
+package bank;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Background writer for binary events (TransactionLogger with -Dbank.log.format=binary).
+// Callers encode their record straight into a shared buffer; a single thread swaps in the
+// spare buffer and writes the full one with one call, so handing an event over allocates
+// nothing. Durability modes as for AsyncLogWriter, except that PER_ENTRY forces once per
+// buffer like GROUP_COMMIT: each caller still returns only once its record is on disk.
+final class EventLogWriter implements Closeable {
+    private final AsyncLogWriter.Durability durability;
+    private final LogSegments segments;
+    private final int capacity; // records per buffer
+    private final int maxBatch;
+    private final long flushNanos;
+    private final Thread worker;
+
+    // guarded by lock; producers wait on room, the writer on wake, durable callers on written
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition room = lock.newCondition();
+    private final Condition wake = lock.newCondition();
+    private final Condition written = lock.newCondition();
+    private ByteBuffer filling;
+    private ByteBuffer spare;
+    private int pending;          // records in filling
+    private long firstPending;    // nanoTime the oldest of them arrived
+    private long appended;        // records handed over so far
+    private long flushWanted;     // flush() waits for this many records
+    private boolean writerIdle;
+    private volatile boolean running = true;
+    private volatile long done;   // records written (and forced, unless BEST_EFFORT)
+
+    // only touched by the worker
+    private FileChannel channel;
+    private int generation;
+
+    // counters, as AsyncLogWriter.Stats
+    private int peak;
+    private long blockedPuts;
+    private long blockedNanos;
+    private volatile long batches;
+    private volatile long forces;
+
+    EventLogWriter(LogSegments segments, AsyncLogWriter.Durability durability, int capacity, int maxBatch,
+                   long flushMillis) throws IOException {
+        this.segments = segments;
+        this.durability = durability;
+        this.capacity = Math.max(capacity, 1);
+        this.maxBatch = Math.max(1, Math.min(maxBatch, this.capacity));
+        this.flushNanos = TimeUnit.MILLISECONDS.toNanos(flushMillis);
+        this.filling = ByteBuffer.allocateDirect(this.capacity * EventCodec.RECORD);
+        this.spare = ByteBuffer.allocateDirect(this.capacity * EventCodec.RECORD);
+        this.generation = segments.getGeneration();
+        this.channel = open();
+        this.worker = new Thread(this::run, "transaction-event-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    private FileChannel open() throws IOException {
+        return FileChannel.open(segments.activeFile().toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    // returns false once the writer has been closed; the caller should write the event itself
+    boolean append(long timeMillis, EventType type, int detail, String account, String counterparty, long amount,
+                   long balance, long counterBalance, String actor) {
+        long seq;
+        lock.lock();
+        try {
+            if (!awaitRoom()) return false;
+            EventCodec.encode(filling, pending * EventCodec.RECORD, timeMillis, type, detail, account,
+                    counterparty, amount, balance, counterBalance, actor);
+            seq = added(1);
+        } finally {
+            lock.unlock();
+        }
+        if (durability != AsyncLogWriter.Durability.BEST_EFFORT) awaitDone(seq);
+        return true;
+    }
+
+    // all of batch, in order; in the durable modes waits for the last record only
+    boolean appendAll(EventBatch batch) {
+        ByteBuffer records = batch.records();
+        int total = batch.size();
+        long seq = 0;
+        for (int from = 0; from < total; ) {
+            lock.lock();
+            try {
+                if (!awaitRoom()) return from > 0; // the rest is the caller's to write
+                int n = Math.min(total - from, capacity - pending);
+                filling.put(pending * EventCodec.RECORD, records, from * EventCodec.RECORD, n * EventCodec.RECORD);
+                seq = added(n);
+                from += n;
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (seq > 0 && durability != AsyncLogWriter.Durability.BEST_EFFORT) awaitDone(seq);
+        return true;
+    }
+
+    // holding lock: waits while the buffer is full; false once closed
+    private boolean awaitRoom() {
+        if (running && pending == capacity) {
+            long start = System.nanoTime();
+            blockedPuts++;
+            while (running && pending == capacity) {
+                wake.signal();
+                try {
+                    room.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            blockedNanos += System.nanoTime() - start;
+        }
+        return running;
+    }
+
+    // holding lock: n records were encoded into filling; returns the last one's sequence
+    private long added(int n) {
+        if (pending == 0) firstPending = System.nanoTime();
+        pending += n;
+        appended += n;
+        if (pending > peak) peak = pending;
+        // the durable modes have callers waiting; otherwise the timer or a full batch decides
+        if (writerIdle && (durability != AsyncLogWriter.Durability.BEST_EFFORT || pending >= maxBatch)) {
+            wake.signal();
+        }
+        return appended;
+    }
+
+    // blocks until everything handed over before this call is written (and forced unless BEST_EFFORT)
+    void flush() {
+        long seq;
+        lock.lock();
+        try {
+            seq = appended;
+            if (done >= seq) return;
+            flushWanted = Math.max(flushWanted, seq);
+            wake.signal();
+        } finally {
+            lock.unlock();
+        }
+        awaitDone(seq);
+    }
+
+    private void awaitDone(long seq) {
+        lock.lock();
+        try {
+            while (done < seq) {
+                if (!worker.isAlive()) {
+                    System.err.println("Event writer stopped before record " + seq + " was written");
+                    return;
+                }
+                try {
+                    written.await(10, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            ByteBuffer full;
+            int n;
+            long upTo;
+            lock.lock();
+            try {
+                while (!due()) {
+                    long waitNanos = pending == 0 ? flushNanos : firstPending + flushNanos - System.nanoTime();
+                    writerIdle = true;
+                    try {
+                        wake.awaitNanos(Math.max(TimeUnit.MILLISECONDS.toNanos(1), waitNanos));
+                    } catch (InterruptedException e) {
+                        running = false;
+                    }
+                    writerIdle = false;
+                }
+                if (pending == 0) break; // closed and drained
+                full = filling;
+                n = pending;
+                upTo = appended;
+                filling = spare;
+                spare = full;
+                pending = 0;
+                room.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            write(full, n);
+            lock.lock();
+            try {
+                done = upTo;
+                written.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Closing event log failed: " + e.getMessage());
+        }
+    }
+
+    // holding lock
+    private boolean due() {
+        if (!running) return true;
+        if (pending == 0) return false;
+        return durability != AsyncLogWriter.Durability.BEST_EFFORT || pending >= maxBatch
+                || flushWanted > done || System.nanoTime() - firstPending >= flushNanos;
+    }
+
+    private void write(ByteBuffer full, int n) {
+        try {
+            if (segments.getGeneration() != generation) reopen(); // rolled by a direct write
+            if (segments.rollIfDue(EventCodec.time(full, 0), channel.size())) reopen();
+            full.position(0).limit(n * EventCodec.RECORD);
+            while (full.hasRemaining()) channel.write(full);
+            if (durability != AsyncLogWriter.Durability.BEST_EFFORT) {
+                channel.force(false);
+                forces++;
+            }
+            batches++;
+        } catch (IOException e) {
+            System.err.println("Logging failed: " + e.getMessage());
+        } finally {
+            full.clear();
+        }
+    }
+
+    private void reopen() throws IOException {
+        channel.close();
+        generation = segments.getGeneration();
+        channel = open();
+    }
+
+    AsyncLogWriter.Stats getStats() {
+        lock.lock();
+        try {
+            return new AsyncLogWriter.Stats(pending, peak, capacity, appended, done, batches, forces, blockedPuts,
+                    blockedNanos);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            running = false;
+            wake.signal(); // the writer drains what is left
+            room.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
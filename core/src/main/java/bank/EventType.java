@@ -0,0 +1,42 @@
+package bank;
+
+// What a transaction log entry records; see TransactionEvent for the fields each one uses.
+// The codes are stored in binary logs, so they never change.
+public enum EventType {
+    USER_CREATED(1),     // actor: the user id
+    USER_DELETED(2),     // actor: the user id
+    ACCOUNT_OPENED(3),   // detail: 'S'avings or 'C'urrent
+    ACCOUNT_CLOSED(4),   // balance: at closing; detail: 1 when closed with its user
+    DEPOSIT(5),
+    WITHDRAWAL(6),       // detail: 1 from a current account (overdraft allowed)
+    TRANSFER(7),         // counterparty receives; counterBalance is its new balance
+    INTEREST(8),
+    OVERDRAFT_FEE(9),
+    DORMANT(10),         // amount: epoch day of the activity cutoff
+    BATCH_DEPOSIT(11),
+    BATCH_WITHDRAWAL(12),
+    BATCH_APPLIED(13),   // amount: postings applied, balance: postings in the batch, detail: 1 if atomic
+    DEPOSIT_FAILED(14),  // detail: a failure reason
+    WITHDRAWAL_FAILED(15),
+    TRANSFER_FAILED(16);
+
+    // detail of the *_FAILED events
+    static final int INSUFFICIENT_FUNDS = 1;
+    static final int OVERFLOW = 2;
+
+    private static final EventType[] BY_CODE = new EventType[32];
+    static {
+        for (EventType t : values()) BY_CODE[t.code] = t;
+    }
+
+    final byte code;
+
+    EventType(int code) {
+        this.code = (byte) code;
+    }
+
+    // null for a code this version does not know
+    static EventType of(int code) {
+        return code > 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+}
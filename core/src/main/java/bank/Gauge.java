@@ -0,0 +1,19 @@
+package bank;
+
+import java.util.function.LongSupplier;
+
+// A value read when asked for, such as the log writer's queue depth.
+public final class Gauge implements GaugeMBean {
+    private final String name;
+    private final LongSupplier source;
+
+    Gauge(String name, LongSupplier source) {
+        this.name = name;
+        this.source = source;
+    }
+
+    public String getName() { return name; }
+
+    @Override
+    public long getValue() { return source.getAsLong(); }
+}
@@ -0,0 +1,5 @@
+package bank;
+
+public interface GaugeMBean {
+    long getValue();
+}
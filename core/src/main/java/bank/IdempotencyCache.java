@@ -0,0 +1,169 @@
+package bank;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Outcomes of recent requests that carried an idempotency key, so a client retrying after a
+// timeout gets the original outcome instead of the money moving twice. Holds at most
+// -Dbank.idempotency.maxEntries (default 100,000) keys, dropping the oldest first, each for
+// -Dbank.idempotency.ttlSeconds (default 86,400). Entries are saved with the snapshot of
+// their home account's shard and journaled with the change they record.
+final class IdempotencyCache {
+    static final class Entry {
+        final String key;
+        final String request; // what was asked, e.g. "deposit 0000000012 500"; a retry must match
+        final String home;    // account the request is about; decides where the entry is stored
+        final long expiresAt; // epoch millis
+        private boolean done;     // outcome recorded; guarded by this, like the rest
+        private boolean outcome;
+        private boolean released; // duplicates may return it
+        private boolean abandoned;
+
+        Entry(String key, String request, String home, long expiresAt) {
+            this.key = key;
+            this.request = request;
+            this.home = home;
+            this.expiresAt = expiresAt;
+        }
+
+        Entry(String key, String request, String home, long expiresAt, boolean outcome) {
+            this(key, request, home, expiresAt);
+            this.done = true;
+            this.outcome = outcome;
+            this.released = true;
+        }
+
+        synchronized boolean isDone() { return done; }
+
+        synchronized boolean isReleased() { return released; }
+
+        synchronized boolean getOutcome() { return outcome; }
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entry> order = new ConcurrentLinkedQueue<>(); // oldest first
+    private final int maxEntries;
+    private final long ttlMillis;
+
+    IdempotencyCache() {
+        this(Integer.getInteger("bank.idempotency.maxEntries", 100_000),
+                Long.getLong("bank.idempotency.ttlSeconds", 86_400L) * 1000);
+    }
+
+    IdempotencyCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+    }
+
+    // Registers key as running for the caller, who must then call record() and finish(), or
+    // abandon(), and returns null; or returns the outcome recorded for key, waiting if its
+    // first request is still running. A key reused for a different request returns false.
+    Boolean claim(String key, String request, String home) {
+        while (true) {
+            long now = System.currentTimeMillis();
+            Entry mine = new Entry(key, request, home, now + ttlMillis);
+            Entry e = entries.putIfAbsent(key, mine);
+            if (e == null) {
+                order.add(mine);
+                evict(now);
+                return null;
+            }
+            if (e.expiresAt <= now) {
+                entries.remove(key, e);
+                continue;
+            }
+            synchronized (e) {
+                while (!e.released && !e.abandoned) {
+                    try {
+                        e.wait();
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        return Boolean.FALSE;
+                    }
+                }
+                if (e.abandoned) continue; // the first request failed outright; this one runs
+                return e.request.equals(request) && e.outcome;
+            }
+        }
+    }
+
+    // Records the outcome of a claimed key and returns its entry. Called before the change is
+    // journaled, so a snapshot that contains the change also finds the outcome.
+    Entry record(String key, boolean outcome) {
+        Entry e = entries.get(key);
+        if (e == null) return null;
+        synchronized (e) {
+            e.outcome = outcome;
+            e.done = true;
+        }
+        return e;
+    }
+
+    // lets duplicates waiting in claim() return, once the caller's own request has returned
+    void finish(String key) {
+        Entry e = entries.get(key);
+        if (e == null) return;
+        synchronized (e) {
+            e.released = true;
+            e.notifyAll();
+        }
+    }
+
+    // the claimed request threw; forget the key so a retry runs again
+    void abandon(String key) {
+        Entry e = entries.get(key);
+        if (e == null) return;
+        synchronized (e) {
+            if (e.done) return;
+            e.abandoned = true;
+            entries.remove(key, e);
+            e.notifyAll();
+        }
+    }
+
+    // from a snapshot or journal replay; a later record for the same key wins
+    void restore(Entry e) {
+        if (e.expiresAt <= System.currentTimeMillis()) return;
+        entries.put(e.key, e);
+        order.add(e);
+        evict(System.currentTimeMillis());
+    }
+
+    // completed, unexpired entries
+    List<Entry> snapshot() {
+        long now = System.currentTimeMillis();
+        List<Entry> out = new ArrayList<>(entries.size());
+        for (Entry e : entries.values()) {
+            if (e.isDone() && e.expiresAt > now) out.add(e);
+        }
+        return out;
+    }
+
+    void clear() {
+        entries.clear();
+        order.clear();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    // Drops expired entries and, over the bound, the oldest finished ones. An entry still
+    // running at the head stops it; the bound is caught up on a later call.
+    private void evict(long now) {
+        while (true) {
+            Entry head = order.peek();
+            if (head == null) return;
+            if (entries.get(head.key) != head) { // replaced or removed already
+                order.remove(head);
+                continue;
+            }
+            if (head.expiresAt > now && entries.size() <= maxEntries) return;
+            if (!head.isReleased()) return;
+            if (order.remove(head)) entries.remove(head.key, head);
+        }
+    }
+}
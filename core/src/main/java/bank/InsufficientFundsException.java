@@ -1,5 +1,8 @@
-public class InsufficientFundsException extends Exception {
-    public InsufficientFundsException(String message) {
-        super(message);
-    }
-}
+package bank;
+
+public class InsufficientFundsException extends Exception {
+    private static final long serialVersionUID = 1L;
+    public InsufficientFundsException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,30 @@
+package bank;
+
+import java.time.LocalDate;
+
+// posts one period of interest to every savings account: its annual rate divided by the
+// periods in a year (365 for a daily end-of-day run, 1 to credit a full year at once)
+public class InterestAccrualJob implements TypedEndOfDayJob {
+    private final int periodsPerYear;
+
+    public InterestAccrualJob() {
+        this(365);
+    }
+
+    public InterestAccrualJob(int periodsPerYear) {
+        if (periodsPerYear < 1) throw new IllegalArgumentException("periodsPerYear must be at least 1: " + periodsPerYear);
+        this.periodsPerYear = periodsPerYear;
+    }
+
+    @Override
+    public String getName() { return "interest"; }
+
+    @Override
+    public boolean process(Account account, LocalDate businessDate, EventBatch events) {
+        if (!(account instanceof SavingsAccount)) return false;
+        long interest = ((SavingsAccount) account).accrueInterest(periodsPerYear);
+        events.add(System.currentTimeMillis(), EventType.INTEREST, 0, account.getAccountNumber(), "", interest,
+                account.balanceCents, 0, "");
+        return true;
+    }
+}
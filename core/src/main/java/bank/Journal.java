@@ -0,0 +1,367 @@
+package bank;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.function.UnaryOperator;
+import java.util.zip.CRC32;
+
+// Append-only write-ahead log of BankSystem mutations.
+// Each record is framed as [length][type, seq, fields...][crc32] so a torn write at the
+// tail is detected on replay and cut off. Sequence numbers let a checkpoint remember
+// how much of the journal it already contains.
+public class Journal implements Closeable {
+    private static final int MAGIC = 0x42414e4b; // "BANK"
+    private static final int VERSION = 3; // 3: balances with activity and dormancy; 2: amounts in cents; 1 stored doubles
+    private static final int MAX_RECORD = 64 << 20; // large enough for a SET_BALANCES batch
+    private static final Counter BYTES_WRITTEN = Metrics.counter("journal.bytesWritten");
+
+    static final byte CREATE_USER = 1;
+    static final byte DELETE_USER = 2;
+    static final byte CREATE_ACCOUNT = 3;
+    static final byte DELETE_ACCOUNT = 4;
+    static final byte SET_BALANCE = 5;
+    static final byte SET_BALANCES = 6;
+    static final byte SET_DORMANT = 7;
+    static final byte RESULT = 8;
+
+    // callbacks used while replaying a journal file
+    public interface Visitor {
+        void createUser(String userId, String name, String password, String role);
+        void deleteUser(String userId);
+        void createAccount(String userId, String accountNumber, String type, long balanceCents,
+                           double interestRate, long overdraftLimitCents);
+        void deleteAccount(String accountNumber);
+        void setBalance(String accountNumber, long balanceCents); // versions 1 and 2
+        void setState(String accountNumber, long balanceCents, long lastActivityMillis, boolean dormant);
+        void setDormant(String accountNumber, boolean dormant);
+        void result(String key, String request, String home, long expiresAt, boolean outcome);
+    }
+
+    private final File file;
+    private final File rolledFile;
+    private final boolean fsync;
+    private final UnaryOperator<OutputStream> wrap;
+    private FileOutputStream fileOut;
+    private OutputStream out; // records go through here: fileOut, or what tests wrap it in
+    private long size; // bytes up to the end of the last whole record; a failed write is cut back to it
+    private long lastSeq;
+    private int recordsSinceRoll;
+
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream(128);
+    private final DataOutputStream fields = new DataOutputStream(body);
+    private final CRC32 crc = new CRC32();
+    // records appended by deferringThread wait here until flushDeferred()
+    private Thread deferringThread;
+    private final ByteArrayOutputStream deferred = new ByteArrayOutputStream(64 * 1024);
+
+    public Journal(File file, long lastSeq, boolean fsync) throws IOException {
+        this(file, lastSeq, fsync, UnaryOperator.identity());
+    }
+
+    // wrap: applied to every journal file opened; tests pass one whose writes fail
+    Journal(File file, long lastSeq, boolean fsync, UnaryOperator<OutputStream> wrap) throws IOException {
+        this.file = file;
+        this.rolledFile = rolledFileFor(file);
+        this.lastSeq = lastSeq;
+        this.fsync = fsync;
+        this.wrap = wrap;
+        openForAppend();
+    }
+
+    // the file a journal is moved to while a checkpoint is being written
+    public static File rolledFileFor(File file) {
+        return new File(file.getPath() + ".old");
+    }
+
+    public synchronized long getLastSeq() { return lastSeq; }
+    public synchronized int getRecordsSinceRoll() { return recordsSinceRoll; }
+
+    public synchronized void appendCreateUser(String userId, String name, String password, String role) throws IOException {
+        begin(CREATE_USER);
+        fields.writeUTF(userId);
+        fields.writeUTF(name);
+        fields.writeUTF(password);
+        fields.writeUTF(role);
+        commit();
+    }
+
+    public synchronized void appendDeleteUser(String userId) throws IOException {
+        begin(DELETE_USER);
+        fields.writeUTF(userId);
+        commit();
+    }
+
+    public synchronized void appendCreateAccount(String userId, String accountNumber, String type, long balanceCents,
+                                                 double interestRate, long overdraftLimitCents) throws IOException {
+        begin(CREATE_ACCOUNT);
+        fields.writeUTF(userId);
+        fields.writeUTF(accountNumber);
+        fields.writeUTF(type);
+        fields.writeLong(balanceCents);
+        fields.writeDouble(interestRate);
+        fields.writeLong(overdraftLimitCents);
+        commit();
+    }
+
+    public synchronized void appendDeleteAccount(String accountNumber) throws IOException {
+        begin(DELETE_ACCOUNT);
+        fields.writeUTF(accountNumber);
+        commit();
+    }
+
+    // Balance records carry the account's activity clock and dormancy flag too: a deposit
+    // resets both, and a snapshot may hold the old ones. Callers hold the accounts' locks.
+    public synchronized void appendBalance(Account a) throws IOException {
+        begin(SET_BALANCE);
+        writeState(a);
+        commit();
+    }
+
+    // several accounts in one record, so they replay together or not at all (transfers, batches,
+    // end-of-day partitions)
+    public synchronized void appendBalances(Account[] accounts, int count) throws IOException {
+        begin(SET_BALANCES);
+        fields.writeInt(count);
+        for (int i = 0; i < count; i++) writeState(accounts[i]);
+        commit();
+    }
+
+    // An idempotency key's outcome together with the balances the request changed (none when
+    // it failed), so a retry after a crash either finds both or neither.
+    public synchronized void appendResult(String key, String request, String home, long expiresAt, boolean outcome,
+                                          Account[] accounts, int count) throws IOException {
+        begin(RESULT);
+        fields.writeUTF(key);
+        fields.writeUTF(request);
+        fields.writeUTF(home);
+        fields.writeLong(expiresAt);
+        fields.writeBoolean(outcome);
+        fields.writeInt(count);
+        for (int i = 0; i < count; i++) writeState(accounts[i]);
+        commit();
+    }
+
+    private void writeState(Account a) throws IOException {
+        fields.writeUTF(a.getAccountNumber());
+        fields.writeLong(a.balanceCents);
+        fields.writeLong(a.getLastActivityMillis());
+        fields.writeBoolean(a.isDormantFlag());
+    }
+
+    // Starts a fresh journal file and returns the last sequence number written to the old one.
+    // The old file stays on disk until discardRolled(), so a crash while the checkpoint is
+    // being written still replays it.
+    public synchronized long roll() throws IOException {
+        flushDeferred();
+        out.close();
+        Files.move(file.toPath(), rolledFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        openForAppend();
+        recordsSinceRoll = 0;
+        return lastSeq;
+    }
+
+    // While set, records appended by thread t are buffered and flushDeferred() writes them out
+    // with one write() (and one fsync). Appends from any other thread flush the buffer first so
+    // the file stays in sequence order. null writes out what is buffered and stops deferring.
+    public synchronized void deferFor(Thread t) throws IOException {
+        flushDeferred();
+        deferringThread = t;
+    }
+
+    public synchronized void flushDeferred() throws IOException {
+        if (deferred.size() == 0) return;
+        try {
+            deferred.writeTo(out);
+            if (fsync) fileOut.getFD().sync();
+        } catch (IOException e) {
+            throw cutBack(e);
+        } finally {
+            deferred.reset(); // on failure the caller falls back to a snapshot covering them
+        }
+        size += deferred.size();
+        BYTES_WRITTEN.add(deferred.size());
+    }
+
+    public void discardRolled() {
+        if (rolledFile.exists() && !rolledFile.delete()) {
+            System.err.println("Could not delete old journal: " + rolledFile);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flushDeferred();
+        out.close();
+    }
+
+    private void openForAppend() throws IOException {
+        boolean fresh = !file.exists() || file.length() == 0;
+        fileOut = new FileOutputStream(file, true);
+        if (fresh) {
+            DataOutputStream header = new DataOutputStream(fileOut);
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+            header.flush();
+        }
+        size = fileOut.getChannel().size();
+        out = wrap.apply(fileOut);
+    }
+
+    private void begin(byte type) throws IOException {
+        body.reset();
+        fields.writeByte(type);
+        fields.writeLong(lastSeq + 1);
+    }
+
+    private void commit() throws IOException {
+        int len = body.size();
+        byte[] record = new byte[len + 8];
+        writeInt(record, 0, len);
+        System.arraycopy(body.toByteArray(), 0, record, 4, len);
+        crc.reset();
+        crc.update(record, 4, len);
+        writeInt(record, len + 4, (int) crc.getValue());
+        if (deferringThread == Thread.currentThread()) {
+            deferred.write(record);
+        } else {
+            flushDeferred();
+            try {
+                out.write(record); // one write() per record
+                if (fsync) fileOut.getFD().sync();
+            } catch (IOException e) {
+                throw cutBack(e);
+            }
+            size += record.length;
+            BYTES_WRITTEN.add(record.length);
+        }
+        lastSeq++;
+        recordsSinceRoll++;
+    }
+
+    // A write that failed part way may have left the start of a record in the file. Replay
+    // stops at the first bad record, so everything appended after it would be lost: cut the
+    // file back to the last whole record before anything else is written.
+    private IOException cutBack(IOException e) {
+        try {
+            fileOut.getChannel().truncate(size);
+        } catch (IOException t) {
+            e.addSuppressed(t);
+        }
+        return e;
+    }
+
+    private static void writeInt(byte[] b, int off, int v) {
+        b[off] = (byte) (v >>> 24);
+        b[off + 1] = (byte) (v >>> 16);
+        b[off + 2] = (byte) (v >>> 8);
+        b[off + 3] = (byte) v;
+    }
+
+    // Replays every record with seq > afterSeq and returns the highest seq seen (or afterSeq).
+    // A torn or corrupt tail is truncated so later appends start on a clean record boundary.
+    public static long replay(File file, long afterSeq, Visitor v) throws IOException {
+        if (!file.exists() || file.length() == 0) return afterSeq;
+        long last = afterSeq;
+        long good;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a journal file: " + file);
+            int version = in.readInt();
+            if (version < 1 || version > VERSION) throw new IOException("Unsupported journal version " + version + ": " + file);
+            good = 8;
+            CRC32 check = new CRC32();
+            while (true) {
+                int len;
+                byte[] rec;
+                try {
+                    len = in.readInt();
+                    if (len <= 0 || len > MAX_RECORD) break;
+                    rec = new byte[len];
+                    in.readFully(rec);
+                    check.reset();
+                    check.update(rec, 0, len);
+                    if (in.readInt() != (int) check.getValue()) break;
+                } catch (EOFException e) {
+                    break;
+                }
+                long seq = apply(rec, version, afterSeq, v);
+                if (seq > last) last = seq;
+                good += len + 8;
+            }
+        }
+        if (good < file.length()) {
+            System.err.println("Journal " + file + ": dropping " + (file.length() - good) + " bytes of incomplete tail");
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(good);
+            }
+        }
+        return last;
+    }
+
+    private static long apply(byte[] rec, int version, long afterSeq, Visitor v) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(rec));
+        byte type = in.readByte();
+        long seq = in.readLong();
+        if (seq <= afterSeq) return seq; // already in the snapshot
+        switch (type) {
+            case CREATE_USER:
+                v.createUser(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF());
+                break;
+            case DELETE_USER:
+                v.deleteUser(in.readUTF());
+                break;
+            case CREATE_ACCOUNT: {
+                String userId = in.readUTF(), accountNumber = in.readUTF(), kind = in.readUTF();
+                if (version == 1) {
+                    // v1: balance and a single param (rate for savings, overdraft for current) as doubles
+                    long balance = Money.toCents(in.readDouble());
+                    double param = in.readDouble();
+                    boolean savings = "savings".equalsIgnoreCase(kind);
+                    v.createAccount(userId, accountNumber, kind, balance, savings ? param : 0, savings ? 0 : Money.toCents(param));
+                } else {
+                    v.createAccount(userId, accountNumber, kind, in.readLong(), in.readDouble(), in.readLong());
+                }
+                break;
+            }
+            case DELETE_ACCOUNT:
+                v.deleteAccount(in.readUTF());
+                break;
+            case SET_BALANCE:
+                if (version == 1) {
+                    v.setBalance(in.readUTF(), Money.toCents(in.readDouble()));
+                } else {
+                    readState(in, version, v);
+                }
+                break;
+            case SET_BALANCES:
+                for (int i = in.readInt(); i > 0; i--) readState(in, version, v);
+                break;
+            case SET_DORMANT: // written before version 3
+                for (int i = in.readInt(); i > 0; i--) {
+                    v.setDormant(in.readUTF(), in.readBoolean());
+                }
+                break;
+            case RESULT: {
+                String key = in.readUTF(), request = in.readUTF(), home = in.readUTF();
+                long expiresAt = in.readLong();
+                boolean outcome = in.readBoolean();
+                for (int i = in.readInt(); i > 0; i--) readState(in, version, v);
+                v.result(key, request, home, expiresAt, outcome);
+                break;
+            }
+            default:
+                throw new IOException("Unknown journal record type " + type);
+        }
+        return seq;
+    }
+
+    // one account of a balance record; before version 3 only its balance
+    private static void readState(DataInputStream in, int version, Visitor v) throws IOException {
+        String accountNumber = in.readUTF();
+        if (version < 3) {
+            v.setBalance(accountNumber, in.readLong());
+        } else {
+            v.setState(accountNumber, in.readLong(), in.readLong(), in.readBoolean());
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package bank;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Just enough JSON for the HTTP API: flat request objects in, compact objects out.
+// Parsed values are String, Long, Double, Boolean or null; nested objects and arrays are
+// rejected with IllegalArgumentException.
+final class Json {
+    private final StringBuilder sb = new StringBuilder(64).append('{');
+
+    Json put(String key, String value) {
+        key(key);
+        if (value == null) sb.append("null");
+        else quote(sb, value);
+        return this;
+    }
+
+    Json put(String key, long value) {
+        key(key);
+        sb.append(value);
+        return this;
+    }
+
+    Json put(String key, boolean value) {
+        key(key);
+        sb.append(value);
+        return this;
+    }
+
+    Json put(String key, List<String> values) {
+        key(key);
+        sb.append('[');
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) sb.append(',');
+            quote(sb, values.get(i));
+        }
+        sb.append(']');
+        return this;
+    }
+
+    private void key(String key) {
+        if (sb.length() > 1) sb.append(',');
+        quote(sb, key);
+        sb.append(':');
+    }
+
+    @Override
+    public String toString() {
+        return sb.toString() + '}';
+    }
+
+    private static void quote(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    static Map<String, Object> parseObject(String text) {
+        Parser p = new Parser(text);
+        Map<String, Object> out = p.object();
+        p.skipSpace();
+        if (p.pos != text.length()) throw p.error("trailing characters");
+        return out;
+    }
+
+    private static final class Parser {
+        private final String s;
+        private int pos;
+
+        Parser(String s) {
+            this.s = s;
+        }
+
+        Map<String, Object> object() {
+            Map<String, Object> out = new LinkedHashMap<>();
+            expect('{');
+            skipSpace();
+            if (peek() == '}') {
+                pos++;
+                return out;
+            }
+            while (true) {
+                skipSpace();
+                String key = string();
+                skipSpace();
+                expect(':');
+                skipSpace();
+                out.put(key, value());
+                skipSpace();
+                char c = next();
+                if (c == '}') return out;
+                if (c != ',') throw error("expected , or }");
+            }
+        }
+
+        private Object value() {
+            char c = peek();
+            if (c == '"') return string();
+            if (c == '{' || c == '[') throw error("nested values are not supported");
+            if (s.startsWith("true", pos)) { pos += 4; return Boolean.TRUE; }
+            if (s.startsWith("false", pos)) { pos += 5; return Boolean.FALSE; }
+            if (s.startsWith("null", pos)) { pos += 4; return null; }
+            int start = pos;
+            while (pos < s.length() && "+-0123456789.eE".indexOf(s.charAt(pos)) >= 0) pos++;
+            String num = s.substring(start, pos);
+            try {
+                if (num.indexOf('.') < 0 && num.indexOf('e') < 0 && num.indexOf('E') < 0) return Long.parseLong(num);
+                return Double.parseDouble(num);
+            } catch (NumberFormatException e) {
+                throw error("bad value");
+            }
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == '"') return sb.toString();
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                char e = next();
+                switch (e) {
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'u':
+                        if (pos + 4 > s.length()) throw error("bad escape");
+                        try {
+                            sb.append((char) Integer.parseInt(s.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException ex) {
+                            throw error("bad escape");
+                        }
+                        pos += 4;
+                        break;
+                    default: sb.append(e); // \" \\ \/
+                }
+            }
+        }
+
+        void skipSpace() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) pos++;
+        }
+
+        private char peek() {
+            if (pos >= s.length()) throw error("unexpected end");
+            return s.charAt(pos);
+        }
+
+        private char next() {
+            char c = peek();
+            pos++;
+            return c;
+        }
+
+        private void expect(char c) {
+            if (next() != c) throw error("expected " + c);
+        }
+
+        IllegalArgumentException error(String what) {
+            return new IllegalArgumentException("Bad JSON at " + pos + ": " + what);
+        }
+    }
+}
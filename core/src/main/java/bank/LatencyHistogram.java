@@ -0,0 +1,92 @@
+package bank;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Log-linear latency histogram in the style of HdrHistogram: each power of two is split into
+// 64 buckets, so a reported percentile is within about 1.5% of the true value. Recording is
+// a couple of atomic increments and never allocates. Values are nanoseconds, up to about
+// 18 minutes; anything longer lands in the last bucket.
+public final class LatencyHistogram implements LatencyHistogramMBean {
+    private static final int SUB_BITS = 7;
+    private static final int HALF = 1 << (SUB_BITS - 1);
+    private static final long MAX_VALUE = (1L << 40) - 1;
+    private static final int BUCKETS = index(MAX_VALUE) + 1;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() { return name; }
+
+    public void record(long nanos) {
+        long v = Math.min(Math.max(nanos, 0), MAX_VALUE);
+        counts.incrementAndGet(index(v));
+        count.increment();
+        sum.add(v);
+        if (v > max.get()) max.accumulateAndGet(v, Math::max);
+    }
+
+    // records the time since start (from Metrics.start()); does nothing when metrics are off
+    public void recordSince(long start) {
+        if (Metrics.ENABLED) record(System.nanoTime() - start);
+    }
+
+    private static int index(long v) {
+        int shift = Math.max(0, 64 - Long.numberOfLeadingZeros(v) - SUB_BITS);
+        return shift == 0 ? (int) v : (shift << (SUB_BITS - 1)) + (int) (v >>> shift);
+    }
+
+    // highest value that falls in the bucket
+    private static long upperBound(int index) {
+        if (index < 2 * HALF) return index;
+        int shift = index / HALF - 1;
+        long sub = index - (long) shift * HALF;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    // value at the given percentile (0-100) in nanoseconds, 0 when empty
+    public long percentile(double p) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) total += snapshot[i] = counts.get(i);
+        if (total == 0) return 0;
+        // p * total first: p / 100 is inexact (99.9 / 100 * 10000 rounds up past 9990)
+        long rank = Math.max(1, (long) Math.ceil(p * total / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) return Math.min(upperBound(i), max.get());
+        }
+        return max.get();
+    }
+
+    @Override public long getCount() { return count.sum(); }
+
+    @Override
+    public double getMeanMicros() {
+        long n = count.sum();
+        return n == 0 ? 0 : sum.sum() / (double) n / 1000;
+    }
+
+    @Override public double getP50Micros() { return percentile(50) / 1000.0; }
+    @Override public double getP99Micros() { return percentile(99) / 1000.0; }
+    @Override public double getP999Micros() { return percentile(99.9) / 1000.0; }
+    @Override public double getMaxMicros() { return max.get() / 1000.0; }
+
+    // not atomic with respect to concurrent recording; fine for an operator clearing stats
+    @Override
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+}
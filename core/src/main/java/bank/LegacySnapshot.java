@@ -0,0 +1,63 @@
+package bank;
+
+import java.io.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Reads bankdata.ser files written with Java serialization (users map, accounts map, then
+// the journal seq if the file is recent enough). Used to load old files and by
+// SnapshotConverter; everything written now is a SnapshotFile.
+final class LegacySnapshot {
+    final Map<String, Customer> users;
+    final Map<String, Account> accounts;
+    final long journalSeq;
+
+    private LegacySnapshot(Map<String, Customer> users, Map<String, Account> accounts, long journalSeq) {
+        this.users = users;
+        this.accounts = accounts;
+        this.journalSeq = journalSeq;
+    }
+
+    @SuppressWarnings("unchecked")
+    static LegacySnapshot read(File f) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream ois = new SnapshotInputStream(new BufferedInputStream(new FileInputStream(f)))) {
+            Object u = ois.readObject();
+            Object a = ois.readObject();
+            // older files hold plain HashMaps
+            Map<String, Customer> users = u instanceof Map
+                    ? new ConcurrentHashMap<>((Map<String, Customer>) u) : new ConcurrentHashMap<>();
+            Map<String, Account> accounts = a instanceof Map
+                    ? new ConcurrentHashMap<>((Map<String, Account>) a) : new ConcurrentHashMap<>();
+            long seq;
+            try {
+                seq = ois.readLong();
+            } catch (EOFException e) {
+                seq = 0; // written before the journal existed
+            }
+            return new LegacySnapshot(users, accounts, seq);
+        }
+    }
+
+    // Files written before the classes moved into this package name them without a package
+    // ("Customer", "SavingsAccount"); map those onto the classes here. The classes pin their
+    // serialVersionUID, so the stream descriptors still match.
+    private static final class SnapshotInputStream extends ObjectInputStream {
+        SnapshotInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            String name = desc.getName();
+            if (name.indexOf('.') < 0 && !name.startsWith("[")) {
+                try {
+                    return Class.forName(LegacySnapshot.class.getPackageName() + "." + name, false,
+                            LegacySnapshot.class.getClassLoader());
+                } catch (ClassNotFoundException ignored) {
+                    // not one of ours; fall through
+                }
+            }
+            return super.resolveClass(desc);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package bank;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Load generator / soak test for BankSystem. Creates users and accounts through the public
+// API, then runs a weighted mix of deposits, withdrawals, balance lookups and interest runs
+// from worker threads for a fixed time, printing throughput every reportSeconds. At the end
+// it reports ops/s, latency percentiles and failures per operation, and checks every
+// balance against what the successful operations add up to, in memory and after a reload.
+//   java -cp core/target/classes bank.LoadGenerator [users] [accountsPerUser] [threads] [seconds]
+//        [mix] [snapshot|journal]
+// mix is comma-separated weights, default deposit:45,withdraw:35,lookup:19.99,interest:0.01.
+// -Dbank.load.reportSeconds (default 10) sets the progress interval.
+public class LoadGenerator {
+    private static final String[] OPS = {"deposit", "withdraw", "lookup", "interest"};
+    private static final int DEPOSIT = 0, WITHDRAW = 1, LOOKUP = 2; // 3: interest
+    private static final long INITIAL = 1000_00;
+
+    public static void main(String[] args) throws Exception {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int perUser = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+        double[] cumulative = parseMix(args.length > 4 ? args[4] : "deposit:45,withdraw:35,lookup:19.99,interest:0.01");
+        PersistenceMode mode = args.length > 5 ? PersistenceMode.valueOf(args[5].toUpperCase()) : PersistenceMode.JOURNAL;
+        int reportSeconds = Integer.getInteger("bank.load.reportSeconds", 10);
+
+        File dir = Files.createTempDirectory("bank-load").toFile();
+        System.setProperty("bank.log.file", new File(dir, "transactions.log").getPath());
+        System.setProperty("bank.events.file", new File(dir, "transactions.evt").getPath());
+        TransactionLogger.startAsync(AsyncLogWriter.Durability.BEST_EFFORT, 65536, 1024, 100);
+        String dataFile = new File(dir, "bankdata.dat").getPath();
+        BankSystem bank = new BankSystem(dataFile, mode);
+
+        // ---- setup through the public API ----
+        long setupStart = System.nanoTime();
+        String[] accts = new String[users * perUser];
+        AtomicLong[] expected = new AtomicLong[accts.length];
+        for (int u = 0; u < users; u++) {
+            String id = "load" + u;
+            if (!bank.createUser(id, "Load User " + u, "pw", "customer")) throw new IllegalStateException("user " + id);
+            for (int k = 0; k < perUser; k++) {
+                int i = u * perUser + k;
+                accts[i] = bank.createAccountForUser(id, i % 2 == 0 ? "savings" : "current", Money.toDouble(INITIAL));
+                if (accts[i] == null) throw new IllegalStateException("account for " + id);
+                expected[i] = new AtomicLong(INITIAL);
+            }
+        }
+        double setupSecs = (System.nanoTime() - setupStart) / 1e9;
+        System.out.printf("setup: %,d users, %,d accounts in %.1fs (%.0f creates/s), mode=%s threads=%d%n",
+                users, accts.length, setupSecs, (users + accts.length) / setupSecs, mode, threads);
+
+        // interest goes through this wrapper so the amount credited to each account is known exactly
+        InterestAccrualJob interest = new InterestAccrualJob();
+        LongAdder interestCents = new LongAdder();
+        Map<String, Integer> slot = new HashMap<>();
+        for (int i = 0; i < accts.length; i++) slot.put(accts[i], i);
+        EndOfDayJob countedInterest = new EndOfDayJob() {
+            @Override
+            public String getName() { return interest.getName(); }
+
+            @Override
+            public String process(Account account, LocalDate businessDate) {
+                long before = account.getBalanceCents(); // the account lock is held
+                String line = interest.process(account, businessDate);
+                long delta = account.getBalanceCents() - before;
+                Integer i = slot.get(account.getAccountNumber());
+                if (i != null && delta != 0) expected[i].addAndGet(delta);
+                interestCents.add(delta);
+                return line;
+            }
+        };
+
+        // ---- run ----
+        LatencyHistogram[] latency = new LatencyHistogram[OPS.length];
+        LongAdder[] failed = new LongAdder[OPS.length];
+        for (int op = 0; op < OPS.length; op++) {
+            latency[op] = new LatencyHistogram(OPS[op]);
+            failed[op] = new LongAdder();
+        }
+        long refusedBefore = Metrics.counter("insufficientFunds").getValue();
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                while (running.get()) {
+                    int op = pick(cumulative, rnd.nextDouble());
+                    int i = rnd.nextInt(accts.length);
+                    long start = System.nanoTime();
+                    boolean ok;
+                    switch (op) {
+                        case DEPOSIT: {
+                            long cents = 1 + rnd.nextInt(500_00);
+                            ok = bank.depositCents(accts[i], cents);
+                            if (ok) expected[i].addAndGet(cents);
+                            break;
+                        }
+                        case WITHDRAW: {
+                            long cents = 1 + rnd.nextInt(1000_00);
+                            ok = bank.withdrawCents(accts[i], cents);
+                            if (ok) expected[i].addAndGet(-cents);
+                            break;
+                        }
+                        case LOOKUP: {
+                            Account a = bank.getAccount(accts[i]);
+                            ok = a != null;
+                            if (ok) a.getBalanceCents();
+                            break;
+                        }
+                        default: // interest
+                            ok = bank.runEndOfDay(null, LocalDate.now(), List.of(countedInterest), null) != null;
+                    }
+                    latency[op].record(System.nanoTime() - start);
+                    if (!ok) failed[op].increment();
+                }
+            }, "load-" + t);
+        }
+        long start = System.nanoTime();
+        for (Thread w : workers) w.start();
+        long lastOps = 0;
+        for (int s = reportSeconds; s < seconds; s += reportSeconds) {
+            Thread.sleep(reportSeconds * 1000L);
+            long ops = 0;
+            for (LatencyHistogram h : latency) ops += h.getCount();
+            System.out.printf("  %4ds  %,12d ops  %,10.0f ops/s%n", s, ops, (ops - lastOps) / (double) reportSeconds);
+            lastOps = ops;
+        }
+        Thread.sleep(Math.max(0, seconds * 1000L - (System.nanoTime() - start) / 1_000_000));
+        running.set(false);
+        for (Thread w : workers) w.join();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        long refused = Metrics.counter("insufficientFunds").getValue() - refusedBefore;
+
+        // ---- report ----
+        System.out.printf("%-9s %12s %10s %9s %9s %9s %9s %9s%n",
+                "op", "count", "ops/s", "failed", "p50 us", "p99 us", "p999 us", "max us");
+        long total = 0;
+        for (int op = 0; op < OPS.length; op++) {
+            LatencyHistogram h = latency[op];
+            total += h.getCount();
+            System.out.printf("%-9s %,12d %,10.0f %,9d %9.1f %9.1f %9.1f %9.1f%n", OPS[op], h.getCount(),
+                    h.getCount() / elapsed, failed[op].sum(), h.getP50Micros(), h.getP99Micros(),
+                    h.getP999Micros(), h.getMaxMicros());
+        }
+        System.out.printf("total     %,12d %,10.0f ops/s over %.1fs%n", total, total / elapsed, elapsed);
+        System.out.printf("failed withdrawals from insufficient funds: %,d; interest credited: %s%n",
+                refused, Money.format(interestCents.sum()));
+
+        // ---- consistency ----
+        int wrong = 0;
+        long expectedTotal = 0;
+        long actualTotal = 0;
+        for (int i = 0; i < accts.length; i++) {
+            long actual = bank.getAccount(accts[i]).getBalanceCents();
+            expectedTotal += expected[i].get();
+            actualTotal += actual;
+            if (actual != expected[i].get()) {
+                if (wrong++ < 5) System.out.println("MISMATCH " + accts[i] + ": expected "
+                        + Money.format(expected[i].get()) + ", is " + Money.format(actual));
+            }
+        }
+        bank.saveState();
+        TransactionLogger.stopAsync();
+        long reloadedTotal = 0;
+        BankSystem reloaded = new BankSystem(dataFile, mode);
+        for (String acct : accts) {
+            Account a = reloaded.getAccount(acct);
+            reloadedTotal += a == null ? 0 : a.getBalanceCents();
+        }
+        System.out.printf("balances: %d of %,d accounts wrong; total expected %s, in memory %s, after reload %s%n",
+                wrong, accts.length, Money.format(expectedTotal), Money.format(actualTotal),
+                Money.format(reloadedTotal));
+        boolean consistent = wrong == 0 && actualTotal == expectedTotal && reloadedTotal == expectedTotal;
+        System.out.println(consistent ? "CONSISTENT" : "INCONSISTENT");
+        if (!consistent) System.exit(1);
+    }
+
+    // "deposit:45,withdraw:35,..." -> cumulative fractions in OPS order
+    private static double[] parseMix(String mix) {
+        double[] weights = new double[OPS.length];
+        for (String part : mix.split(",")) {
+            String[] kv = part.split(":");
+            int op = List.of(OPS).indexOf(kv[0].trim().toLowerCase());
+            if (op < 0 || kv.length != 2) throw new IllegalArgumentException("Bad mix entry: " + part);
+            weights[op] = Double.parseDouble(kv[1].trim());
+        }
+        double sum = 0;
+        for (double w : weights) sum += w;
+        if (sum <= 0) throw new IllegalArgumentException("Mix has no weight: " + mix);
+        // from the last weighted op on the bound is exactly 1, so rounding can't pick a zero-weight op
+        int last = 0;
+        for (int op = 0; op < OPS.length; op++) if (weights[op] > 0) last = op;
+        double[] cumulative = new double[OPS.length];
+        double acc = 0;
+        for (int op = 0; op < OPS.length; op++) {
+            acc += weights[op] / sum;
+            cumulative[op] = op >= last ? 1.0 : acc;
+        }
+        return cumulative;
+    }
+
+    // r in [0, 1)
+    private static int pick(double[] cumulative, double r) {
+        int op = 0;
+        while (r >= cumulative[op]) op++;
+        return op;
+    }
+}
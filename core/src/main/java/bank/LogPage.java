@@ -0,0 +1,23 @@
+package bank;
+
+import java.util.List;
+
+// One window of the transaction log, as returned by LogReader.
+public class LogPage {
+    private final long firstLine;
+    private final List<String> lines;
+    private final long totalLines;
+
+    LogPage(long firstLine, List<String> lines, long totalLines) {
+        this.firstLine = firstLine;
+        this.lines = lines;
+        this.totalLines = totalLines;
+    }
+
+    public long getFirstLine() { return firstLine; }
+    public List<String> getLines() { return lines; }
+    public long getTotalLines() { return totalLines; }
+
+    public boolean hasPrevious() { return firstLine > 0; }
+    public boolean hasNext() { return firstLine + lines.size() < totalLines; }
+}
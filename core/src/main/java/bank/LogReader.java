@@ -0,0 +1,440 @@
+package bank;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Random access to the transaction log by line number without reading the whole file.
+// A sparse index keeps the byte offset of every STRIDE-th line; reading a page seeks to the
+// nearest indexed line and scans forward at most STRIDE lines. The index is extended
+// incrementally by refresh() as the log grows, and rebuilt if the file was truncated.
+//
+// Closed segments (see LogSegments) come first in line order; line 0 is the first line of
+// the oldest one kept. One is read into memory only when a request lands in it, and the
+// last one read stays cached, so paging through a segment decompresses it once.
+//
+// A binary event log (see EventCodec) is read the same way with one record per line; record
+// i is at byte i * RECORD, so it needs no index, and records are rendered as text lines.
+public class LogReader implements Closeable {
+    static final int STRIDE = 1024;
+    private static final int BUFFER = 64 * 1024;
+
+    // a closed segment and the line numbers it covers
+    private static final class Part {
+        final LogSegments.Segment segment;
+        final long firstLine;
+        final long lines;
+
+        Part(LogSegments.Segment segment, long firstLine, long lines) {
+            this.segment = segment;
+            this.firstLine = firstLine;
+            this.lines = lines;
+        }
+    }
+
+    // a closed segment's content; line i is data[starts[i], starts[i + 1] - 1), or record i
+    private static final class Loaded {
+        final long base;
+        final byte[] data;
+        final int[] starts; // null for records
+        final int count;
+
+        Loaded(long base, byte[] data, boolean binary) {
+            this.base = base;
+            this.data = data;
+            if (binary) {
+                this.starts = null;
+                this.count = data.length / EventCodec.RECORD;
+                return;
+            }
+            int n = 0;
+            for (byte b : data) if (b == '\n') n++;
+            int[] s = new int[n + 1];
+            for (int i = 0, line = 0; i < data.length; i++) {
+                if (data[i] == '\n') s[++line] = i + 1;
+            }
+            this.starts = s;
+            this.count = n;
+        }
+
+        String line(int i) {
+            if (starts == null) return EventCodec.render(ByteBuffer.wrap(data), i * EventCodec.RECORD);
+            int from = starts[i], to = starts[i + 1] - 1;
+            if (to > from && data[to - 1] == '\r') to--;
+            return new String(data, from, to - from, StandardCharsets.UTF_8);
+        }
+
+        LocalDateTime time(int i) {
+            if (starts != null) return timeOf(line(i));
+            return EventCodec.localTime(EventCodec.time(ByteBuffer.wrap(data), i * EventCodec.RECORD));
+        }
+
+        // line holding byte offset (within the segment)
+        int lineAt(long offset) {
+            if (starts == null) return (int) Math.min(offset / EventCodec.RECORD, count - 1);
+            int i = Arrays.binarySearch(starts, 0, count, (int) offset);
+            return i < 0 ? -i - 2 : i;
+        }
+    }
+
+    private final LogSegments segments;
+    private final boolean binary;
+    private List<Part> parts = new ArrayList<>();
+    private long closedLines;                               // lines in all kept closed segments
+    private final Map<Long, Long> counted = new HashMap<>(); // line counts of segments not yet compressed
+    private Loaded loaded;                                  // last closed segment read
+
+    // the active segment
+    private long activeBase = -1;          // its offset in the whole log
+    private FileChannel channel;           // null until the file exists
+    private long[] offsets = new long[64]; // offsets[i] = start of line i * STRIDE
+    private long lineCount;                // complete lines indexed so far
+    private long indexedBytes;             // end of the last complete line
+
+    // file and whatever segments have been rolled out of it
+    public LogReader(Path file) throws IOException {
+        this(LogSegments.forReader(file.toFile(), 0));
+    }
+
+    LogReader(LogSegments segments) throws IOException {
+        this.segments = segments;
+        this.binary = segments.isBinary();
+        refresh();
+    }
+
+    // Picks up lines appended since the last call, and segments rolled or expired; returns
+    // the line count.
+    public synchronized long refresh() throws IOException {
+        LogSegments.View view = segments.view();
+        if (view.activeBase != activeBase) { // rolled: the file now holds a new segment
+            if (channel != null) channel.close();
+            channel = null;
+            activeBase = view.activeBase;
+            lineCount = 0;
+            indexedBytes = 0;
+        }
+        if (channel == null) channel = openActive();
+        refreshClosed(view.closed);
+        long size = channel == null ? 0 : channel.size();
+        if (size < indexedBytes) { // truncated or replaced: start over
+            lineCount = 0;
+            indexedBytes = 0;
+        }
+        if (binary) { // whole records only; one still being written shows up next time
+            lineCount = size / EventCodec.RECORD;
+            indexedBytes = lineCount * EventCodec.RECORD;
+            return closedLines + lineCount;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(BUFFER);
+        long pos = indexedBytes;
+        while (pos < size) {
+            buf.clear();
+            int n = channel.read(buf, pos);
+            if (n <= 0) break;
+            for (int i = 0; i < n; i++) {
+                if (buf.get(i) != '\n') continue;
+                if (lineCount % STRIDE == 0) addOffset(indexedBytes);
+                lineCount++;
+                indexedBytes = pos + i + 1;
+            }
+            pos += n;
+        }
+        return closedLines + lineCount;
+    }
+
+    private FileChannel openActive() throws IOException {
+        try {
+            return FileChannel.open(segments.activeFile().toPath(), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return null; // between a roll and the next entry
+        }
+    }
+
+    // line numbers of the closed segments; only segments not compressed yet need counting
+    private void refreshClosed(List<LogSegments.Segment> closed) throws IOException {
+        List<Part> next = new ArrayList<>(closed.size());
+        long line = 0;
+        for (LogSegments.Segment s : closed) {
+            long lines = s.lines;
+            if (lines < 0 && binary) lines = s.bytes / EventCodec.RECORD;
+            if (lines < 0) {
+                Long n = counted.get(s.base);
+                if (n == null) {
+                    Loaded l = load(s);
+                    if (l == null) continue; // expired meanwhile
+                    n = (long) l.count;
+                    counted.put(s.base, n);
+                }
+                lines = n;
+            }
+            next.add(new Part(s, line, lines));
+            line += lines;
+        }
+        counted.keySet().removeIf(base -> closed.stream().noneMatch(s -> s.base == base && s.lines < 0));
+        parts = next;
+        closedLines = line;
+    }
+
+    // the segment's content, kept until another one is needed; null if it has been deleted
+    private Loaded load(LogSegments.Segment s) throws IOException {
+        if (loaded != null && loaded.base == s.base) return loaded;
+        byte[] data = segments.read(s);
+        if (data == null) return null;
+        loaded = new Loaded(s.base, data, binary);
+        return loaded;
+    }
+
+    private Part partAtLine(long line) {
+        int lo = 0, hi = parts.size() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (parts.get(mid).firstLine <= line) lo = mid;
+            else hi = mid - 1;
+        }
+        return parts.get(lo);
+    }
+
+    private void addOffset(long offset) {
+        int slot = (int) (lineCount / STRIDE);
+        if (slot == offsets.length) offsets = Arrays.copyOf(offsets, slot * 2);
+        offsets[slot] = offset;
+    }
+
+    public synchronized long getLineCount() { return closedLines + lineCount; }
+
+    // up to count lines starting at firstLine; fewer at the end of the log
+    public synchronized List<String> readLines(long firstLine, int count) throws IOException {
+        List<String> lines = new ArrayList<>(Math.max(0, Math.min(count, 4096)));
+        if (firstLine < 0 || firstLine >= getLineCount() || count <= 0) return lines;
+        long end = Math.min(getLineCount(), firstLine + count);
+        long line = firstLine;
+        while (line < end && line < closedLines) {
+            Part p = partAtLine(line);
+            Loaded l = load(p.segment);
+            for (int i = (int) (line - p.firstLine); l != null && i < l.count && line < end; i++, line++) {
+                lines.add(l.line(i));
+            }
+            line = Math.max(line, Math.min(end, p.firstLine + p.lines)); // past an expired segment
+        }
+        if (line >= end) return lines;
+        firstLine = line - closedLines;
+        end -= closedLines;
+        if (binary) {
+            readRecords(firstLine, end, lines);
+            return lines;
+        }
+        LineScanner scan = new LineScanner(offsets[(int) (firstLine / STRIDE)], indexedBytes);
+        for (line = firstLine - firstLine % STRIDE; line < end; line++) {
+            String text = scan.next(line >= firstLine);
+            if (line >= firstLine) lines.add(text);
+        }
+        return lines;
+    }
+
+    // records [first, end) of the active segment, rendered
+    private void readRecords(long first, long end, List<String> into) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(BUFFER - BUFFER % EventCodec.RECORD);
+        for (long record = first; record < end; ) {
+            buf.clear();
+            buf.limit((int) Math.min(buf.capacity(), (end - record) * EventCodec.RECORD));
+            long pos = record * EventCodec.RECORD;
+            while (buf.hasRemaining()) {
+                if (channel.read(buf, pos + buf.position()) <= 0) break;
+            }
+            int n = buf.position() / EventCodec.RECORD;
+            if (n == 0) break;
+            for (int i = 0; i < n; i++) into.add(EventCodec.render(buf, i * EventCodec.RECORD));
+            record += n;
+        }
+    }
+
+    public LogPage page(long firstLine, int pageSize) throws IOException {
+        long first = Math.max(0, Math.min(firstLine, getLineCount() - 1));
+        return new LogPage(first, readLines(first, pageSize), getLineCount());
+    }
+
+    // the last pageSize lines, after picking up anything newly written
+    public LogPage tail(int pageSize) throws IOException {
+        return page(refresh() - pageSize, pageSize);
+    }
+
+    public LogPage next(LogPage page) throws IOException {
+        return page(page.getFirstLine() + page.getLines().size(), page.getLines().size());
+    }
+
+    public LogPage previous(LogPage page) throws IOException {
+        int size = Math.max(1, page.getLines().size());
+        return page(page.getFirstLine() - size, size);
+    }
+
+    // Line containing the given byte offset of the whole log (as kept in StatementIndex),
+    // counting the bytes of every segment rolled out of it.
+    public synchronized long lineAtOffset(long byteOffset) throws IOException {
+        long total = getLineCount();
+        if (total == 0) return 0;
+        if (byteOffset < activeBase) {
+            for (Part p : parts) {
+                LogSegments.Segment s = p.segment;
+                if (byteOffset >= s.end()) continue;
+                Loaded l = load(s);
+                if (byteOffset < s.base || l == null || l.count == 0) return p.firstLine; // expired
+                return p.firstLine + l.lineAt(byteOffset - s.base);
+            }
+        }
+        if (lineCount == 0) return total - 1;
+        return closedLines + activeLineAt(byteOffset - activeBase);
+    }
+
+    private long activeLineAt(long byteOffset) throws IOException {
+        if (byteOffset <= 0) return 0;
+        if (byteOffset >= indexedBytes) return lineCount - 1;
+        if (binary) return byteOffset / EventCodec.RECORD;
+        int slots = slotCount();
+        int slot = Arrays.binarySearch(offsets, 0, slots, byteOffset);
+        if (slot < 0) slot = -slot - 2;
+        long line = (long) slot * STRIDE;
+        LineScanner scan = new LineScanner(offsets[slot], indexedBytes);
+        while (line < lineCount - 1) {
+            scan.next(false);
+            if (scan.position > byteOffset) break;
+            line++;
+        }
+        return line;
+    }
+
+    // First line stamped at or after the given time. Entries are written in roughly time
+    // order, so this binary-searches the indexed lines and then scans one stride. Closed
+    // segments whose time range ends earlier are skipped without being read.
+    public synchronized long lineAtTime(LocalDateTime time) throws IOException {
+        for (int k = 0; k < parts.size(); k++) {
+            Part p = parts.get(k);
+            LogSegments.Segment s = p.segment;
+            if (s.last != null && s.last.isBefore(time)) continue;
+            // not compressed yet, so no last time: the next segment's first entry bounds it
+            LogSegments.Segment next = k + 1 < parts.size() ? parts.get(k + 1).segment : null;
+            if (s.last == null && next != null && next.first != null && next.first.isBefore(time)) continue;
+            Loaded l = load(s);
+            if (l == null) continue;
+            int lo = 0, hi = l.count - 1, found = l.count;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                LocalDateTime t = l.time(mid);
+                if (t != null && t.isBefore(time)) {
+                    lo = mid + 1;
+                } else {
+                    found = mid;
+                    hi = mid - 1;
+                }
+            }
+            if (found < l.count) return p.firstLine + found;
+        }
+        if (lineCount == 0) return Math.max(0, closedLines - 1);
+        if (binary) return closedLines + activeRecordAt(time);
+        int lo = 0, hi = slotCount() - 1, slot = 0;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            LocalDateTime t = timeOf(new LineScanner(offsets[mid], indexedBytes).next(true));
+            if (t != null && t.isBefore(time)) {
+                slot = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        long line = (long) slot * STRIDE;
+        LineScanner scan = new LineScanner(offsets[slot], indexedBytes);
+        for (; line < lineCount; line++) {
+            LocalDateTime t = timeOf(scan.next(true));
+            if (t != null && !t.isBefore(time)) return closedLines + line;
+        }
+        return closedLines + lineCount - 1;
+    }
+
+    // first record of the active segment stamped at or after time, by binary search
+    private long activeRecordAt(LocalDateTime time) throws IOException {
+        ByteBuffer stamp = ByteBuffer.allocate(Long.BYTES);
+        long lo = 0, hi = lineCount - 1, found = lineCount - 1;
+        while (lo <= hi) {
+            long mid = (lo + hi) >>> 1;
+            stamp.clear();
+            channel.read(stamp, mid * EventCodec.RECORD); // the time leads each record
+            if (EventCodec.localTime(stamp.getLong(0)).isBefore(time)) {
+                lo = mid + 1;
+            } else {
+                found = mid;
+                hi = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    private int slotCount() {
+        return (int) ((lineCount + STRIDE - 1) / STRIDE);
+    }
+
+    // entries look like "2025-11-12T21:53:44.922759500 - message"
+    static LocalDateTime timeOf(String line) {
+        int sep = line.indexOf(" - ");
+        if (sep <= 0) return null;
+        try {
+            return LocalDateTime.parse(line.substring(0, sep));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) channel.close();
+        loaded = null;
+    }
+
+    // Buffered forward reader over [start, limit) of the active segment. Lines may end in \n or \r\n.
+    private final class LineScanner {
+        private final ByteBuffer buf = ByteBuffer.allocate(BUFFER);
+        private final long limit;
+        private long position; // file offset of the next unread byte
+        private byte[] line = new byte[256];
+
+        LineScanner(long start, long limit) {
+            this.position = start;
+            this.limit = limit;
+            buf.limit(0);
+        }
+
+        // reads one line; decodes it only when wanted
+        String next(boolean decode) throws IOException {
+            int len = 0;
+            while (position < limit) {
+                if (!buf.hasRemaining()) {
+                    buf.clear();
+                    buf.limit((int) Math.min(BUFFER, limit - position));
+                    int n = channel.read(buf, position);
+                    if (n <= 0) break;
+                    buf.flip();
+                }
+                byte b = buf.get();
+                position++;
+                if (b == '\n') break;
+                if (!decode) continue;
+                if (len == line.length) line = Arrays.copyOf(line, len * 2);
+                line[len++] = b;
+            }
+            if (!decode) return null;
+            if (len > 0 && line[len - 1] == '\r') len--;
+            return new String(line, 0, len, StandardCharsets.UTF_8);
+        }
+    }
+}
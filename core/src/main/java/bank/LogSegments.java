@@ -0,0 +1,509 @@
+package bank;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// The transaction log as a series of segments. New entries go to the log file itself (the
+// active segment); once it holds -Dbank.log.segmentBytes (default 64 MB), or on the first
+// entry of a new day (-Dbank.log.rollDaily, default true), it is renamed to
+// <log>.<base> and gzipped to <log>.<base>.gz in the background. base is the offset of the
+// segment's first byte in the whole log, so offsets into the log (StatementIndex, LogViewer)
+// keep their meaning across rolls. Closed segments older than -Dbank.log.retentionDays, or
+// beyond -Dbank.log.retentionBytes on disk, are deleted oldest first (both 0: keep all).
+//
+// <log>.segments lists the closed segments, rewritten through a temp file on every change:
+//   BANKLOG 1 <base of the active segment>
+//   <base> <bytes> <lines> <first entry time> <last entry time> <file>
+// lines and the last time are -1 and "-" until the segment has been compressed.
+//
+// A binary event log (see EventCodec) is segmented the same way; its "lines" are records.
+final class LogSegments {
+    private static final String MAGIC = "BANKLOG";
+    private static final int VERSION = 1;
+
+    // one closed segment; immutable, replaced when it is compressed
+    static final class Segment {
+        final long base;           // offset of its first byte in the whole log
+        final long bytes;          // uncompressed
+        final long lines;          // -1 until counted
+        final LocalDateTime first; // null if unknown
+        final LocalDateTime last;
+        final String file;         // in the log's directory
+
+        Segment(long base, long bytes, long lines, LocalDateTime first, LocalDateTime last, String file) {
+            this.base = base;
+            this.bytes = bytes;
+            this.lines = lines;
+            this.first = first;
+            this.last = last;
+            this.file = file;
+        }
+
+        long end() { return base + bytes; }
+
+        boolean isCompressed() { return file.endsWith(".gz"); }
+    }
+
+    // closed segments oldest first, and where the active segment starts
+    static final class View {
+        final List<Segment> closed;
+        final long activeBase;
+
+        View(List<Segment> closed, long activeBase) {
+            this.closed = closed;
+            this.activeBase = activeBase;
+        }
+
+        // offset of the oldest byte still kept
+        long firstBase() {
+            return closed.isEmpty() ? activeBase : closed.get(0).base;
+        }
+
+        // the closed segment holding offset, or null (deleted, or in the active segment)
+        Segment segmentAt(long offset) {
+            int lo = 0, hi = closed.size() - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                Segment s = closed.get(mid);
+                if (offset < s.base) hi = mid - 1;
+                else if (offset >= s.end()) lo = mid + 1;
+                else return s;
+            }
+            return null;
+        }
+    }
+
+    private final File log;
+    private final File dir;
+    private final File manifest;
+    private final Pattern segmentName;
+    private final boolean writer; // false: only reads what a writer left on disk
+    private final int recordSize; // fixed-size binary records, or 0 for text lines
+    private final long segmentBytes = Long.getLong("bank.log.segmentBytes", 64L << 20);
+    private final boolean rollDaily = Boolean.parseBoolean(System.getProperty("bank.log.rollDaily", "true"));
+    private final int retentionDays = Integer.getInteger("bank.log.retentionDays", 0);
+    private final long retentionBytes = Long.getLong("bank.log.retentionBytes", 0L);
+
+    // writer state, guarded by this
+    private List<Segment> closed = new ArrayList<>();
+    private long activeBase;
+    private LocalDateTime activeFirst; // stamp of the active segment's first entry
+    private long dayStart, dayEnd;     // epoch millis bounding activeFirst's day (for rollIfDue(long))
+    private int generation;            // bumped by every roll
+    private ExecutorService compressor;
+
+    private LogSegments(File log, boolean writer, int recordSize) {
+        this.log = log.getAbsoluteFile();
+        this.dir = this.log.getParentFile();
+        this.manifest = new File(dir, this.log.getName() + ".segments");
+        this.segmentName = Pattern.compile(Pattern.quote(this.log.getName()) + "\\.(\\d{20})(\\.gz)?(\\.tmp)?");
+        this.writer = writer;
+        this.recordSize = recordSize;
+    }
+
+    // For the process writing the log: finishes whatever a crash interrupted and resumes
+    // compressing segments that are still plain. recordSize: see isBinary().
+    static LogSegments forWriter(File log, int recordSize) {
+        LogSegments s = new LogSegments(log, true, recordSize);
+        s.recover();
+        return s;
+    }
+
+    // For readers of a log written elsewhere; every view() rereads the manifest.
+    static LogSegments forReader(File log, int recordSize) {
+        return new LogSegments(log, false, recordSize);
+    }
+
+    File activeFile() { return log; }
+
+    // true for a log of fixed-size binary records, false for text lines
+    boolean isBinary() { return recordSize > 0; }
+
+    synchronized int getGeneration() { return generation; }
+
+    View view() {
+        if (!writer) {
+            try {
+                Manifest m = readManifest();
+                return new View(Collections.unmodifiableList(m.segments), m.activeBase);
+            } catch (IOException e) {
+                System.err.println("Cannot read log segment list: " + e.getMessage());
+                return new View(List.of(), 0);
+            }
+        }
+        synchronized (this) {
+            return new View(Collections.unmodifiableList(new ArrayList<>(closed)), activeBase);
+        }
+    }
+
+    // ---- writing ----
+
+    // Called by a writer before appending entries stamped time: closes the active segment if
+    // it is full or holds an earlier day. Returns true if it did; writers holding the file
+    // open must reopen it.
+    synchronized boolean rollIfDue(LocalDateTime time) {
+        if (!writer) return false;
+        long size = log.length();
+        boolean rolled = false;
+        if (size > 0 && (size >= segmentBytes || (rollDaily && activeFirst != null
+                && !activeFirst.toLocalDate().equals(time.toLocalDate())))) {
+            rolled = roll();
+        }
+        if (size == 0 || rolled) setActiveFirst(time);
+        return rolled;
+    }
+
+    // Same for writers that stamp entries with epoch millis and hold the active file open;
+    // activeSize is its size as their channel reports it (File.length() allocates). Builds no
+    // objects unless the segment is due to roll or has just been started.
+    synchronized boolean rollIfDue(long epochMillis, long activeSize) {
+        if (!writer) return false;
+        if (activeFirst != null && epochMillis >= dayStart && epochMillis < dayEnd && activeSize > 0
+                && activeSize < segmentBytes) {
+            return false;
+        }
+        return rollIfDue(LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault()));
+    }
+
+    private void setActiveFirst(LocalDateTime time) {
+        activeFirst = time;
+        if (time == null || !rollDaily) {
+            dayStart = Long.MIN_VALUE;
+            dayEnd = Long.MAX_VALUE;
+            return;
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        dayStart = time.toLocalDate().atStartOfDay(zone).toInstant().toEpochMilli();
+        dayEnd = time.toLocalDate().plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    private boolean roll() {
+        String name = log.getName() + "." + String.format("%020d", activeBase);
+        File closedFile = new File(dir, name);
+        try {
+            Files.move(log.toPath(), closedFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Cannot roll transaction log, still writing " + log + ": " + e.getMessage());
+            return false;
+        }
+        Segment s = new Segment(activeBase, closedFile.length(), -1, activeFirst, null, name);
+        closed.add(s);
+        activeBase = s.end();
+        generation++;
+        writeManifest();
+        compressor().execute(() -> compress(s));
+        return true;
+    }
+
+    // Gzips a closed segment, counting its lines and noting its last entry on the way, then
+    // switches the manifest to the compressed file before the plain one is deleted.
+    private void compress(Segment s) {
+        File plain = new File(dir, s.file);
+        File gz = new File(dir, s.file + ".gz");
+        File tmp = new File(dir, s.file + ".gz.tmp");
+        long lines = 0;
+        ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+        byte[] lastLine = new byte[0];
+        try (InputStream in = new BufferedInputStream(new FileInputStream(plain), 1 << 16);
+             FileOutputStream fos = new FileOutputStream(tmp)) {
+            GZIPOutputStream out = new GZIPOutputStream(new BufferedOutputStream(fos, 1 << 16), 1 << 16);
+            byte[] buf = new byte[1 << 16];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                out.write(buf, 0, n);
+                for (int i = 0; i < n && !isBinary(); i++) {
+                    if (buf[i] != '\n') {
+                        line.write(buf[i]);
+                        continue;
+                    }
+                    lines++;
+                    lastLine = line.toByteArray();
+                    line.reset();
+                }
+            }
+            out.finish();
+            out.flush();
+            fos.getFD().sync();
+        } catch (IOException e) {
+            System.err.println("Cannot compress " + plain + ", keeping it uncompressed: " + e.getMessage());
+            tmp.delete();
+            return;
+        }
+        try {
+            Files.move(tmp.toPath(), gz.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Cannot compress " + plain + ", keeping it uncompressed: " + e.getMessage());
+            tmp.delete();
+            return;
+        }
+        LocalDateTime last;
+        if (isBinary()) {
+            lines = s.bytes / recordSize;
+            last = lastRecordTime(plain);
+        } else {
+            last = LogReader.timeOf(new String(lastLine, StandardCharsets.UTF_8).trim());
+        }
+        synchronized (this) {
+            int i = closed.indexOf(s);
+            if (i < 0) return; // not ours any more
+            closed.set(i, new Segment(s.base, s.bytes, lines, s.first, last, gz.getName()));
+            writeManifest();
+        }
+        plain.delete();
+        applyRetention();
+    }
+
+    // drops the oldest compressed segments while they are too old or take too much space
+    private void applyRetention() {
+        if (retentionDays <= 0 && retentionBytes <= 0) return;
+        List<Segment> drop = new ArrayList<>();
+        synchronized (this) {
+            LocalDateTime cutoff = LocalDateTime.now().minusDays(retentionDays);
+            long stored = 0;
+            for (Segment s : closed) {
+                if (s.isCompressed()) stored += new File(dir, s.file).length(); // the rest is about to shrink
+            }
+            while (!closed.isEmpty() && closed.get(0).isCompressed()) {
+                Segment oldest = closed.get(0);
+                boolean old = retentionDays > 0 && oldest.last != null && oldest.last.isBefore(cutoff);
+                boolean over = retentionBytes > 0 && stored > retentionBytes;
+                if (!old && !over) break;
+                closed.remove(0);
+                drop.add(oldest);
+                stored -= new File(dir, oldest.file).length();
+            }
+            if (drop.isEmpty()) return;
+            writeManifest();
+        }
+        for (Segment s : drop) new File(dir, s.file).delete();
+    }
+
+    private synchronized ExecutorService compressor() {
+        if (compressor == null) {
+            ThreadPoolExecutor e = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, "transaction-log-compressor");
+                t.setDaemon(true);
+                return t;
+            });
+            e.allowCoreThreadTimeOut(true);
+            compressor = e;
+        }
+        return compressor;
+    }
+
+    // waits until segments closed so far are compressed and retention has run
+    void awaitCompression() {
+        ExecutorService c;
+        synchronized (this) {
+            c = compressor;
+        }
+        if (c == null) return;
+        try {
+            c.submit(() -> { }).get();
+        } catch (Exception e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ---- reading ----
+
+    // the segment's uncompressed content; null if it has been deleted meanwhile
+    byte[] read(Segment s) throws IOException {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            try {
+                File f = new File(dir, s.file);
+                if (!s.isCompressed()) return Files.readAllBytes(f.toPath());
+                try (InputStream in = new GZIPInputStream(new FileInputStream(f), 1 << 16)) {
+                    return in.readAllBytes();
+                }
+            } catch (FileNotFoundException | NoSuchFileException e) {
+                // compressed or deleted since the view was taken: look it up again
+                Segment now = view().segmentAt(s.base);
+                if (now == null) return null;
+                s = now;
+            }
+        }
+        return null;
+    }
+
+    // ---- manifest ----
+
+    private static final class Manifest {
+        final List<Segment> segments = new ArrayList<>();
+        long activeBase;
+    }
+
+    private Manifest readManifest() throws IOException {
+        Manifest m = new Manifest();
+        if (!manifest.exists()) return m;
+        try (BufferedReader in = Files.newBufferedReader(manifest.toPath(), StandardCharsets.UTF_8)) {
+            String[] head = String.valueOf(in.readLine()).split(" ");
+            if (head.length != 3 || !head[0].equals(MAGIC) || !head[1].equals(String.valueOf(VERSION))) {
+                throw new IOException("not a log segment list: " + manifest);
+            }
+            m.activeBase = Long.parseLong(head[2]);
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] f = line.split(" ");
+                if (f.length != 6) throw new IOException("bad line in " + manifest + ": " + line);
+                m.segments.add(new Segment(Long.parseLong(f[0]), Long.parseLong(f[1]), Long.parseLong(f[2]),
+                        time(f[3]), time(f[4]), f[5]));
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("bad number in " + manifest + ": " + e.getMessage());
+        }
+        return m;
+    }
+
+    // caller holds this; a failure leaves the previous list in place
+    private void writeManifest() {
+        File tmp = new File(dir, manifest.getName() + ".tmp");
+        try {
+            try (FileOutputStream fos = new FileOutputStream(tmp)) {
+                Writer w = new BufferedWriter(new OutputStreamWriter(fos, StandardCharsets.UTF_8));
+                w.write(MAGIC + " " + VERSION + " " + activeBase + "\n");
+                for (Segment s : closed) {
+                    w.write(s.base + " " + s.bytes + " " + s.lines + " " + text(s.first) + " " + text(s.last)
+                            + " " + s.file + "\n");
+                }
+                w.flush();
+                fos.getFD().sync();
+            }
+            Files.move(tmp.toPath(), manifest.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Cannot write log segment list: " + e.getMessage());
+        }
+    }
+
+    private static String text(LocalDateTime t) {
+        return t == null ? "-" : t.toString();
+    }
+
+    private static LocalDateTime time(String s) {
+        return s.equals("-") ? null : LocalDateTime.parse(s);
+    }
+
+    // Brings the manifest in line with the files: a segment renamed but not yet listed is
+    // added, leftovers of an interrupted compression are removed, and plain segments are
+    // queued for compression again.
+    private synchronized void recover() {
+        Manifest m;
+        try {
+            m = readManifest();
+        } catch (IOException e) {
+            System.err.println("Cannot read log segment list, rebuilding it: " + e.getMessage());
+            m = new Manifest();
+        }
+        Map<Long, File> plain = new HashMap<>();
+        Map<Long, File> gz = new HashMap<>();
+        File[] files = dir.listFiles();
+        for (File f : files == null ? new File[0] : files) {
+            Matcher mt = segmentName.matcher(f.getName());
+            if (!mt.matches()) continue;
+            if (mt.group(3) != null) {
+                f.delete(); // half-written compression
+                continue;
+            }
+            (mt.group(2) != null ? gz : plain).put(Long.parseLong(mt.group(1)), f);
+        }
+        activeBase = m.activeBase;
+        for (Segment s : m.segments) {
+            File p = plain.remove(s.base);
+            File g = gz.remove(s.base);
+            if (s.isCompressed() && g != null) {
+                if (p != null) p.delete(); // compressed, then interrupted before the delete
+                closed.add(s);
+            } else if (p != null) {
+                if (g != null) g.delete(); // compressed but never listed; redo it
+                closed.add(new Segment(s.base, s.bytes, -1, s.first, null, p.getName()));
+            } else {
+                System.err.println("Transaction log segment missing, dropped from the list: " + s.file);
+            }
+            activeBase = Math.max(activeBase, s.end());
+        }
+        // renamed by a roll that did not get to list it
+        List<Long> unlisted = new ArrayList<>(plain.keySet());
+        Collections.sort(unlisted);
+        for (long base : unlisted) {
+            File p = plain.get(base);
+            if (base < activeBase) {
+                System.err.println("Ignoring unexpected transaction log segment " + p);
+                continue;
+            }
+            closed.add(new Segment(base, p.length(), -1, firstTime(p), null, p.getName()));
+            activeBase = base + p.length();
+        }
+        for (File g : gz.values()) System.err.println("Ignoring unlisted transaction log segment " + g);
+        closed.sort((a, b) -> Long.compare(a.base, b.base));
+        if (isBinary() && log.length() % recordSize != 0) dropTornRecord();
+        setActiveFirst(log.length() > 0 ? firstTime(log) : null);
+        writeManifest();
+        for (Segment s : closed) {
+            if (!s.isCompressed()) {
+                Segment queued = s;
+                compressor().execute(() -> compress(queued));
+            }
+        }
+    }
+
+    // stamp of the file's first entry, or null
+    private LocalDateTime firstTime(File f) {
+        if (isBinary()) {
+            try (DataInputStream in = new DataInputStream(new FileInputStream(f))) {
+                return EventCodec.localTime(in.readLong()); // the time leads each record
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        try (BufferedReader in = Files.newBufferedReader(f.toPath(), StandardCharsets.UTF_8)) {
+            String line = in.readLine();
+            return line == null ? null : LogReader.timeOf(line);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // stamp of the last record of a binary segment, or null
+    private LocalDateTime lastRecordTime(File f) {
+        try (RandomAccessFile in = new RandomAccessFile(f, "r")) {
+            long records = in.length() / recordSize;
+            if (records == 0) return null;
+            in.seek((records - 1) * recordSize); // the time leads each record
+            return EventCodec.localTime(in.readLong());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // A crash in the middle of appending a record leaves part of it at the end; cut it off
+    // so the records after it start on a record boundary again.
+    private void dropTornRecord() {
+        long keep = log.length() - log.length() % recordSize;
+        try (RandomAccessFile f = new RandomAccessFile(log, "rw")) {
+            f.setLength(keep);
+            System.err.println("Dropped a partly written record at the end of " + log);
+        } catch (IOException e) {
+            System.err.println("Cannot drop a partly written record from " + log + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package bank;
+
+import java.awt.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import javax.swing.*;
+
+// Transaction log viewer for the admin panel. The list model only knows the line count;
+// JList asks for the visible rows and those are read a page at a time through LogReader,
+// keeping a few recent pages cached. All reading happens on the given executor: a row whose
+// page isn't loaded yet shows a placeholder until the page arrives.
+public class LogViewer extends JPanel {
+    private static final long serialVersionUID = 1L;
+    private static final int PAGE = 256;
+    private static final String LOADING = "...";
+
+    private final LogReader reader;
+    private final Executor io;
+    private final LogListModel model = new LogListModel();
+    private final JList<String> list = new JList<>(model);
+    private final JLabel status = new JLabel(" ");
+    private final JButton btnRefresh = new JButton("Refresh");
+
+    public LogViewer(LogReader reader, Executor io) {
+        super(new BorderLayout(4, 4));
+        this.reader = reader;
+        this.io = io;
+
+        // fixed cell size so JList never measures every row
+        list.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        list.setPrototypeCellValue("2025-11-12T21:53:44.922759500 - Transfer: 00000000 -> 00000000 amount=000000.00");
+        JScrollPane scroll = new JScrollPane(list);
+        scroll.setPreferredSize(new Dimension(760, 420));
+        add(scroll, BorderLayout.CENTER);
+
+        JButton btnTop = new JButton("Top");
+        JButton btnPrev = new JButton("Prev Page");
+        JButton btnNext = new JButton("Next Page");
+        JButton btnTail = new JButton("Tail");
+        JButton btnTime = new JButton("Go to Time");
+        JButton btnOffset = new JButton("Go to Offset");
+        JPanel buttons = new JPanel();
+        buttons.add(btnTop);
+        buttons.add(btnPrev);
+        buttons.add(btnNext);
+        buttons.add(btnTail);
+        buttons.add(btnTime);
+        buttons.add(btnOffset);
+        buttons.add(btnRefresh);
+
+        JPanel bottom = new JPanel(new BorderLayout());
+        bottom.add(buttons, BorderLayout.CENTER);
+        bottom.add(status, BorderLayout.SOUTH);
+        add(bottom, BorderLayout.SOUTH);
+
+        btnTop.addActionListener(e -> showLine(0));
+        btnPrev.addActionListener(e -> showLine(list.getFirstVisibleIndex() - visibleRows()));
+        btnNext.addActionListener(e -> showLine(list.getFirstVisibleIndex() + visibleRows()));
+        btnTail.addActionListener(e -> refresh(true));
+        btnRefresh.addActionListener(e -> refresh(false));
+        btnTime.addActionListener(e -> goToTime());
+        btnOffset.addActionListener(e -> goToOffset());
+
+        refresh(true);
+    }
+
+    // reads on the executor, then hands the result to the EDT
+    private interface LogCall<T> {
+        T call() throws IOException;
+    }
+
+    private <T> void inBackground(LogCall<T> work, Consumer<T> onResult) {
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return work.call();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, io).whenCompleteAsync((value, error) -> {
+            if (error == null) {
+                onResult.accept(value);
+                return;
+            }
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            status.setText("Cannot read log: " + cause.getMessage());
+        }, SwingUtilities::invokeLater);
+    }
+
+    // re-indexes appended lines in the background, optionally jumping to the end
+    private void refresh(boolean toTail) {
+        btnRefresh.setEnabled(false);
+        status.setText("Indexing log...");
+        inBackground(() -> {
+            TransactionLogger.flush();
+            return reader.refresh();
+        }, lines -> {
+            btnRefresh.setEnabled(true);
+            model.setSize((int) Math.min(Integer.MAX_VALUE, lines));
+            if (toTail) showLine(model.getSize() - 1);
+            updateStatus();
+        });
+    }
+
+    private int visibleRows() {
+        int first = list.getFirstVisibleIndex();
+        return first < 0 ? PAGE : Math.max(1, list.getLastVisibleIndex() - first);
+    }
+
+    private void showLine(long line) {
+        int size = model.getSize();
+        if (size == 0) return;
+        int index = (int) Math.max(0, Math.min(size - 1, line));
+        // put the target at the top of the viewport, not just anywhere on screen
+        Rectangle cell = list.getCellBounds(index, index);
+        if (cell != null) {
+            cell.height = list.getVisibleRect().height;
+            list.scrollRectToVisible(cell);
+        }
+        list.setSelectedIndex(index);
+        updateStatus();
+    }
+
+    private void updateStatus() {
+        status.setText(String.format("%,d lines", model.getSize()));
+    }
+
+    private void goToTime() {
+        String text = JOptionPane.showInputDialog(this, "Time (e.g. 2025-11-12T21:54):", LocalDateTime.now().withNano(0));
+        if (text == null || text.trim().isEmpty()) return;
+        LocalDateTime time;
+        try {
+            time = LocalDateTime.parse(text.trim());
+        } catch (DateTimeParseException ex) {
+            status.setText("Not a time: " + text);
+            return;
+        }
+        inBackground(() -> reader.lineAtTime(time), this::showLine);
+    }
+
+    private void goToOffset() {
+        String text = JOptionPane.showInputDialog(this, "Byte offset:", "0");
+        if (text == null || text.trim().isEmpty()) return;
+        long offset;
+        try {
+            offset = Long.parseLong(text.trim());
+        } catch (NumberFormatException ex) {
+            status.setText("Not an offset: " + text);
+            return;
+        }
+        inBackground(() -> reader.lineAtOffset(offset), this::showLine);
+    }
+
+    private class LogListModel extends AbstractListModel<String> {
+        private static final long serialVersionUID = 1L;
+        private int size;
+        // page number -> lines, least recently used first
+        private final Map<Long, List<String>> pages = new LinkedHashMap<Long, List<String>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, List<String>> eldest) {
+                return size() > 8;
+            }
+        };
+
+        private final Set<Long> loading = new HashSet<>();
+        private int generation; // bumped on resize so late pages from before are dropped
+
+        void setSize(int newSize) {
+            int old = size;
+            size = newSize;
+            generation++;
+            loading.clear();
+            pages.clear(); // the last page may have grown
+            if (newSize > old) fireIntervalAdded(this, old, newSize - 1);
+            else if (newSize < old) fireIntervalRemoved(this, newSize, old - 1);
+            if (Math.min(old, newSize) > 0) fireContentsChanged(this, 0, Math.min(old, newSize) - 1);
+        }
+
+        @Override
+        public int getSize() { return size; }
+
+        @Override
+        public String getElementAt(int index) {
+            long page = index / PAGE;
+            List<String> lines = pages.get(page);
+            if (lines == null) {
+                load(page);
+                return LOADING;
+            }
+            int i = (int) (index - page * PAGE);
+            return i < lines.size() ? lines.get(i) : "";
+        }
+
+        private void load(long page) {
+            if (!loading.add(page)) return;
+            int gen = generation;
+            inBackground(() -> reader.readLines(page * PAGE, PAGE), lines -> {
+                if (gen != generation) return;
+                loading.remove(page);
+                pages.put(page, lines);
+                int first = (int) (page * PAGE);
+                fireContentsChanged(this, first, Math.min(size, first + PAGE) - 1);
+            });
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package bank;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+// In-process operational metrics: counters, gauges and latency histograms, each registered
+// once by name and published as a JMX MBean under "bank:type=<Counter|Gauge|Latency>,name=...".
+//
+//   -Dbank.metrics=false              turns recording off (the instruments stay, but do nothing)
+//   -Dbank.metrics.file=metrics.csv   appends a CSV row per metric every interval
+//   -Dbank.metrics.intervalSeconds=60
+public final class Metrics {
+    public static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("bank.metrics"));
+
+    private static final Map<String, Object> metrics = new ConcurrentHashMap<>();
+    private static ScheduledExecutorService reporter; // guarded by Metrics.class
+
+    static {
+        String file = System.getProperty("bank.metrics.file");
+        if (ENABLED && file != null && !file.isEmpty()) {
+            startReporter(new File(file), Long.getLong("bank.metrics.intervalSeconds", 60L));
+        }
+    }
+
+    private Metrics() {}
+
+    public static Counter counter(String name) {
+        return (Counter) metrics.computeIfAbsent(name, n -> register(new Counter(n), "Counter", n));
+    }
+
+    public static LatencyHistogram histogram(String name) {
+        return (LatencyHistogram) metrics.computeIfAbsent(name, n -> register(new LatencyHistogram(n), "Latency", n));
+    }
+
+    // a second gauge under the same name replaces the first
+    public static Gauge gauge(String name, LongSupplier source) {
+        Gauge g = new Gauge(name, source);
+        metrics.put(name, register(g, "Gauge", name));
+        return g;
+    }
+
+    // start time for LatencyHistogram.recordSince
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    private static Object register(Object mbean, String type, String name) {
+        if (!ENABLED) return mbean;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName id = new ObjectName("bank", new Hashtable<>(Map.of("type", type, "name", name)));
+            if (server.isRegistered(id)) server.unregisterMBean(id);
+            server.registerMBean(mbean, id);
+        } catch (JMException e) {
+            System.err.println("Cannot register metric " + name + " with JMX: " + e.getMessage());
+        }
+        return mbean;
+    }
+
+    // one line per metric, sorted by name
+    public static String dump() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Object> e : new TreeMap<>(metrics).entrySet()) {
+            Object m = e.getValue();
+            if (m instanceof LatencyHistogram) {
+                LatencyHistogram h = (LatencyHistogram) m;
+                sb.append(String.format("%-28s count=%d mean=%.1fus p50=%.1fus p99=%.1fus p999=%.1fus max=%.1fus%n",
+                        e.getKey(), h.getCount(), h.getMeanMicros(), h.getP50Micros(), h.getP99Micros(),
+                        h.getP999Micros(), h.getMaxMicros()));
+            } else {
+                sb.append(String.format("%-28s %d%n", e.getKey(), value(m)));
+            }
+        }
+        return sb.toString();
+    }
+
+    static final String CSV_HEADER = "time,name,type,value,mean_us,p50_us,p99_us,p999_us,max_us";
+
+    // rows for every metric at this moment; value is the count for latencies
+    public static void writeCsv(Appendable out) throws IOException {
+        String now = LocalDateTime.now().toString();
+        for (Map.Entry<String, Object> e : new TreeMap<>(metrics).entrySet()) {
+            Object m = e.getValue();
+            out.append(now).append(',').append(e.getKey()).append(',');
+            if (m instanceof LatencyHistogram) {
+                LatencyHistogram h = (LatencyHistogram) m;
+                out.append(String.format("latency,%d,%.1f,%.1f,%.1f,%.1f,%.1f%n", h.getCount(), h.getMeanMicros(),
+                        h.getP50Micros(), h.getP99Micros(), h.getP999Micros(), h.getMaxMicros()));
+            } else {
+                out.append(m instanceof Counter ? "counter," : "gauge,").append(Long.toString(value(m)))
+                        .append(",,,,,").append(System.lineSeparator());
+            }
+        }
+    }
+
+    private static long value(Object m) {
+        return m instanceof Counter ? ((Counter) m).getValue() : ((Gauge) m).getValue();
+    }
+
+    // Appends the CSV rows to file every intervalSeconds from a daemon thread; the header is
+    // written when the file is new.
+    public static synchronized void startReporter(File file, long intervalSeconds) {
+        if (reporter != null) return;
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "bank-metrics");
+            t.setDaemon(true);
+            return t;
+        });
+        long every = Math.max(1, intervalSeconds);
+        reporter.scheduleAtFixedRate(() -> appendCsv(file), every, every, TimeUnit.SECONDS);
+    }
+
+    public static synchronized void stopReporter() {
+        if (reporter == null) return;
+        reporter.shutdown();
+        reporter = null;
+    }
+
+    public static void appendCsv(File file) {
+        boolean fresh = !file.exists() || file.length() == 0;
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(file, true))) {
+            if (fresh) {
+                bw.write(CSV_HEADER);
+                bw.newLine();
+            }
+            writeCsv(bw);
+        } catch (IOException e) {
+            System.err.println("Writing metrics to " + file + " failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package bank;
+
+// Amounts are kept as a long count of minor units (cents) so balances never pick up
+// floating-point rounding drift. These helpers convert at the edges (UI input, display).
+public final class Money {
+    public static final long CENTS_PER_UNIT = 100;
+    private static final double MAX_UNITS = Long.MAX_VALUE / (double) CENTS_PER_UNIT;
+
+    private Money() {}
+
+    // rounds to the nearest cent; rejects NaN, infinities and amounts that do not fit in a long
+    public static long toCents(double amount) {
+        if (Double.isNaN(amount) || Double.isInfinite(amount) || Math.abs(amount) >= MAX_UNITS) {
+            throw new IllegalArgumentException("Not a valid amount: " + amount);
+        }
+        return Math.round(amount * CENTS_PER_UNIT);
+    }
+
+    public static double toDouble(long cents) {
+        return cents / (double) CENTS_PER_UNIT;
+    }
+
+    // "1234.50", "-0.05"
+    public static String format(long cents) {
+        return append(new StringBuilder(24), cents).toString();
+    }
+
+    public static StringBuilder append(StringBuilder sb, long cents) {
+        long units = cents / CENTS_PER_UNIT;
+        long frac = Math.abs(cents % CENTS_PER_UNIT);
+        if (cents < 0 && units == 0) sb.append('-');
+        sb.append(units).append('.');
+        if (frac < 10) sb.append('0');
+        return sb.append(frac);
+    }
+}
@@ -0,0 +1,25 @@
+package bank;
+
+import java.time.LocalDate;
+
+// charges a flat fee to every current account that ends the day overdrawn
+public class OverdraftFeeJob implements TypedEndOfDayJob {
+    private final long feeCents;
+
+    public OverdraftFeeJob(long feeCents) {
+        this.feeCents = feeCents;
+    }
+
+    @Override
+    public String getName() { return "overdraft-fee"; }
+
+    @Override
+    public boolean process(Account account, LocalDate businessDate, EventBatch events) {
+        if (!(account instanceof CurrentAccount) || account.balanceCents >= 0) return false;
+        // a fee may take the balance past the overdraft limit, so no withdrawal rules here
+        long newBalance = account.adjust(-feeCents);
+        events.add(System.currentTimeMillis(), EventType.OVERDRAFT_FEE, 0, account.getAccountNumber(), "", feeCents,
+                newBalance, 0, "");
+        return true;
+    }
+}
@@ -0,0 +1,21 @@
+package bank;
+
+// How BankSystem makes its changes durable.
+public enum PersistenceMode {
+    // rewrite the snapshot after every change (original behaviour; with -Dbank.shards only the
+    // shards the change touched)
+    SNAPSHOT,
+    // append each change to a write-ahead journal and compact it into the snapshot at checkpoints
+    JOURNAL;
+
+    // selected with -Dbank.persistence=snapshot|journal, defaults to SNAPSHOT
+    public static PersistenceMode fromSystemProperty() {
+        String value = System.getProperty("bank.persistence", "snapshot");
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown persistence mode '" + value + "', using SNAPSHOT");
+            return SNAPSHOT;
+        }
+    }
+}
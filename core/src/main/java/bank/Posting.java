@@ -0,0 +1,33 @@
+package bank;
+
+// One line of a batch file: a deposit into or a withdrawal from a single account.
+public class Posting {
+    public enum Type { DEPOSIT, WITHDRAWAL }
+
+    private final String accountNumber;
+    private final Type type;
+    private final long amountCents;
+
+    public Posting(String accountNumber, Type type, long amountCents) {
+        this.accountNumber = accountNumber;
+        this.type = type;
+        this.amountCents = amountCents;
+    }
+
+    public static Posting deposit(String accountNumber, long amountCents) {
+        return new Posting(accountNumber, Type.DEPOSIT, amountCents);
+    }
+
+    public static Posting withdrawal(String accountNumber, long amountCents) {
+        return new Posting(accountNumber, Type.WITHDRAWAL, amountCents);
+    }
+
+    public String getAccountNumber() { return accountNumber; }
+    public Type getType() { return type; }
+    public long getAmountCents() { return amountCents; }
+
+    @Override
+    public String toString() {
+        return type + " " + Money.format(amountCents) + " " + accountNumber;
+    }
+}
@@ -0,0 +1,116 @@
+package bank;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Every user and account balance as of one moment, from BankSystem.readView(). Building it
+// never blocks deposits, withdrawals or transfers, and each change is either in it entirely
+// or not at all, so totals add up. Plain values: safe to keep and use from any thread.
+public final class ReadView {
+    public static final class UserState {
+        private final String userId;
+        private final String name;
+        private final String role;
+        private final List<String> accountNumbers;
+
+        UserState(String userId, String name, String role, List<String> accountNumbers) {
+            this.userId = userId;
+            this.name = name;
+            this.role = role;
+            this.accountNumbers = Collections.unmodifiableList(accountNumbers);
+        }
+
+        public String getUserId() { return userId; }
+        public String getName() { return name; }
+        public String getRole() { return role; }
+        public List<String> getAccountNumbers() { return accountNumbers; }
+
+        @Override
+        public String toString() {
+            return String.format("User[%s] %s Role=%s Accounts=%s", userId, name, role, accountNumbers);
+        }
+    }
+
+    public static final class AccountState {
+        private final String accountNumber;
+        private final String type;
+        private final String ownerId;
+        private final String ownerName;
+        private final long balanceCents;
+        private final boolean dormant;
+
+        AccountState(String accountNumber, String type, String ownerId, String ownerName, long balanceCents,
+                     boolean dormant) {
+            this.accountNumber = accountNumber;
+            this.type = type;
+            this.ownerId = ownerId;
+            this.ownerName = ownerName;
+            this.balanceCents = balanceCents;
+            this.dormant = dormant;
+        }
+
+        public String getAccountNumber() { return accountNumber; }
+        public String getAccountType() { return type; }
+        public String getOwnerId() { return ownerId; }
+        public String getOwnerName() { return ownerName; }
+        public long getBalanceCents() { return balanceCents; }
+        public double getBalance() { return Money.toDouble(balanceCents); }
+        public boolean isDormant() { return dormant; }
+
+        @Override
+        public String toString() {
+            return String.format("%s Account [%s] Owner: %s Balance: %s",
+                    type, accountNumber, ownerName, Money.format(balanceCents));
+        }
+    }
+
+    private final long version;
+    private final Map<String, UserState> users;       // sorted by id
+    private final Map<String, AccountState> accounts; // sorted by number
+    private final long totalBalanceCents;
+
+    // users: the visible customers by id; accounts: their visible accounts by number
+    ReadView(long version, TreeMap<String, Customer> users, TreeMap<String, AccountState> accounts) {
+        this.version = version;
+        Map<String, List<String>> owned = new HashMap<>();
+        long total = 0;
+        for (AccountState a : accounts.values()) {
+            owned.computeIfAbsent(a.ownerId, id -> new ArrayList<>()).add(a.accountNumber);
+            total += a.balanceCents;
+        }
+        TreeMap<String, UserState> states = new TreeMap<>();
+        for (Customer c : users.values()) {
+            states.put(c.getUserId(), new UserState(c.getUserId(), c.getName(), c.getRole(),
+                    owned.getOrDefault(c.getUserId(), new ArrayList<>())));
+        }
+        this.users = Collections.unmodifiableMap(states);
+        this.accounts = Collections.unmodifiableMap(accounts);
+        this.totalBalanceCents = total;
+    }
+
+    // orders views: a higher version saw every change a lower one saw
+    public long getVersion() { return version; }
+
+    public Map<String, UserState> getUsers() { return users; }
+
+    public Map<String, AccountState> getAccounts() { return accounts; }
+
+    public UserState getUser(String userId) { return users.get(userId); }
+
+    public AccountState getAccount(String accountNumber) { return accounts.get(accountNumber); }
+
+    // the user's accounts in number order; empty for an unknown user
+    public List<AccountState> getAccountsOf(String userId) {
+        UserState u = users.get(userId);
+        List<AccountState> out = new ArrayList<>();
+        if (u == null) return out;
+        for (String acctNo : u.accountNumbers) out.add(accounts.get(acctNo));
+        return out;
+    }
+
+    public long getTotalBalanceCents() { return totalBalanceCents; }
+}
@@ -0,0 +1,47 @@
+package bank;
+
+public class SavingsAccount extends Account {
+    private static final long serialVersionUID = 1L;
+    private static final long MIN_BALANCE_CENTS = 100_00;
+    private double interestRate; // e.g., 0.04 for 4%
+
+    public SavingsAccount(String accountNumber, String ownerName, long initialBalanceCents, double interestRate) {
+        super(accountNumber, ownerName, initialBalanceCents);
+        this.interestRate = interestRate;
+    }
+
+    @Override
+    public String getAccountType() {
+        return "Savings";
+    }
+
+    public double getInterestRate() { return interestRate; }
+
+    public void applyInterest() {
+        long interest, newBalance;
+        lock().lock();
+        try {
+            interest = accrueInterest(1);
+            newBalance = balanceCents;
+            TransactionLogger.record(EventType.INTEREST, accountNumber, "", newBalance, 0);
+        } finally {
+            lock().unlock();
+        }
+        TransactionLogger.write(EventType.INTEREST, 0, accountNumber, "", interest, newBalance, 0, "");
+    }
+
+    // adds one of periodsPerYear periods of interest, rounded to the cent; caller holds the lock and logs it
+    long accrueInterest(int periodsPerYear) {
+        long interest = Math.round(balanceCents * interestRate / periodsPerYear);
+        adjust(interest);
+        return interest;
+    }
+
+    // optional: enforce a minimum balance e.g., 100
+    @Override
+    protected void checkWithdrawal(long cents) throws InsufficientFundsException {
+        if (balanceCents - cents < MIN_BALANCE_CENTS) {
+            throw new InsufficientFundsException("Cannot withdraw: savings account requires minimum balance of 100.0");
+        }
+    }
+}
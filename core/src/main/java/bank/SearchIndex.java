@@ -0,0 +1,91 @@
+package bank;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+
+// Sorted, case-insensitive prefix index from user ids, names and account numbers to user ids.
+// Each entry is "term\0userId" in a skip list, so a prefix query is one range scan. Names are
+// indexed from the start of every word ("john smith" is found by "jo", "john s" and "sm").
+//
+// Updates aren't atomic with BankSystem's maps, so search() checks every hit with the given
+// predicates and drops entries that no longer hold (a deleted user or account).
+final class SearchIndex {
+    private static final char SEP = '\0';
+
+    private final NavigableSet<String> ids = new ConcurrentSkipListSet<>();
+    private final NavigableSet<String> names = new ConcurrentSkipListSet<>();
+    private final NavigableSet<String> accounts = new ConcurrentSkipListSet<>();
+
+    void addUser(Customer c) {
+        String id = c.getUserId();
+        ids.add(key(id, id));
+        for (String word : nameKeys(c.getName())) names.add(key(word, id));
+    }
+
+    void removeUser(Customer c) {
+        String id = c.getUserId();
+        ids.remove(key(id, id));
+        for (String word : nameKeys(c.getName())) names.remove(key(word, id));
+    }
+
+    void addAccount(String accountNumber, String userId) {
+        accounts.add(key(accountNumber, userId));
+    }
+
+    void removeAccount(String accountNumber, String userId) {
+        accounts.remove(key(accountNumber, userId));
+    }
+
+    // Up to limit distinct user ids matching prefix: id matches first, then names, then
+    // account numbers, each in sorted order. An empty prefix lists every user by id.
+    List<String> search(String prefix, int limit, Predicate<String> userOk,
+                        BiPredicate<String, String> accountOk) {
+        String p = normalize(prefix);
+        List<String> out = new ArrayList<>();
+        Set<String> seen = p.isEmpty() ? null : new HashSet<>();
+        scan(ids, p, limit, out, seen, (term, id) -> userOk.test(id));
+        if (seen != null) {
+            scan(names, p, limit, out, seen, (term, id) -> userOk.test(id));
+            scan(accounts, p, limit, out, seen, (term, id) -> accountOk.test(term, id) && userOk.test(id));
+        }
+        return out;
+    }
+
+    private static void scan(NavigableSet<String> set, String prefix, int limit, List<String> out, Set<String> seen,
+                             BiPredicate<String, String> valid) {
+        NavigableSet<String> range = prefix.isEmpty() ? set
+                : set.subSet(prefix, true, prefix + Character.MAX_VALUE, false);
+        for (String key : range) {
+            if (out.size() >= limit) return;
+            int sep = key.lastIndexOf(SEP);
+            String term = key.substring(0, sep);
+            String id = key.substring(sep + 1);
+            if (!valid.test(term, id)) continue;
+            if (seen == null || seen.add(id)) out.add(id);
+        }
+    }
+
+    static String normalize(String s) {
+        return s == null ? "" : s.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String key(String term, String userId) {
+        return normalize(term) + SEP + userId;
+    }
+
+    private static List<String> nameKeys(String name) {
+        String n = normalize(name);
+        List<String> keys = new ArrayList<>(2);
+        for (int i = 0; i < n.length(); i++) {
+            if (n.charAt(i) != ' ' && (i == 0 || n.charAt(i - 1) == ' ')) keys.add(n.substring(i));
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,45 @@
+package bank;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+// Converts a Java-serialized bankdata.ser into the binary snapshot format. The journal seq
+// is carried over, so a journal (and end-of-day progress) next to the old file is moved
+// along with it and keeps replaying on top of the new snapshot.
+//   java -cp core/target/classes bank.SnapshotConverter [bankdata.ser] [bankdata.dat]
+public class SnapshotConverter {
+
+    public static void main(String[] args) throws Exception {
+        File from = new File(args.length > 0 ? args[0] : "bankdata.ser");
+        File to = new File(args.length > 1 ? args[1] : "bankdata.dat");
+        if (to.exists()) {
+            System.err.println(to + " already exists, not overwriting it");
+            System.exit(1);
+        }
+        int accounts = convert(from, to);
+        System.out.println("Converted " + from + " -> " + to + " (" + accounts + " accounts)");
+    }
+
+    // returns the number of accounts written; the source file is left in place
+    public static int convert(File from, File to) throws IOException {
+        LegacySnapshot old;
+        try {
+            old = LegacySnapshot.read(from);
+        } catch (ClassNotFoundException e) {
+            throw new IOException(from + " holds an unknown class: " + e.getMessage(), e);
+        }
+        File tmp = new File(to.getPath() + ".tmp");
+        SnapshotFile.write(tmp, old.users.values(), old.accounts, null, List.of(), old.journalSeq);
+        Files.move(tmp.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        for (String suffix : new String[]{".wal", ".wal.old", ".eod"}) {
+            File side = new File(from.getPath() + suffix);
+            if (side.exists()) {
+                Files.move(side.toPath(), new File(to.getPath() + suffix).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        return old.accounts.size();
+    }
+}
@@ -0,0 +1,365 @@
+package bank;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+// Binary snapshot of the bank, replacing Java serialization of the two maps.
+//
+//   header   MAGIC, VERSION, journal seq, user count, account count, users offset/length,
+//            index offset, users CRC, index CRC, results offset/count/CRC (version 2), then a
+//            CRC of the header itself
+//   users    per user: id, name, password, role, account count, account numbers
+//   records  per account: number, type, owner, balance, last activity, dormant,
+//            rate or overdraft limit, CRC of the record
+//   index    one long per account: record offset, sorted by account number
+//   results  per idempotency key: key, request, home account, expiry, outcome (to end of file)
+//
+// Strings are [unsigned short length][UTF-8]. Users are read eagerly on open; the file is
+// memory-mapped and an account is only decoded when first asked for (materialize), after
+// which the caller owns it. Claims remember which records have been handed out so an
+// account that was materialized and then deleted isn't brought back from the file.
+// A single mapping limits the file to 2GB.
+final class SnapshotFile {
+    static final int MAGIC = 0x424E4B53; // "BNKS"
+    static final int VERSION = 2; // 2: results section; 1 is still read
+    private static final int HEADER_V1 = 68;
+    private static final int HEADER = 84;
+    private static final byte SAVINGS = 1;
+    private static final byte CURRENT = 2;
+
+    private final File file;
+    private final MappedByteBuffer map;
+    private final long journalSeq;
+    private final int userCount;
+    private final int accountCount;
+    private final int usersOffset;
+    private final int indexOffset;
+    private final int resultsOffset;
+    private final int resultCount;
+    private final BitSet claimed = new BitSet(); // guarded by this
+
+    private SnapshotFile(File file, MappedByteBuffer map) throws IOException {
+        this.file = file;
+        this.map = map;
+        if (map.capacity() < HEADER_V1 || map.getInt(0) != MAGIC) throw new IOException(file + " is not a bank snapshot");
+        int version = map.getInt(4);
+        if (version != 1 && version != VERSION) throw new IOException(file + ": unsupported snapshot version " + version);
+        int header = version == 1 ? HEADER_V1 : HEADER;
+        if (map.capacity() < header || crc(map, 0, header - 4) != map.getInt(header - 4)) {
+            throw new IOException(file + ": header checksum mismatch");
+        }
+        journalSeq = map.getLong(8);
+        userCount = map.getInt(16);
+        accountCount = map.getInt(20);
+        usersOffset = (int) map.getLong(24);
+        int usersLength = (int) map.getLong(32);
+        indexOffset = (int) map.getLong(40);
+        if (crc(map, usersOffset, usersLength) != map.getInt(56)) throw new IOException(file + ": user section checksum mismatch");
+        if (indexOffset + 8L * accountCount > map.capacity()
+                || crc(map, indexOffset, 8 * accountCount) != map.getInt(60)) {
+            throw new IOException(file + ": account index checksum mismatch");
+        }
+        resultsOffset = version == 1 ? map.capacity() : (int) map.getLong(64);
+        resultCount = version == 1 ? 0 : map.getInt(72);
+        if (version > 1 && (resultsOffset > map.capacity()
+                || crc(map, resultsOffset, map.capacity() - resultsOffset) != map.getInt(76))) {
+            throw new IOException(file + ": results checksum mismatch");
+        }
+    }
+
+    // true when the file starts with the snapshot magic (as opposed to a serialized bankdata.ser)
+    static boolean isSnapshot(File file) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    static SnapshotFile open(File file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (ch.size() > Integer.MAX_VALUE) throw new IOException(file + " is larger than 2GB");
+            // the mapping stays valid after the channel closes (and after the file is replaced)
+            return new SnapshotFile(file, ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+        }
+    }
+
+    long getJournalSeq() { return journalSeq; }
+    int getAccountCount() { return accountCount; }
+    File getFile() { return file; }
+
+    List<Customer> readUsers() {
+        List<Customer> users = new ArrayList<>(userCount);
+        ByteBuffer in = map.duplicate();
+        in.position(usersOffset);
+        for (int i = 0; i < userCount; i++) {
+            Customer c = new Customer(string(in), string(in), string(in), string(in));
+            for (int n = in.getInt(); n > 0; n--) c.addAccount(string(in));
+            users.add(c);
+        }
+        return users;
+    }
+
+    List<IdempotencyCache.Entry> readResults() {
+        List<IdempotencyCache.Entry> results = new ArrayList<>(resultCount);
+        ByteBuffer in = map.duplicate();
+        in.position(resultsOffset);
+        for (int i = 0; i < resultCount; i++) {
+            String key = string(in);
+            String request = string(in);
+            String home = string(in);
+            long expiresAt = in.getLong();
+            results.add(new IdempotencyCache.Entry(key, request, home, expiresAt, in.get() != 0));
+        }
+        return results;
+    }
+
+    // Decodes the account and claims it; null if it isn't in the file or was claimed before.
+    synchronized Account materialize(String accountNumber) throws IOException {
+        int slot = find(accountNumber);
+        if (slot < 0 || claimed.get(slot)) return null;
+        Account a = decode(recordOffset(slot));
+        claimed.set(slot);
+        return a;
+    }
+
+    synchronized BitSet claims() { return (BitSet) claimed.clone(); }
+
+    synchronized void claim(int slot) { claimed.set(slot); }
+
+    String accountNumberAt(int slot) {
+        ByteBuffer in = map.duplicate();
+        in.position(recordOffset(slot));
+        return string(in);
+    }
+
+    private int recordOffset(int slot) {
+        return (int) map.getLong(indexOffset + 8 * slot);
+    }
+
+    private int find(String accountNumber) {
+        int lo = 0, hi = accountCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = accountNumberAt(mid).compareTo(accountNumber);
+            if (cmp < 0) lo = mid + 1;
+            else if (cmp > 0) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    private Account decode(int offset) throws IOException {
+        ByteBuffer in = map.duplicate();
+        in.position(offset);
+        String number = string(in);
+        byte type = in.get();
+        String owner = string(in);
+        long balance = in.getLong();
+        long lastActivity = in.getLong();
+        boolean dormant = in.get() != 0;
+        long extra = in.getLong();
+        int end = in.position();
+        if (crc(map, offset, end - offset) != in.getInt()) {
+            throw new IOException(file + ": checksum mismatch in account " + number);
+        }
+        Account a = type == SAVINGS
+                ? new SavingsAccount(number, owner, balance, Double.longBitsToDouble(extra))
+                : new CurrentAccount(number, owner, balance, extra);
+        a.restoreActivity(lastActivity, dormant);
+        return a;
+    }
+
+    private int recordLength(int offset) {
+        ByteBuffer in = map.duplicate();
+        in.position(offset);
+        skipString(in);
+        in.get();
+        skipString(in);
+        return in.position() - offset + 8 + 8 + 1 + 8 + 4;
+    }
+
+    // Writes users, accounts and idempotency results to file. Accounts come from the map
+    // (already materialized) plus, when previous is given, every record of previous that was
+    // unclaimed at the start (copied as raw bytes); where both have an account the map wins.
+    // Returns, per slot of the new file, the slot in previous it was copied from, or -1 if it
+    // came from the map.
+    static int[] write(File file, Collection<Customer> users, Map<String, Account> accounts,
+                        SnapshotFile previous, Collection<IdempotencyCache.Entry> results,
+                        long journalSeq) throws IOException {
+        BitSet unclaimed = new BitSet();
+        if (previous != null) {
+            unclaimed.set(0, previous.accountCount);
+            unclaimed.andNot(previous.claims());
+        }
+        // keys after the claims: anything claimed in between is in both and the map copy is used
+        List<String> keys = new ArrayList<>(accounts.keySet());
+        keys.sort(null);
+
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Counting out = new Counting(new BufferedOutputStream(Channels.newOutputStream(ch), 1 << 16));
+            DataOutputStream data = new DataOutputStream(out);
+            data.write(new byte[HEADER]);
+
+            long usersOffset = out.count;
+            CRC32 usersCrc = new CRC32();
+            out.crc = usersCrc;
+            int userCount = 0;
+            for (Customer c : users) {
+                List<String> accts;
+                String[] fields;
+                synchronized (c) {
+                    accts = c.getAccountNumbers();
+                    fields = new String[]{c.getUserId(), c.getName(), c.getPassword(), c.getRole()};
+                }
+                for (String f : fields) string(data, f);
+                data.writeInt(accts.size());
+                for (String acct : accts) string(data, acct);
+                userCount++;
+            }
+            out.crc = null;
+            long usersLength = out.count - usersOffset;
+
+            // merge the sorted map keys with the previous file's unclaimed (already sorted) records
+            long[] offsets = new long[keys.size() + unclaimed.cardinality()];
+            int[] sources = new int[offsets.length];
+            int n = 0;
+            int k = 0;
+            int slot = previous == null ? -1 : unclaimed.nextSetBit(0);
+            CRC32 recordCrc = new CRC32();
+            while (k < keys.size() || slot >= 0) {
+                int cmp = slot < 0 ? -1 : k == keys.size() ? 1 : keys.get(k).compareTo(previous.accountNumberAt(slot));
+                if (cmp <= 0) {
+                    Account a = accounts.get(keys.get(k++));
+                    if (cmp == 0) slot = unclaimed.nextSetBit(slot + 1);
+                    if (a == null) continue; // deleted since the key list was taken
+                    offsets[n] = out.count;
+                    sources[n++] = -1;
+                    recordCrc.reset();
+                    out.crc = recordCrc;
+                    writeAccount(data, a);
+                    out.crc = null;
+                    data.writeInt((int) recordCrc.getValue());
+                } else {
+                    int offset = previous.recordOffset(slot);
+                    byte[] raw = new byte[previous.recordLength(offset)];
+                    previous.map.get(offset, raw);
+                    offsets[n] = out.count;
+                    sources[n++] = slot;
+                    data.write(raw);
+                    slot = unclaimed.nextSetBit(slot + 1);
+                }
+            }
+
+            long indexOffset = out.count;
+            CRC32 indexCrc = new CRC32();
+            out.crc = indexCrc;
+            for (int i = 0; i < n; i++) data.writeLong(offsets[i]);
+            out.crc = null;
+
+            long resultsOffset = out.count;
+            CRC32 resultsCrc = new CRC32();
+            out.crc = resultsCrc;
+            for (IdempotencyCache.Entry e : results) {
+                string(data, e.key);
+                string(data, e.request);
+                string(data, e.home);
+                data.writeLong(e.expiresAt);
+                data.writeBoolean(e.getOutcome());
+            }
+            out.crc = null;
+            data.flush();
+            if (out.count > Integer.MAX_VALUE) throw new IOException("snapshot would exceed 2GB");
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            header.putInt(MAGIC).putInt(VERSION).putLong(journalSeq).putInt(userCount).putInt(n)
+                    .putLong(usersOffset).putLong(usersLength).putLong(indexOffset)
+                    .putLong(0) // reserved
+                    .putInt((int) usersCrc.getValue()).putInt((int) indexCrc.getValue())
+                    .putLong(resultsOffset).putInt(results.size()).putInt((int) resultsCrc.getValue());
+            header.putInt(crc(header, 0, HEADER - 4));
+            header.flip();
+            while (header.hasRemaining()) ch.write(header, header.position());
+            ch.force(true);
+            return Arrays.copyOf(sources, n);
+        }
+    }
+
+    private static void writeAccount(DataOutputStream out, Account a) throws IOException {
+        a.lock().lock();
+        try {
+            string(out, a.getAccountNumber());
+            boolean savings = a instanceof SavingsAccount;
+            out.writeByte(savings ? SAVINGS : CURRENT);
+            string(out, a.getOwnerName());
+            out.writeLong(a.balanceCents);
+            out.writeLong(a.getLastActivityMillis());
+            out.writeByte(a.isDormantFlag() ? 1 : 0);
+            out.writeLong(savings ? Double.doubleToLongBits(((SavingsAccount) a).getInterestRate())
+                    : ((CurrentAccount) a).getOverdraftLimitCents());
+        } finally {
+            a.lock().unlock();
+        }
+    }
+
+    private static void string(DataOutputStream out, String s) throws IOException {
+        byte[] b = (s == null ? "" : s).getBytes(StandardCharsets.UTF_8);
+        if (b.length > 0xFFFF) throw new IOException("string too long for snapshot: " + b.length + " bytes");
+        out.writeShort(b.length);
+        out.write(b);
+    }
+
+    private static String string(ByteBuffer in) {
+        byte[] b = new byte[in.getShort() & 0xFFFF];
+        in.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static void skipString(ByteBuffer in) {
+        int len = in.getShort() & 0xFFFF;
+        in.position(in.position() + len);
+    }
+
+    private static int crc(ByteBuffer buf, int offset, int length) {
+        CRC32 crc = new CRC32();
+        ByteBuffer slice = buf.duplicate();
+        slice.limit(offset + length).position(offset);
+        crc.update(slice);
+        return (int) crc.getValue();
+    }
+
+    // tracks the write position and optionally feeds a CRC
+    private static final class Counting extends FilterOutputStream {
+        long count;
+        CRC32 crc;
+
+        Counting(OutputStream out) { super(out); }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (crc != null) crc.update(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (crc != null) crc.update(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,433 @@
+package bank;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntConsumer;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+// The snapshot on disk and the images accounts are materialized from. With one shard (the
+// default) that is a single SnapshotFile at dataFile, as before. With -Dbank.shards=N users
+// and accounts are partitioned by the hash of their id over N SnapshotFiles named
+// <dataFile>.<i>of<N>.<generation>, and dataFile holds a manifest:
+//
+//   MAGIC "BNKM", VERSION, shard count N, journal seq the shards cover, generation,
+//   N shard generations, CRC of everything before it
+//
+// A user's record (with its list of account numbers) lives in the user's shard; each account
+// record, and each idempotency result about the account, in the account's shard. Shards are
+// opened and written in parallel, and a write only rewrites shards touched since they were
+// last written. A write puts its shards under a new generation, never over files the current
+// manifest names, and commits them all at once by renaming the new manifest into place; files
+// the manifest does not name (from a write that crashed or failed) are deleted on open. So a
+// transfer between accounts in different shards is on disk in both or in neither.
+// Version 1 manifests (no generations) name shards <dataFile>.<i>of<N>, read as generation 0.
+final class SnapshotStore {
+    static final int MAGIC = 0x424E4B4D; // "BNKM"
+    static final int VERSION = 2;
+    private static final int MANIFEST_V1 = 24;
+    private static final Pattern SHARD_FILE = Pattern.compile("\\.\\d+of\\d+(\\.\\d+)?(\\.tmp)?");
+    private static final Counter SNAPSHOT_BYTES = Metrics.counter("snapshot.bytesWritten");
+
+    private final String dataFile;
+    private final int shards; // layout that writes produce
+    private final IntConsumer shardWritten; // null, or for tests (see the constructor)
+    // One image per shard of the layout on disk; an entry is null once everything in it is in
+    // the map. Replaced after each write; materializing and replacing both lock the old image.
+    private volatile AtomicReferenceArray<SnapshotFile> images = new AtomicReferenceArray<>(0);
+    private final AtomicLongArray touched; // per shard, bumped on every change to it
+    private final long[] written;          // touched[i] as of the last write of shard i
+    private int layout;                    // shard count on disk: 0 none (or legacy), 1 single file
+    private long generation;               // of the manifest on disk; the next write uses the one after
+    private long[] generations = new long[0]; // per shard on disk, the generation the manifest names
+    private long journalSeq;
+
+    SnapshotStore(String dataFile, int shards) {
+        this(dataFile, shards, null);
+    }
+
+    // shardWritten: for tests, called with the shard number after each shard file of a write is in place
+    SnapshotStore(String dataFile, int shards, IntConsumer shardWritten) {
+        if (shards < 1) throw new IllegalArgumentException("shards must be at least 1: " + shards);
+        this.dataFile = dataFile;
+        this.shards = shards;
+        this.shardWritten = shardWritten;
+        this.touched = new AtomicLongArray(shards);
+        this.written = new long[shards];
+    }
+
+    // -Dbank.shards, default 1
+    static int shardsFromSystemProperty() {
+        int n = Integer.getInteger("bank.shards", 1);
+        if (n >= 1) return n;
+        System.err.println("Invalid bank.shards " + n + ", using 1");
+        return 1;
+    }
+
+    static int shardOf(String key, int shards) {
+        return Math.floorMod(key.hashCode(), shards);
+    }
+
+    int getShards() { return shards; }
+
+    // journal seq the files on disk cover
+    synchronized long getJournalSeq() { return journalSeq; }
+
+    File shardFile(int shard, int count, long generation) {
+        if (count == 1) return new File(dataFile);
+        return new File(dataFile + "." + shard + "of" + count + (generation == 0 ? "" : "." + generation));
+    }
+
+    // Called after a change is applied in memory and before its journal record is appended, so
+    // a checkpoint that covers the record also sees the shard as changed.
+    void touchUser(String userId) {
+        if (shards > 1) touched.incrementAndGet(shardOf(userId, shards));
+    }
+
+    void touchAccount(String accountNumber) {
+        if (shards > 1) touched.incrementAndGet(shardOf(accountNumber, shards));
+    }
+
+    // true for a manifest or a single-file snapshot; false for anything else (a legacy file)
+    static boolean isStore(File file) {
+        if (SnapshotFile.isSnapshot(file)) return true;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Maps every shard of the snapshot at dataFile and returns the users of all of them.
+    synchronized List<Customer> open() throws IOException {
+        File f = new File(dataFile);
+        int count;
+        long seq;
+        long gen = 0;
+        long[] gens = new long[0];
+        SnapshotFile[] opened;
+        if (SnapshotFile.isSnapshot(f)) {
+            count = 1;
+            opened = new SnapshotFile[] {SnapshotFile.open(f)};
+            seq = opened[0].getJournalSeq();
+            gens = new long[1];
+        } else {
+            ByteBuffer manifest = readManifest(f);
+            count = manifest.getInt(8);
+            seq = manifest.getLong(12);
+            gens = new long[count];
+            if (manifest.getInt(4) > 1) {
+                gen = manifest.getLong(20);
+                for (int i = 0; i < count; i++) gens[i] = manifest.getLong(28 + 8 * i);
+            }
+            opened = new SnapshotFile[count];
+            int n = count;
+            long[] named = gens;
+            try {
+                IntStream.range(0, n).parallel().forEach(i -> {
+                    try {
+                        opened[i] = SnapshotFile.open(shardFile(i, n, named[i]));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        List<List<Customer>> perShard = IntStream.range(0, count).parallel()
+                .mapToObj(i -> opened[i].readUsers()).toList();
+        List<Customer> users = new ArrayList<>();
+        for (List<Customer> list : perShard) users.addAll(list);
+
+        images = new AtomicReferenceArray<>(opened);
+        layout = count;
+        generation = gen;
+        generations = gens;
+        journalSeq = seq;
+        for (int i = 0; i < shards; i++) written[i] = touched.get(i); // what's on disk is current
+        deleteUnnamed();
+        return users;
+    }
+
+    // Shard files the manifest does not name: left by a write that crashed before its manifest
+    // was in place, or by an older layout.
+    private void deleteUnnamed() {
+        File data = new File(dataFile).getAbsoluteFile();
+        String base = data.getName();
+        File[] files = data.getParentFile().listFiles((dir, name) -> name.startsWith(base + ".")
+                && SHARD_FILE.matcher(name.substring(base.length())).matches());
+        if (files == null) return;
+        List<File> named = new ArrayList<>();
+        if (layout > 1) {
+            for (int i = 0; i < layout; i++) named.add(shardFile(i, layout, generations[i]).getAbsoluteFile());
+        }
+        for (File file : files) {
+            if (!named.contains(file.getAbsoluteFile())) file.delete();
+        }
+    }
+
+    // idempotency results of every shard open() mapped
+    synchronized List<IdempotencyCache.Entry> readResults() {
+        List<IdempotencyCache.Entry> results = new ArrayList<>();
+        AtomicReferenceArray<SnapshotFile> imgs = images;
+        for (int i = 0; i < imgs.length(); i++) {
+            if (imgs.get(i) != null) results.addAll(imgs.get(i).readResults());
+        }
+        return results;
+    }
+
+    // Forgets the images after the maps were loaded some other way; the next write is a full one.
+    synchronized void clear() {
+        images = new AtomicReferenceArray<>(0);
+        layout = 0;
+        generations = new long[0];
+        journalSeq = 0;
+    }
+
+    private static int manifestLength(int version, int count) {
+        return version == 1 ? MANIFEST_V1 : 32 + 8 * count;
+    }
+
+    private static ByteBuffer readManifest(File f) throws IOException {
+        byte[] bytes = Files.readAllBytes(f.toPath());
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        if (bytes.length < MANIFEST_V1 || buf.getInt(0) != MAGIC) throw new IOException(f + " is not a bank snapshot");
+        int version = buf.getInt(4);
+        if (version < 1 || version > VERSION) throw new IOException(f + ": unsupported manifest version " + version);
+        int count = buf.getInt(8);
+        if (count < 2) throw new IOException(f + ": bad shard count " + count);
+        if (bytes.length != manifestLength(version, count)) throw new IOException(f + ": bad manifest length");
+        if (crc(bytes) != buf.getInt(bytes.length - 4)) throw new IOException(f + ": manifest checksum mismatch");
+        return buf;
+    }
+
+    private static int crc(byte[] manifest) {
+        CRC32 crc = new CRC32();
+        crc.update(manifest, 0, manifest.length - 4);
+        return (int) crc.getValue();
+    }
+
+    // The account from its shard's image, put into accounts while the image is locked; null
+    // if it isn't there or was handed out before.
+    Account materialize(String accountNumber, Map<String, Account> accounts) {
+        AtomicReferenceArray<SnapshotFile> imgs = images;
+        if (imgs.length() == 0) return null;
+        int shard = shardOf(accountNumber, imgs.length());
+        SnapshotFile img = imgs.get(shard);
+        if (img == null) return null;
+        synchronized (img) {
+            Account a = accounts.get(accountNumber);
+            if (a != null) return a;
+            if (images != imgs || imgs.get(shard) != img) {
+                return materialize(accountNumber, accounts); // replaced while we waited
+            }
+            try {
+                a = img.materialize(accountNumber);
+            } catch (IOException e) {
+                System.err.println("Cannot load account " + accountNumber + ": " + e.getMessage());
+                return null;
+            }
+            if (a != null) accounts.put(accountNumber, a);
+            return a;
+        }
+    }
+
+    // Loads every account still in an image, for callers that walk all accounts.
+    void materializeAll(Map<String, Account> accounts) {
+        AtomicReferenceArray<SnapshotFile> imgs = images;
+        for (int shard = 0; shard < imgs.length(); shard++) {
+            SnapshotFile img = imgs.get(shard);
+            if (img == null) continue;
+            synchronized (img) {
+                if (images != imgs || imgs.get(shard) != img) {
+                    materializeAll(accounts);
+                    return;
+                }
+                for (int slot = 0; slot < img.getAccountCount(); slot++) {
+                    materialize(img.accountNumberAt(slot), accounts);
+                }
+                imgs.set(shard, null); // everything is in the map now
+            }
+        }
+    }
+
+    // Writes the shards touched since their last write (all of them when the layout on disk
+    // differs from the configured one), each to a new file of the next generation, then commits
+    // them with the manifest and deletes the files they replace. A single shard is written to a
+    // temp file renamed over dataFile. Accounts never materialized are copied straight from the
+    // shard's image, and the image then moves to the new file. The caller serializes writes
+    // (BankSystem.saveLock).
+    synchronized boolean write(Collection<Customer> users, Map<String, Account> accounts,
+                               List<IdempotencyCache.Entry> results, long seq) {
+        boolean relayout = layout != shards;
+        if (relayout) materializeAll(accounts); // files of the old layout are not copied from
+        AtomicReferenceArray<SnapshotFile> imgs = relayout ? new AtomicReferenceArray<>(shards) : images;
+
+        long[] versions = new long[shards];
+        List<Integer> dirty = new ArrayList<>();
+        for (int i = 0; i < shards; i++) {
+            versions[i] = touched.get(i);
+            if (shards == 1 || relayout || versions[i] != written[i]) dirty.add(i);
+        }
+        List<Collection<Customer>> shardUsers = bucket(users, dirty);
+        List<Map<String, Account>> shardAccounts = bucket(accounts, dirty);
+        List<List<IdempotencyCache.Entry>> shardResults = bucketResults(results, dirty);
+
+        long gen = shards == 1 ? 0 : generation + 1;
+        int[][] sources = new int[shards][];
+        dirty.parallelStream().forEach(i -> sources[i] = writeShard(imgs.get(i), i, gen, shardUsers.get(i),
+                shardAccounts.get(i), shardResults.get(i), seq));
+        boolean all = true;
+        for (int i : dirty) all &= sources[i] != null;
+        long[] gens = relayout ? new long[shards] : generations.clone();
+        for (int i : dirty) gens[i] = gen;
+        if (!all || (shards > 1 && !writeManifest(seq, gen, gens))) {
+            if (shards > 1) {
+                for (int i : dirty) shardFile(i, shards, gen).delete();
+            }
+            return false;
+        }
+
+        // committed: move the images over and drop the files the manifest no longer names
+        for (int i : dirty) {
+            SnapshotFile previous = imgs.get(i);
+            if (previous != null) replaceImage(imgs, i, previous, shardFile(i, shards, gen), sources[i]);
+            written[i] = versions[i];
+        }
+        if (relayout) {
+            images = imgs;
+            if (layout > 1) {
+                for (int i = 0; i < layout; i++) shardFile(i, layout, generations[i]).delete();
+            }
+            layout = shards;
+        } else if (shards > 1) {
+            for (int i : dirty) shardFile(i, shards, generations[i]).delete();
+        }
+        generation = gen;
+        generations = gens;
+        journalSeq = seq;
+        return true;
+    }
+
+    // per shard, null for shards that are not written
+    private List<Collection<Customer>> bucket(Collection<Customer> users, List<Integer> dirty) {
+        List<Collection<Customer>> out = new ArrayList<>(Collections.nCopies(shards, null));
+        if (shards == 1) {
+            out.set(0, users);
+            return out;
+        }
+        for (int i : dirty) out.set(i, new ArrayList<>());
+        for (Customer c : users) {
+            Collection<Customer> shard = out.get(shardOf(c.getUserId(), shards));
+            if (shard != null) shard.add(c);
+        }
+        return out;
+    }
+
+    private List<Map<String, Account>> bucket(Map<String, Account> accounts, List<Integer> dirty) {
+        List<Map<String, Account>> out = new ArrayList<>(Collections.nCopies(shards, null));
+        if (shards == 1) {
+            out.set(0, accounts);
+            return out;
+        }
+        for (int i : dirty) out.set(i, new HashMap<>());
+        for (Map.Entry<String, Account> e : accounts.entrySet()) {
+            Map<String, Account> shard = out.get(shardOf(e.getKey(), shards));
+            if (shard != null) shard.put(e.getKey(), e.getValue());
+        }
+        return out;
+    }
+
+    private List<List<IdempotencyCache.Entry>> bucketResults(List<IdempotencyCache.Entry> results,
+                                                             List<Integer> dirty) {
+        List<List<IdempotencyCache.Entry>> out = new ArrayList<>(Collections.nCopies(shards, null));
+        if (shards == 1) {
+            out.set(0, results);
+            return out;
+        }
+        for (int i : dirty) out.set(i, new ArrayList<>());
+        for (IdempotencyCache.Entry e : results) {
+            List<IdempotencyCache.Entry> shard = out.get(shardOf(e.home, shards));
+            if (shard != null) shard.add(e);
+        }
+        return out;
+    }
+
+    // the slot sources of the new file (see SnapshotFile.write), or null if it failed
+    private int[] writeShard(SnapshotFile previous, int shard, long gen, Collection<Customer> users,
+                             Map<String, Account> accounts, List<IdempotencyCache.Entry> results, long seq) {
+        File target = shardFile(shard, shards, gen);
+        File tmp = new File(target.getPath() + ".tmp");
+        try {
+            int[] sources = SnapshotFile.write(tmp, users, accounts, previous, results, seq);
+            SNAPSHOT_BYTES.add(tmp.length());
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            if (shardWritten != null) shardWritten.accept(shard);
+            return sources;
+        } catch (IOException e) {
+            System.err.println("Save failed: " + e.getMessage());
+            tmp.delete();
+            return null;
+        }
+    }
+
+    // Points the shard's image at the file just written. Records that came from the map, or
+    // whose old record was claimed while writing, are claimed in the new image too.
+    private void replaceImage(AtomicReferenceArray<SnapshotFile> imgs, int shard, SnapshotFile previous,
+                              File target, int[] sources) {
+        SnapshotFile next;
+        try {
+            next = SnapshotFile.open(target);
+        } catch (IOException e) {
+            // the old mapping stays valid, keep using it
+            System.err.println("Cannot map new snapshot: " + e.getMessage());
+            return;
+        }
+        synchronized (previous) {
+            if (imgs.get(shard) != previous) return;
+            BitSet claimed = previous.claims();
+            for (int slot = 0; slot < sources.length; slot++) {
+                if (sources[slot] < 0 || claimed.get(sources[slot])) next.claim(slot);
+            }
+            imgs.set(shard, next);
+        }
+    }
+
+    private boolean writeManifest(long seq, long gen, long[] gens) {
+        ByteBuffer buf = ByteBuffer.allocate(manifestLength(VERSION, shards));
+        buf.putInt(MAGIC).putInt(VERSION).putInt(shards).putLong(seq).putLong(gen);
+        for (long g : gens) buf.putLong(g);
+        buf.putInt(crc(buf.array()));
+        File target = new File(dataFile);
+        File tmp = new File(dataFile + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(buf.array());
+            out.getFD().sync();
+        } catch (IOException e) {
+            System.err.println("Save failed: " + e.getMessage());
+            tmp.delete();
+            return false;
+        }
+        try {
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Save failed: " + e.getMessage());
+            tmp.delete();
+            return false;
+        }
+    }
+}
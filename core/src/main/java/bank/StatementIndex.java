@@ -0,0 +1,529 @@
+package bank;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Account number -> transaction log entries, kept on disk next to the log so a statement
+// reads only that account's lines. update() indexes whatever was appended since the last
+// call; both the scan and the statement reads go through memory-mapped windows of the log.
+// Offsets count from the start of the whole log, across the segments rolled out of it (see
+// LogSegments); a statement reads only the closed segments holding one of its entries, and
+// entries in segments since deleted by retention are left out.
+//
+// Index file: MAGIC, VERSION, long indexedUpTo, then one record per (entry, account):
+// [byte len][account number][long log offset][long entry time]. Records past indexedUpTo
+// (a crash between appending records and updating the header) are dropped on open, and
+// once most records point into deleted segments the file is rewritten without them.
+//
+// A binary event log (see EventCodec) is indexed by each record's account and counterparty
+// fields rather than by scanning text, and statements render the records as log lines.
+public class StatementIndex implements Closeable {
+    private static final int MAGIC = 0x53544958; // "STIX"
+    private static final int VERSION = 2; // 1 also indexed names that looked like account numbers
+    private static final int HEADER = 16;
+    static long windowBytes = 32L << 20; // bytes of log mapped at a time; for tests and tools
+
+    private final LogSegments segments;
+    private final boolean binary;
+    private final Path indexFile;
+    private FileChannel log;         // active segment; null until the file exists
+    private long activeBase = -1;    // its offset in the whole log
+    private FileChannel index;
+    private final Map<String, Postings> postings = new HashMap<>();
+    private long indexedUpTo;
+    private MappedByteBuffer window; // last mapped region of the active segment, reused across statement reads
+    private long windowStart;
+    private long loadedBase = -1;    // last closed segment read, reused while a statement stays in it
+    private byte[] loaded;
+
+    // logFile and whatever segments have been rolled out of it
+    public StatementIndex(Path logFile, Path indexFile) throws IOException {
+        this(LogSegments.forReader(logFile.toFile(), 0), indexFile);
+    }
+
+    StatementIndex(LogSegments segments, Path indexFile) throws IOException {
+        this.segments = segments;
+        this.binary = segments.isBinary();
+        this.indexFile = indexFile;
+        index = FileChannel.open(indexFile, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE);
+        load(follow(segments.view()));
+    }
+
+    // Reopens the active segment after a roll; returns the end of the whole log.
+    private long follow(LogSegments.View view) throws IOException {
+        if (view.activeBase != activeBase) {
+            if (log != null) log.close();
+            log = null;
+            window = null;
+            activeBase = view.activeBase;
+        }
+        if (log == null) {
+            try {
+                log = FileChannel.open(segments.activeFile().toPath(), StandardOpenOption.READ);
+            } catch (NoSuchFileException e) {
+                return activeBase; // between a roll and the next entry
+            }
+        }
+        return activeBase + log.size();
+    }
+
+    private void load(long logEnd) throws IOException {
+        long firstBase = segments.view().firstBase();
+        if (index.size() < HEADER) {
+            reset();
+            return;
+        }
+        // not closed: that would close the index channel too
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new ChannelInput(index), 1 << 16));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            System.err.println("Rebuilding statement index: unknown format");
+            reset();
+            return;
+        }
+        indexedUpTo = in.readLong();
+        long valid = HEADER;
+        int kept = 0, expired = 0;
+        byte[] acct = new byte[255];
+        while (true) {
+            int len;
+            long offset, time;
+            try {
+                len = in.readUnsignedByte();
+                in.readFully(acct, 0, len);
+                offset = in.readLong();
+                time = in.readLong();
+            } catch (EOFException e) {
+                break; // torn record at the end
+            }
+            if (offset >= indexedUpTo) break;
+            if (offset >= firstBase) {
+                add(new String(acct, 0, len, StandardCharsets.US_ASCII), offset, time);
+                kept++;
+            } else {
+                expired++;
+            }
+            valid += 1 + len + 16;
+        }
+        index.truncate(valid);
+        if (logEnd < indexedUpTo) {
+            System.err.println("Rebuilding statement index: log is shorter than the index");
+            reset();
+        } else if (expired > kept) {
+            rewrite();
+        }
+    }
+
+    // replaces the index file with the postings in memory, through a temp file
+    private void rewrite() throws IOException {
+        Path tmp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp.toFile())) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(indexedUpTo);
+            for (Map.Entry<String, Postings> e : postings.entrySet()) {
+                Postings p = e.getValue();
+                for (int i = 0; i < p.size; i++) {
+                    out.writeByte(e.getKey().length());
+                    out.writeBytes(e.getKey());
+                    out.writeLong(p.offsets[i]);
+                    out.writeLong(p.times[i]);
+                }
+            }
+            out.flush();
+            fos.getFD().sync();
+        }
+        index.close();
+        Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        index = FileChannel.open(indexFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private void reset() throws IOException {
+        postings.clear();
+        window = null;
+        indexedUpTo = 0;
+        index.truncate(0);
+        writeHeader();
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer h = ByteBuffer.allocate(HEADER).putInt(MAGIC).putInt(VERSION).putLong(indexedUpTo);
+        h.flip();
+        while (h.hasRemaining()) index.write(h, h.position());
+    }
+
+    private void add(String acct, long offset, long time) {
+        postings.computeIfAbsent(acct, k -> new Postings()).add(offset, time);
+    }
+
+    // Indexes complete lines appended since the last update, reading segments rolled out of
+    // the log since then first; returns the new indexed length.
+    public synchronized long update() throws IOException {
+        LogSegments.View view = segments.view();
+        long size = follow(view);
+        if (size < indexedUpTo) reset(); // log was truncated or replaced
+        long pos = Math.max(indexedUpTo, view.firstBase()); // past segments that expired unread
+        if (size == pos) return indexedUpTo;
+
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(records);
+        String[] seen = new String[8];
+        for (LogSegments.Segment s : view.closed) {
+            if (s.end() <= pos) continue;
+            byte[] data = segments.read(s);
+            if (data != null) {
+                int from = (int) (Math.max(pos, s.base) - s.base);
+                scan(ByteBuffer.wrap(data), from, data.length, s.base, out, seen);
+            }
+            pos = s.end(); // closed segments end with a complete line or record
+        }
+        while (pos < size) {
+            long local = pos - activeBase;
+            long len = Math.min(windowBytes, size - pos);
+            MappedByteBuffer map = log.map(FileChannel.MapMode.READ_ONLY, local, len);
+            int lastEnd = scan(map, 0, (int) len, pos, out, seen);
+            if (lastEnd < 0) {
+                if (pos + len < size && len == windowBytes) {
+                    System.err.println("Statement index: log line longer than " + windowBytes + " bytes at " + pos);
+                }
+                break; // incomplete last line: wait for the rest
+            }
+            pos += lastEnd + 1;
+        }
+        out.flush();
+        ByteBuffer buf = ByteBuffer.wrap(records.toByteArray());
+        try {
+            long at = index.size();
+            while (buf.hasRemaining()) at += index.write(buf, at);
+            index.force(false); // records before the header that covers them
+            indexedUpTo = pos;
+            writeHeader();
+        } catch (IOException e) {
+            // postings were already added in memory; go back to what is on disk
+            postings.clear();
+            load(size);
+            throw e;
+        }
+        return indexedUpTo;
+    }
+
+    // Indexes the complete lines in [from, to) of map, which starts at offset base of the
+    // log; returns the index of the last \n, or -1 if there is none.
+    private int scan(ByteBuffer map, int from, int to, long base, DataOutputStream out, String[] seen)
+            throws IOException {
+        if (binary) return scanRecords(map, from, to, base, out);
+        int lineStart = from;
+        int lastEnd = -1;
+        for (int i = from; i < to; i++) {
+            if (map.get(i) != '\n') continue;
+            indexLine(map, lineStart, i, base + lineStart, out, seen);
+            lineStart = i + 1;
+            lastEnd = i;
+        }
+        return lastEnd;
+    }
+
+    // Same for whole records; returns the index of the last byte of the last one, or -1.
+    private int scanRecords(ByteBuffer map, int from, int to, long base, DataOutputStream out) throws IOException {
+        int at = from;
+        for (; at + EventCodec.RECORD <= to; at += EventCodec.RECORD) {
+            long time = EventCodec.localTime(EventCodec.time(map, at)).toInstant(ZoneOffset.UTC).toEpochMilli();
+            String acct = EventCodec.account(map, at);
+            String other = EventCodec.counterparty(map, at);
+            if (!acct.isEmpty()) posting(acct, base + at, time, out);
+            if (!other.isEmpty() && !other.equals(acct)) posting(other, base + at, time, out);
+        }
+        return at == from ? -1 : at - 1;
+    }
+
+    private void posting(String acct, long offset, long time, DataOutputStream out) throws IOException {
+        add(acct, offset, time);
+        out.writeByte(acct.length());
+        out.writeBytes(acct);
+        out.writeLong(offset);
+        out.writeLong(time);
+    }
+
+    // the word or two words an account number follows in a log message: "Account [n]",
+    // "Account deleted: n", "... with user deletion: n", "to n", "from n", "Failed deposit on n"
+    private static final String[][] ACCOUNT_MARKERS = {
+            {"Account"}, {"Account", "deleted"}, {"user", "deletion"}, {"to"}, {"from"}, {"on"}};
+
+    // Adds a posting for each distinct account number in the line [from, to) of the window.
+    // Only words right after an account marker count, so names and amounts that happen to
+    // look like account numbers (a user "deadbeef") are not indexed.
+    private void indexLine(ByteBuffer map, int from, int to, long offset, DataOutputStream out, String[] seen)
+            throws IOException {
+        int sep = -1;
+        for (int i = from; i + 2 < to; i++) {
+            if (map.get(i) == ' ' && map.get(i + 1) == '-' && map.get(i + 2) == ' ') {
+                sep = i;
+                break;
+            }
+        }
+        if (sep < 0) return;
+        long time = timeKey(map, from, sep);
+        int found = 0;
+        int run = sep + 3;
+        int lastFrom = run, lastTo = run;     // the word before this one
+        int earlierFrom = run, earlierTo = run; // and the one before that
+        for (int i = sep + 3; i <= to; i++) {
+            if (i < to && isAlnum(map.get(i))) continue;
+            if (run == i) {
+                run = i + 1;
+                continue;
+            }
+            if (isMarker(map, earlierFrom, earlierTo, lastFrom, lastTo) && isAccountNumber(map, run, i)) {
+                String acct = ascii(map, run, i);
+                boolean dup = false;
+                for (int k = 0; k < found && k < seen.length; k++) dup |= seen[k].equals(acct);
+                if (!dup) {
+                    if (found < seen.length) seen[found] = acct;
+                    found++;
+                    posting(acct, offset, time, out);
+                }
+            }
+            earlierFrom = lastFrom;
+            earlierTo = lastTo;
+            lastFrom = run;
+            lastTo = i;
+            run = i + 1;
+        }
+    }
+
+    private static boolean isMarker(ByteBuffer map, int earlierFrom, int earlierTo, int lastFrom, int lastTo) {
+        for (String[] m : ACCOUNT_MARKERS) {
+            boolean match = isWord(map, lastFrom, lastTo, m[m.length - 1]);
+            if (match && m.length == 2) match = isWord(map, earlierFrom, earlierTo, m[0]);
+            if (match) return true;
+        }
+        return false;
+    }
+
+    private static boolean isWord(ByteBuffer map, int from, int to, String word) {
+        if (to - from != word.length()) return false;
+        for (int k = 0; k < word.length(); k++) {
+            if (map.get(from + k) != word.charAt(k)) return false;
+        }
+        return true;
+    }
+
+    // account numbers: 10 digits ending in a Luhn check digit (BlockAccountNumberAllocator),
+    // or 8 lowercase hex digits for accounts opened before that
+    private static boolean isAccountNumber(ByteBuffer map, int from, int to) {
+        if (to - from == BlockAccountNumberAllocator.DIGITS) {
+            for (int i = from; i < to; i++) {
+                byte b = map.get(i);
+                if (b < '0' || b > '9') return false;
+            }
+            return BlockAccountNumberAllocator.isValid(ascii(map, from, to));
+        }
+        if (to - from != 8) return false;
+        for (int i = from; i < to; i++) {
+            byte b = map.get(i);
+            if (!((b >= '0' && b <= '9') || (b >= 'a' && b <= 'f'))) return false;
+        }
+        return true;
+    }
+
+    private static boolean isAlnum(byte b) {
+        return (b >= '0' && b <= '9') || (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z');
+    }
+
+    private static String ascii(ByteBuffer map, int from, int to) {
+        byte[] b = new byte[to - from];
+        for (int i = 0; i < b.length; i++) b[i] = map.get(from + i);
+        return new String(b, StandardCharsets.US_ASCII);
+    }
+
+    // LocalDateTime.toString() layout: yyyy-MM-ddTHH:mm[:ss[.fraction]]. Parsed by hand because
+    // this runs once per log line; anything unusual goes through LocalDateTime.parse.
+    private long cachedDay = Long.MIN_VALUE;
+    private int cachedDate = -1;
+
+    private long timeKey(ByteBuffer map, int from, int to) {
+        int len = to - from;
+        if (len < 16 || map.get(from + 4) != '-' || map.get(from + 7) != '-' || map.get(from + 10) != 'T'
+                || map.get(from + 13) != ':') {
+            return timeKey(ascii(map, from, to));
+        }
+        int year = digits(map, from, 4), month = digits(map, from + 5, 2), day = digits(map, from + 8, 2);
+        int hour = digits(map, from + 11, 2), minute = digits(map, from + 14, 2), second = 0, millis = 0;
+        if (len >= 19 && map.get(from + 16) == ':') second = digits(map, from + 17, 2);
+        if (len >= 23 && map.get(from + 19) == '.') millis = digits(map, from + 20, 3);
+        if ((year | month | day | hour | minute | second | millis) < 0 || month < 1 || month > 12 || day < 1
+                || day > 31 || hour > 23 || minute > 59 || second > 59) {
+            return timeKey(ascii(map, from, to));
+        }
+        int date = (year * 100 + month) * 100 + day;
+        if (date != cachedDate) {
+            try {
+                cachedDay = LocalDate.of(year, month, day).toEpochDay();
+            } catch (DateTimeException e) {
+                return Long.MIN_VALUE;
+            }
+            cachedDate = date;
+        }
+        return ((cachedDay * 24 + hour) * 60 + minute) * 60_000L + second * 1000L + millis;
+    }
+
+    // -1 if any byte isn't a digit
+    private static int digits(ByteBuffer map, int from, int count) {
+        int v = 0;
+        for (int i = from; i < from + count; i++) {
+            int d = map.get(i) - '0';
+            if (d < 0 || d > 9) return -1;
+            v = v * 10 + d;
+        }
+        return v;
+    }
+
+    private static long timeKey(String stamp) {
+        try {
+            return LocalDateTime.parse(stamp).toInstant(ZoneOffset.UTC).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    // Log lines for one account stamped in [from, to), oldest first. Either bound may be null.
+    public synchronized List<String> statement(String accountNumber, LocalDateTime from, LocalDateTime to)
+            throws IOException {
+        update();
+        List<String> lines = new ArrayList<>();
+        Postings p = postings.get(accountNumber);
+        if (p == null) return lines;
+        LogSegments.View view = segments.view();
+        long lo = from == null ? Long.MIN_VALUE : from.toInstant(ZoneOffset.UTC).toEpochMilli();
+        long hi = to == null ? Long.MAX_VALUE : to.toInstant(ZoneOffset.UTC).toEpochMilli();
+        for (int i = 0; i < p.size; i++) {
+            if (p.times[i] < lo || p.times[i] >= hi) continue;
+            long offset = p.offsets[i];
+            String line;
+            if (offset >= activeBase) line = readLine(offset - activeBase);
+            else line = readClosedLine(view.segmentAt(offset), offset);
+            if (line != null) lines.add(line);
+        }
+        return lines;
+    }
+
+    // the line at offset of a closed segment; null if the segment has been deleted
+    private String readClosedLine(LogSegments.Segment s, long offset) throws IOException {
+        if (s == null) return null;
+        if (loadedBase != s.base) {
+            loaded = segments.read(s);
+            loadedBase = loaded == null ? -1 : s.base;
+            if (loaded == null) return null;
+        }
+        int start = (int) (offset - s.base);
+        if (binary) return EventCodec.render(ByteBuffer.wrap(loaded), start);
+        int end = start;
+        while (end < loaded.length && loaded[end] != '\n') end++;
+        if (end > start && loaded[end - 1] == '\r') end--;
+        return new String(loaded, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    // Line at offset of the active segment. Indexed lines always end in \n; remaps (growing
+    // the window if needed) when the line isn't covered.
+    private String readLine(long offset) throws IOException {
+        if (binary) {
+            ByteBuffer record = ByteBuffer.allocate(EventCodec.RECORD);
+            while (record.hasRemaining() && log.read(record, offset + record.position()) > 0) {
+                // indexed records are complete
+            }
+            return EventCodec.render(record, 0);
+        }
+        long size = windowBytes;
+        while (true) {
+            if (window == null || offset < windowStart || offset >= windowStart + window.capacity()) {
+                windowStart = offset;
+                window = log.map(FileChannel.MapMode.READ_ONLY, offset,
+                        Math.min(size, indexedUpTo - activeBase - offset));
+            }
+            int start = (int) (offset - windowStart);
+            int end = lineEnd(window, start);
+            if (end >= 0) {
+                if (end > start && window.get(end - 1) == '\r') end--;
+                byte[] b = new byte[end - start];
+                window.get(start, b); // absolute bulk get, leaves the position alone
+                return new String(b, StandardCharsets.UTF_8);
+            }
+            size = Math.max(size, window.capacity()) * 2L;
+            window = null;
+        }
+    }
+
+    private static int lineEnd(ByteBuffer map, int from) {
+        for (int i = from; i < map.capacity(); i++) {
+            if (map.get(i) == '\n') return i;
+        }
+        return -1;
+    }
+
+    public synchronized int getAccountCount() { return postings.size(); }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (log != null) log.close();
+        } finally {
+            index.close();
+        }
+    }
+
+    // positional reads from the start of a channel that stays open
+    private static final class ChannelInput extends InputStream {
+        private final FileChannel channel;
+        private long position;
+
+        ChannelInput(FileChannel channel) { this.channel = channel; }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = channel.read(ByteBuffer.wrap(b, off, len), position);
+            if (n > 0) position += n;
+            return n;
+        }
+    }
+
+    // offsets and entry times for one account, in log order
+    private static final class Postings {
+        long[] offsets = new long[4];
+        long[] times = new long[4];
+        int size;
+
+        void add(long offset, long time) {
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+                times = Arrays.copyOf(times, size * 2);
+            }
+            offsets[size] = offset;
+            times[size++] = time;
+        }
+    }
+}
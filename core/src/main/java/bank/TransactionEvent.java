@@ -0,0 +1,139 @@
+package bank;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// One transaction log entry as typed fields. account is the account the entry is about,
+// counterparty the other side of a transfer, balance the account's balance after it and
+// actor the name the entry is attributed to (the owner for customer operations, the user id
+// for user events, empty for the bank's own jobs). Unused amounts are 0, unused strings "".
+// getMessage() renders the familiar text line, the same whether the log is kept as text or
+// as binary records (see EventCodec).
+public final class TransactionEvent {
+    private final long timeMillis;
+    private final EventType type;
+    private final int detail;
+    private final String account;
+    private final String counterparty;
+    private final long amountCents;
+    private final long balanceCents;
+    private final long counterBalanceCents;
+    private final String actor;
+
+    TransactionEvent(long timeMillis, EventType type, int detail, String account, String counterparty,
+                     long amountCents, long balanceCents, long counterBalanceCents, String actor) {
+        this.timeMillis = timeMillis;
+        this.type = type;
+        this.detail = detail;
+        this.account = account;
+        this.counterparty = counterparty;
+        this.amountCents = amountCents;
+        this.balanceCents = balanceCents;
+        this.counterBalanceCents = counterBalanceCents;
+        this.actor = actor;
+    }
+
+    public long getTimeMillis() { return timeMillis; }
+
+    // in the system time zone, as text log lines are stamped
+    public LocalDateTime getTime() {
+        return EventCodec.localTime(timeMillis);
+    }
+
+    public EventType getType() { return type; }
+    public int getDetail() { return detail; }
+    public String getAccountNumber() { return account; }
+    public String getCounterparty() { return counterparty; }
+    public long getAmountCents() { return amountCents; }
+    public long getBalanceCents() { return balanceCents; }
+    public long getCounterBalanceCents() { return counterBalanceCents; }
+    public String getActor() { return actor; }
+
+    public String getMessage() {
+        return appendMessage(new StringBuilder(96), type, detail, account, counterparty, amountCents, balanceCents,
+                counterBalanceCents, actor).toString();
+    }
+
+    // the line as the text log has it: "<time> - <message>"
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(128).append(getTime()).append(" - ");
+        return appendMessage(sb, type, detail, account, counterparty, amountCents, balanceCents,
+                counterBalanceCents, actor).toString();
+    }
+
+    // The text of an entry. TransactionLogger renders straight from the fields in text mode,
+    // so no event object is built there.
+    static StringBuilder appendMessage(StringBuilder sb, EventType type, int detail, String account,
+                                       String counterparty, long amount, long balance, long counterBalance,
+                                       String actor) {
+        switch (type) {
+            case USER_CREATED:
+                return sb.append("User created: ").append(actor);
+            case USER_DELETED:
+                return sb.append("User deleted: ").append(actor);
+            case ACCOUNT_OPENED:
+                sb.append("Account created: ").append(detail == 'S' ? "Savings" : "Current").append(" Account [")
+                        .append(account).append("] Owner: ").append(actor).append(" Balance: ");
+                return Money.append(sb, balance);
+            case ACCOUNT_CLOSED:
+                sb.append(detail == 1 ? "Account removed with user deletion: " : "Account deleted: ").append(account)
+                        .append(". Final bal=");
+                return Money.append(sb, balance);
+            case DEPOSIT:
+                sb.append("Deposit: ").append(actor).append(" deposited ");
+                Money.append(sb, amount).append(" to ").append(account).append(". New bal=");
+                return Money.append(sb, balance);
+            case WITHDRAWAL:
+                sb.append("Withdrawal: ").append(actor).append(" withdrew ");
+                Money.append(sb, amount).append(" from ").append(account)
+                        .append(detail == 1 ? " (Current, overdraft allowed). New bal=" : ". New bal=");
+                return Money.append(sb, balance);
+            case TRANSFER:
+                sb.append("Transfer: ").append(actor).append(" moved ");
+                Money.append(sb, amount).append(" from ").append(account).append(" to ").append(counterparty)
+                        .append(". New bal=");
+                Money.append(sb, balance).append('/');
+                return Money.append(sb, counterBalance);
+            case INTEREST:
+                sb.append("Interest: Applied ");
+                Money.append(sb, amount).append(" interest to ").append(account).append(". New bal=");
+                return Money.append(sb, balance);
+            case OVERDRAFT_FEE:
+                sb.append("Overdraft fee: Charged ");
+                Money.append(sb, amount).append(" to ").append(account).append(". New bal=");
+                return Money.append(sb, balance);
+            case DORMANT:
+                return sb.append("Dormancy: Account ").append(account).append(" flagged dormant (no activity since ")
+                        .append(LocalDate.ofEpochDay(amount)).append(')');
+            case BATCH_DEPOSIT:
+                sb.append("Batch deposit: ");
+                Money.append(sb, amount).append(" to ").append(account).append(". New bal=");
+                return Money.append(sb, balance);
+            case BATCH_WITHDRAWAL:
+                sb.append("Batch withdrawal: ");
+                Money.append(sb, amount).append(" from ").append(account).append(". New bal=");
+                return Money.append(sb, balance);
+            case BATCH_APPLIED:
+                return sb.append("Batch[").append(detail == 1 ? "all-or-nothing" : "per-item").append("] applied ")
+                        .append(amount).append(" of ").append(balance).append(" postings");
+            case DEPOSIT_FAILED:
+                return sb.append("Failed deposit on ").append(account).append(": ").append(reason(detail));
+            case WITHDRAWAL_FAILED:
+                return sb.append("Failed withdrawal on ").append(account).append(": ").append(reason(detail));
+            case TRANSFER_FAILED:
+                return sb.append("Failed transfer from ").append(account).append(" to ").append(counterparty)
+                        .append(": ").append(reason(detail));
+            default:
+                return sb.append(type);
+        }
+    }
+
+    private static String reason(int detail) {
+        switch (detail) {
+            case EventType.INSUFFICIENT_FUNDS: return "insufficient funds";
+            case EventType.OVERFLOW: return "balance overflow";
+            default: return "refused";
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package bank;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TransactionLogger {
+    private static final String LOG_FILE = System.getProperty("bank.log.file", "transactions.log");
+    // rolled, compressed and expired segments of LOG_FILE; see LogSegments
+    private static final LogSegments segments = LogSegments.forWriter(new File(LOG_FILE), 0);
+    // -Dbank.log.format=binary keeps typed events (log(EventType, ...)) as fixed-size records
+    // in EVENTS_FILE instead of text lines; the log views render them back to the same lines.
+    // Free-text entries (custom end-of-day jobs) stay in LOG_FILE.
+    private static final boolean BINARY = "binary".equalsIgnoreCase(System.getProperty("bank.log.format", "text").trim());
+    private static final String EVENTS_FILE = System.getProperty("bank.events.file", "transactions.evt");
+    private static final LogSegments eventSegments =
+            BINARY ? LogSegments.forWriter(new File(EVENTS_FILE), EventCodec.RECORD) : null;
+
+    // set while the asynchronous writer is running; null means the original open/write/close path
+    private static volatile AsyncLogWriter asyncWriter;
+    private static volatile EventLogWriter eventWriter; // binary events, alongside asyncWriter
+    // synchronous binary writes: the event log stays open and each record is encoded into one buffer
+    private static FileChannel eventChannel;
+    private static int eventGeneration;
+    private static final ByteBuffer eventRecord = ByteBuffer.allocateDirect(EventCodec.RECORD);
+    // balances reported by typed events, in LOG_FILE + ".hist"; -Dbank.history=false switches it off
+    private static final BalanceHistory history = openHistory();
+    private static StatementIndex statementIndex; // opened by the first statement request
+    private static final LatencyHistogram LOG_TIME = Metrics.histogram("log");
+    // set on CommandPipeline's business thread: entries are collected for its log stage instead
+    private static final ThreadLocal<List<String>> captured = new ThreadLocal<>();
+    private static final ThreadLocal<EventBatch> capturedEvents = new ThreadLocal<>();
+
+    private static BalanceHistory openHistory() {
+        if (!Boolean.parseBoolean(System.getProperty("bank.history", "true"))) return null;
+        try {
+            BalanceHistory h = new BalanceHistory(new File(LOG_FILE + ".hist"));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    h.close();
+                } catch (IOException e) {
+                    System.err.println("Closing balance history failed: " + e.getMessage());
+                }
+            }, "balance-history-shutdown"));
+            return h;
+        } catch (IOException e) {
+            System.err.println("Cannot open balance history, historical balances unavailable: " + e.getMessage());
+            return null;
+        }
+    }
+
+    static {
+        Metrics.gauge("log.queueDepth", () -> {
+            AsyncLogWriter.Stats s = getAsyncStats();
+            return s == null ? 0 : s.queueDepth;
+        });
+        Metrics.gauge("log.queuePeak", () -> {
+            AsyncLogWriter.Stats s = getAsyncStats();
+            return s == null ? 0 : s.peakQueueDepth;
+        });
+        // -Dbank.log.async=per_entry|group_commit|best_effort switches the writer on at startup
+        String mode = System.getProperty("bank.log.async");
+        if (mode != null && !mode.isEmpty()) {
+            try {
+                startAsync(AsyncLogWriter.Durability.valueOf(mode.trim().toUpperCase()),
+                        Integer.getInteger("bank.log.queue", 8192),
+                        Integer.getInteger("bank.log.batch", 256),
+                        Long.getLong("bank.log.flushMillis", 50L));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Unknown log durability '" + mode + "', logging synchronously");
+            }
+        }
+    }
+
+    public static void log(String message) {
+        List<String> into = captured.get();
+        if (into != null) {
+            into.add(message);
+            return;
+        }
+        long start = Metrics.start();
+        AsyncLogWriter w = asyncWriter;
+        if (w == null || !w.log(message)) logDirect(message);
+        LOG_TIME.recordSince(start);
+    }
+
+    // One typed entry; see EventType for what each type keeps in which field. Text logs get
+    // the line TransactionEvent renders; binary logs get the record, encoded without allocating.
+    public static void log(EventType type, String account, long amountCents, long balanceCents, String actor) {
+        event(type, 0, account, "", amountCents, balanceCents, 0, actor);
+    }
+
+    // Callers hold the lock of every account whose balance the event reports; see record().
+    static void event(EventType type, int detail, String account, String counterparty, long amount, long balance,
+                      long counterBalance, String actor) {
+        record(type, account, counterparty, balance, counterBalance);
+        write(type, detail, account, counterparty, amount, balance, counterBalance, actor);
+    }
+
+    // Puts the balances a typed event reports into the balance history. The history chains
+    // each account's records in the order they arrive, so this is called while the account
+    // locks that ordered the change are still held; write() then logs the event after they
+    // are released.
+    static void record(EventType type, String account, String counterparty, long balance, long counterBalance) {
+        if (history != null) {
+            history.event(System.currentTimeMillis(), type, account, counterparty, balance, counterBalance);
+        }
+    }
+
+    // record() for each event of a batch, under the locks of the accounts it changed
+    static void record(EventBatch events) {
+        if (history == null) return;
+        for (int i = 0; i < events.size(); i++) {
+            TransactionEvent e = events.get(i);
+            if (e != null) {
+                history.event(e.getTimeMillis(), e.getType(), e.getAccountNumber(), e.getCounterparty(),
+                        e.getBalanceCents(), e.getCounterBalanceCents());
+            }
+        }
+    }
+
+    // event() without the balance history, for an event record() has already taken
+    static void write(EventType type, int detail, String account, String counterparty, long amount, long balance,
+                      long counterBalance, String actor) {
+        long now = System.currentTimeMillis();
+        if (!BINARY) {
+            log(TransactionEvent.appendMessage(new StringBuilder(112), type, detail, account, counterparty, amount,
+                    balance, counterBalance, actor).toString());
+            return;
+        }
+        EventBatch into = capturedEvents.get();
+        if (into != null) {
+            into.add(now, type, detail, account, counterparty, amount, balance, counterBalance, actor);
+            return;
+        }
+        long start = Metrics.start();
+        EventLogWriter w = eventWriter;
+        if (w == null || !w.append(now, type, detail, account, counterparty, amount, balance, counterBalance, actor)) {
+            eventDirect(now, type, detail, account, counterparty, amount, balance, counterBalance, actor);
+        }
+        LOG_TIME.recordSince(start);
+    }
+
+    // Typed entries for one operation, written together; for events record() has already put
+    // into the balance history (see also CommandPipeline).
+    static void writeAll(EventBatch events) {
+        if (events.isEmpty()) return;
+        if (!BINARY) {
+            List<String> messages = new ArrayList<>(events.size());
+            for (int i = 0; i < events.size(); i++) messages.add(events.get(i).getMessage());
+            logAll(messages);
+            return;
+        }
+        EventBatch into = capturedEvents.get();
+        if (into != null) {
+            into.addAll(events);
+            return;
+        }
+        long start = Metrics.start();
+        EventLogWriter w = eventWriter;
+        if (w == null || !w.appendAll(events)) eventsDirect(events.records());
+        LOG_TIME.recordSince(start);
+    }
+
+    private static synchronized void eventDirect(long now, EventType type, int detail, String account,
+                                                 String counterparty, long amount, long balance,
+                                                 long counterBalance, String actor) {
+        EventCodec.encode(eventRecord, 0, now, type, detail, account, counterparty, amount, balance, counterBalance,
+                actor);
+        eventRecord.clear();
+        eventsDirect(eventRecord);
+    }
+
+    // appends whole records from records' position to its limit
+    private static synchronized void eventsDirect(ByteBuffer records) {
+        try {
+            long size = eventChannel == null ? 0 : eventChannel.size();
+            boolean rolled = eventSegments.rollIfDue(EventCodec.time(records, records.position()), size);
+            if (rolled || eventChannel == null || eventSegments.getGeneration() != eventGeneration) {
+                if (eventChannel != null) eventChannel.close();
+                eventGeneration = eventSegments.getGeneration();
+                eventChannel = FileChannel.open(eventSegments.activeFile().toPath(), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            while (records.hasRemaining()) eventChannel.write(records);
+        } catch (IOException e) {
+            System.err.println("Logging failed: " + e.getMessage());
+        }
+    }
+
+    // several entries for one operation (a batch, an end-of-day run) with a single file open
+    public static void logAll(List<String> messages) {
+        if (messages.isEmpty()) return;
+        List<String> into = captured.get();
+        if (into != null) {
+            into.addAll(messages);
+            return;
+        }
+        long start = Metrics.start();
+        AsyncLogWriter w = asyncWriter;
+        if (w == null || !w.logAll(messages)) logAllDirect(messages);
+        LOG_TIME.recordSince(start);
+    }
+
+    private static synchronized void logAllDirect(List<String> messages) {
+        LocalDateTime now = LocalDateTime.now();
+        segments.rollIfDue(now);
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(LOG_FILE, true))) {
+            for (String message : messages) {
+                bw.write(now + " - " + message);
+                bw.newLine();
+            }
+        } catch (IOException e) {
+            System.err.println("Logging failed: " + e.getMessage());
+        }
+    }
+
+    private static synchronized void logDirect(String message) {
+        BufferedWriter bw = null;
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            segments.rollIfDue(now);
+            File f = new File(LOG_FILE);
+            bw = new BufferedWriter(new FileWriter(f, true));
+            String entry = String.format("%s - %s", now, message);
+            bw.write(entry);
+            bw.newLine();
+            bw.flush();
+        } catch (IOException e) {
+            System.err.println("Logging failed: " + e.getMessage());
+        } finally {
+            if (bw != null) {
+                try { bw.close(); } catch (IOException ignored) {}
+            }
+        }
+    }
+
+    // Entries logged by the calling thread go to into (typed ones to events when the log is
+    // binary) until capture(null, null); see CommandPipeline.
+    static void capture(List<String> into, EventBatch events) {
+        if (into == null) {
+            captured.remove();
+            capturedEvents.remove();
+        } else {
+            captured.set(into);
+            if (BINARY) capturedEvents.set(events);
+        }
+    }
+
+    // Switches to a background writer that keeps the log open and flushes in batches of
+    // up to maxBatch entries or every flushMillis, whichever comes first.
+    public static synchronized void startAsync(AsyncLogWriter.Durability durability, int queueCapacity,
+                                               int maxBatch, long flushMillis) {
+        if (asyncWriter != null) return;
+        try {
+            asyncWriter = new AsyncLogWriter(segments, durability, queueCapacity, maxBatch, flushMillis);
+            if (BINARY) eventWriter = new EventLogWriter(eventSegments, durability, queueCapacity, maxBatch, flushMillis);
+            Runtime.getRuntime().addShutdownHook(new Thread(TransactionLogger::stopAsync, "transaction-log-shutdown"));
+        } catch (IOException e) {
+            System.err.println("Cannot start async logging, staying synchronous: " + e.getMessage());
+        }
+    }
+
+    // drains the queue and goes back to synchronous logging
+    public static synchronized void stopAsync() {
+        EventLogWriter ew = eventWriter;
+        eventWriter = null;
+        if (ew != null) ew.close();
+        AsyncLogWriter w = asyncWriter;
+        if (w == null) return;
+        asyncWriter = null;
+        try {
+            w.close();
+        } catch (IOException e) {
+            System.err.println("Closing log writer failed: " + e.getMessage());
+        }
+    }
+
+    // waits until queued entries are on disk; a no-op when logging synchronously
+    public static void flush() {
+        if (history != null) history.flush();
+        EventLogWriter ew = eventWriter;
+        if (ew != null) ew.flush();
+        AsyncLogWriter w = asyncWriter;
+        if (w != null) w.flush();
+    }
+
+    // queue depth, blocked producers and batch sizes of the async writer, or null when synchronous;
+    // for a binary log, of the writer taking the typed events (counted in records)
+    public static AsyncLogWriter.Stats getAsyncStats() {
+        EventLogWriter ew = eventWriter;
+        if (ew != null) return ew.getStats();
+        AsyncLogWriter w = asyncWriter;
+        return w == null ? null : w.getStats();
+    }
+
+    // Paged access for large logs, across all kept segments; the caller closes the reader.
+    // Queued entries are flushed first. A binary log is read as its rendered events.
+    public static LogReader openLog() throws IOException {
+        flush();
+        LogSegments log = BINARY ? eventSegments : segments;
+        File f = log.activeFile();
+        if (!f.exists()) f.createNewFile();
+        return new LogReader(log);
+    }
+
+    // Entries mentioning one account stamped in [from, to); either bound may be null. The
+    // on-disk index (LOG_FILE + ".idx") is opened on first use and caught up on every call;
+    // only the segments holding matching entries are read.
+    public static List<String> getStatement(String accountNumber, LocalDateTime from, LocalDateTime to)
+            throws IOException {
+        flush();
+        return statementIndex().statement(accountNumber, from, to);
+    }
+
+    private static synchronized StatementIndex statementIndex() throws IOException {
+        if (statementIndex == null) {
+            LogSegments log = BINARY ? eventSegments : segments;
+            File f = log.activeFile();
+            if (!f.exists()) f.createNewFile();
+            statementIndex = new StatementIndex(log, new File(f.getPath() + ".idx").toPath());
+        }
+        return statementIndex;
+    }
+
+    // The balance history (null when switched off or unavailable); see BankSystem.getBalanceCentsAt.
+    static BalanceHistory balanceHistory() {
+        return history;
+    }
+
+    // waits for rolled segments to be compressed (and old ones expired); for tests and tools
+    static void awaitCompression() {
+        segments.awaitCompression();
+        if (BINARY) eventSegments.awaitCompression();
+    }
+
+    // whole log, all kept segments, as one string; fine for small logs, use openLog() otherwise
+    public static String readLog() {
+        flush();
+        if (BINARY) return readEvents();
+        StringBuilder sb = new StringBuilder();
+        try {
+            for (LogSegments.Segment s : segments.view().closed) {
+                byte[] bytes = segments.read(s);
+                if (bytes == null) continue; // expired meanwhile
+                BufferedReader br = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(bytes),
+                        StandardCharsets.UTF_8));
+                String line;
+                while ((line = br.readLine()) != null) {
+                    sb.append(line).append("\n");
+                }
+            }
+        } catch (IOException e) {
+            return "Unable to read log file: " + e.getMessage();
+        }
+        try (BufferedReader br = new BufferedReader(new FileReader(LOG_FILE))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                sb.append(line).append("\n");
+            }
+        }catch (IOException e) {
+            return "Unable to read log file: " + e.getMessage();
+        }
+        return sb.toString();
+    }
+
+    private static String readEvents() {
+        StringBuilder sb = new StringBuilder();
+        try (LogReader r = new LogReader(eventSegments)) {
+            for (long line = 0; line < r.getLineCount(); line += 4096) {
+                for (String s : r.readLines(line, 4096)) sb.append(s).append("\n");
+            }
+        } catch (IOException e) {
+            return "Unable to read log file: " + e.getMessage();
+        }
+        return sb.toString();
+    }
+}
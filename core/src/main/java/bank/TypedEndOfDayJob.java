@@ -0,0 +1,17 @@
+package bank;
+
+import java.time.LocalDate;
+
+// End-of-day jobs that describe their change as a typed event (see TransactionEvent) added
+// to the partition's batch, so a run writes binary records without building lines. The
+// built-in jobs are these; other jobs keep returning lines.
+interface TypedEndOfDayJob extends EndOfDayJob {
+    // as process(Account, LocalDate); true if it changed the account and added its event
+    boolean process(Account account, LocalDate businessDate, EventBatch events);
+
+    @Override
+    default String process(Account account, LocalDate businessDate) {
+        EventBatch events = new EventBatch();
+        return process(account, businessDate, events) ? events.get(0).getMessage() : null;
+    }
+}
@@ -0,0 +1,100 @@
+package bank;
+
+import java.awt.*;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BiFunction;
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+
+// Filter box over a list of user ids for the admin and employee panels. Every keystroke
+// queries the search index in the background (BankService.searchUsers); answers to older
+// keystrokes are dropped. At most LIMIT matches are fetched, which keeps even an empty filter
+// over a million users in the millisecond range. The whole result replaces the model with one
+// removal and one addition event, and with a fixed cell size JList only ever renders the
+// visible rows.
+public class UserSearchList extends JPanel {
+    private static final long serialVersionUID = 1L;
+    static final int LIMIT = 10_000;
+
+    private final BiFunction<String, Integer, CompletableFuture<List<String>>> search;
+    private final JTextField filter = new JTextField();
+    private final UserListModel model = new UserListModel();
+    private final JList<String> list = new JList<>(model);
+    private final JLabel status = new JLabel(" ");
+    private int generation; // EDT only; bumped per query
+
+    // search: (prefix, limit) -> matching user ids, completed off the EDT
+    public UserSearchList(BiFunction<String, Integer, CompletableFuture<List<String>>> search) {
+        super(new BorderLayout(4, 4));
+        this.search = search;
+
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.setPrototypeCellValue("wwwwwwwwwwwwwwwwwwww");
+        add(new JScrollPane(list), BorderLayout.CENTER);
+
+        JPanel top = new JPanel(new BorderLayout(4, 4));
+        top.add(new JLabel("Search (id, name or account):"), BorderLayout.WEST);
+        top.add(filter, BorderLayout.CENTER);
+        add(top, BorderLayout.NORTH);
+        add(status, BorderLayout.SOUTH);
+
+        filter.getDocument().addDocumentListener(new DocumentListener() {
+            @Override public void insertUpdate(DocumentEvent e) { refresh(); }
+            @Override public void removeUpdate(DocumentEvent e) { refresh(); }
+            @Override public void changedUpdate(DocumentEvent e) { refresh(); }
+        });
+    }
+
+    public String getSelectedValue() {
+        return list.getSelectedValue();
+    }
+
+    // re-runs the current filter, e.g. after a user was added or deleted
+    public void refresh() {
+        int gen = ++generation;
+        String prefix = filter.getText();
+        long start = System.nanoTime();
+        search.apply(prefix, LIMIT + 1).whenCompleteAsync((ids, error) -> {
+            if (gen != generation) return; // a newer query is on its way
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                status.setText("Search failed: " + cause.getMessage());
+                return;
+            }
+            String selected = list.getSelectedValue();
+            boolean more = ids.size() > LIMIT;
+            model.setItems(more ? ids.subList(0, LIMIT) : ids);
+            if (selected != null) list.setSelectedValue(selected, false);
+            long ms = (System.nanoTime() - start) / 1_000_000;
+            status.setText(more ? String.format("First %,d matches (%d ms), type more to narrow", LIMIT, ms)
+                    : String.format("%,d users (%d ms)", ids.size(), ms));
+        }, SwingUtilities::invokeLater);
+    }
+
+    private static class UserListModel extends AbstractListModel<String> {
+        private static final long serialVersionUID = 1L;
+        private List<String> items = List.of();
+
+        // Listeners see the model as each event describes it: empty once the old rows are
+        // removed, then holding the new ones once they are added.
+        void setItems(List<String> newItems) {
+            int old = items.size();
+            if (old > 0) {
+                items = List.of();
+                fireIntervalRemoved(this, 0, old - 1);
+            }
+            items = newItems;
+            if (!newItems.isEmpty()) fireIntervalAdded(this, 0, newItems.size() - 1);
+        }
+
+        @Override
+        public int getSize() { return items.size(); }
+
+        @Override
+        public String getElementAt(int index) { return items.get(index); }
+    }
+}
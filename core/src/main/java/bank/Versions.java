@@ -0,0 +1,176 @@
+package bank;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Multi-version history behind BankSystem.readView(). Every change to an account or user
+// pushes an immutable Node onto that object's chain while the change's lock is held; all
+// nodes of one change share a Commit whose version comes from a global clock once they are
+// all in place. A reader picks a version and, for each object, takes the newest node at or
+// below it, so it sees each change entirely or not at all and never takes a writer's lock.
+// Nodes no registered reader can still see are cut off when the next change is published.
+final class Versions {
+    // versions of changes; everything loaded from disk is at ORIGIN
+    static final class Commit {
+        volatile long version; // 0 while the change is still being published
+    }
+
+    static final class Node {
+        final Commit commit;
+        final long balanceCents; // accounts only
+        final boolean dormant;
+        final boolean removed;   // deleted by this change
+        volatile Node older;
+
+        Node(Commit commit, long balanceCents, boolean dormant, boolean removed, Node older) {
+            this.commit = commit;
+            this.balanceCents = balanceCents;
+            this.dormant = dormant;
+            this.removed = removed;
+            this.older = older;
+        }
+    }
+
+    // a deleted account (with its owner) or user, kept while a reader may still see it
+    static final class Retired<T> {
+        final T item;
+        final String ownerId;
+        final Commit commit;
+
+        Retired(T item, String ownerId, Commit commit) {
+            this.item = item;
+            this.ownerId = ownerId;
+            this.commit = commit;
+        }
+    }
+
+    static final Commit ORIGIN = new Commit();
+    static {
+        ORIGIN.version = 1;
+    }
+
+    private static final int SPINS = 100;
+
+    private final AtomicLong clock = new AtomicLong(1);
+    // lowest version a registered reader may read at; Long.MAX_VALUE with no readers
+    private volatile long horizon = Long.MAX_VALUE;
+    private final TreeMap<Long, Integer> readers = new TreeMap<>(); // guarded by itself
+    private final ConcurrentLinkedQueue<Retired<Account>> retiredAccounts = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Retired<Customer>> retiredUsers = new ConcurrentLinkedQueue<>();
+
+    Commit begin() {
+        return new Commit();
+    }
+
+    // Makes the change visible to readers that start from now on, then trims the chains it
+    // grew. The horizon is read after the clock moves, so a reader registering meanwhile
+    // either holds its versions back or reads at or past this change.
+    void end(Commit c, Node... pushed) {
+        c.version = clock.incrementAndGet();
+        long h = Math.min(horizon, c.version);
+        for (Node n : pushed) trim(n, h);
+    }
+
+    // one account changed; the caller holds its lock
+    void publish(Account a) {
+        Commit c = begin();
+        end(c, a.pushVersion(c, false));
+    }
+
+    // several accounts changed together; the caller holds all their locks
+    void publish(List<Account> changed) {
+        Commit c = begin();
+        List<Node> pushed = new ArrayList<>(changed.size());
+        for (Account a : changed) pushed.add(a.pushVersion(c, false));
+        end(c, pushed.toArray(new Node[0]));
+    }
+
+    // Queued before the account leaves the live maps, so a reader that misses it there
+    // finds it here.
+    void retire(Account a, String ownerId, Commit c) {
+        retiredAccounts.add(new Retired<>(a, ownerId, c));
+    }
+
+    void retire(Customer u, Commit c) {
+        retiredUsers.add(new Retired<>(u, null, c));
+    }
+
+    Iterable<Retired<Account>> retiredAccounts() { return retiredAccounts; }
+
+    Iterable<Retired<Customer>> retiredUsers() { return retiredUsers; }
+
+    // Registers a reader and returns the token for release(); read at current() afterwards.
+    long register() {
+        synchronized (readers) {
+            long low = clock.get();
+            readers.merge(low, 1, Integer::sum);
+            horizon = readers.firstKey();
+            return low;
+        }
+    }
+
+    long current() {
+        return clock.get();
+    }
+
+    void release(long low) {
+        synchronized (readers) {
+            readers.computeIfPresent(low, (k, n) -> n == 1 ? null : n - 1);
+            horizon = readers.isEmpty() ? Long.MAX_VALUE : readers.firstKey();
+        }
+        pruneRetired();
+    }
+
+    // Deleted objects no registered reader can see any more. Only deletions already versioned
+    // when the horizon is read count; one versioned later may be needed by a reader that
+    // registered in between.
+    void pruneRetired() {
+        long now = clock.get();
+        long h = Math.min(horizon, now);
+        retiredAccounts.removeIf(r -> settled(r.commit) && r.commit.version <= h);
+        retiredUsers.removeIf(r -> settled(r.commit) && r.commit.version <= h);
+    }
+
+    // forget all history; the live objects are being replaced (BankSystem.loadState)
+    void reset() {
+        retiredAccounts.clear();
+        retiredUsers.clear();
+    }
+
+    // The newest node of the chain at or below version, or null if the object did not exist
+    // yet. A change still being published is waited for; writers publish before they let go
+    // of the change's locks, so that is never long.
+    static Node resolve(Node head, long version) {
+        for (Node n = head; n != null; n = n.older) {
+            if (versionOf(n.commit) <= version) return n;
+        }
+        return null;
+    }
+
+    private static long versionOf(Commit c) {
+        long v;
+        for (int polls = 0; (v = c.version) == 0; polls++) {
+            if (polls < SPINS) Thread.onSpinWait();
+            else Thread.yield();
+        }
+        return v;
+    }
+
+    private static boolean settled(Commit c) {
+        return c.version != 0;
+    }
+
+    // keeps the nodes above h and the newest at or below it
+    private static void trim(Node n, long h) {
+        for (; n != null; n = n.older) {
+            long v = n.commit.version;
+            if (v != 0 && v <= h) {
+                n.older = null;
+                return;
+            }
+        }
+    }
+}
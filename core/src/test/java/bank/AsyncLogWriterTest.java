@@ -0,0 +1,204 @@
+package bank;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Writers are built on LogSegments so a test can hold the segments' monitor: the writer thread
+// then stalls before its next batch, which is how these tests hold it back.
+class AsyncLogWriterTest {
+    @TempDir
+    File dir;
+
+    private File logFile() {
+        return new File(dir, "transactions.log");
+    }
+
+    private static void await(BooleanSupplier condition, String what) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out waiting for " + what);
+            Thread.sleep(1);
+        }
+    }
+
+    // the messages written so far, in file order
+    private List<String> messages() throws IOException {
+        List<String> out = new ArrayList<>();
+        for (String line : Files.readAllLines(logFile().toPath(), StandardCharsets.UTF_8)) {
+            out.add(line.substring(line.indexOf(" - ") + 3));
+        }
+        return out;
+    }
+
+    // Loggers racing close() through a tiny queue, each until an entry is refused: none of
+    // them hangs, and every entry accepted is in the file.
+    @Test
+    void closeWhileLoggingNeitherHangsNorLosesAcceptedEntries() throws Exception {
+        AsyncLogWriter writer = new AsyncLogWriter(logFile().getPath(), AsyncLogWriter.Durability.BEST_EFFORT, 4, 2, 50);
+        List<String> accepted = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch underway = new CountDownLatch(1_000);
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            List<Thread> loggers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int me = t;
+                Thread th = new Thread(() -> {
+                    for (int i = 0; ; i++) {
+                        String msg = "logger " + me + " entry " + i;
+                        boolean ok = i % 2 == 0 ? writer.log(msg) : writer.logAll(List.of(msg));
+                        if (!ok) break;
+                        accepted.add(msg);
+                        underway.countDown();
+                    }
+                });
+                loggers.add(th);
+                th.start();
+            }
+            underway.await();
+            writer.close();
+            for (Thread th : loggers) th.join();
+        });
+        List<String> written = messages();
+        assertEquals(accepted.size(), written.size());
+        assertEquals(new HashSet<>(accepted), new HashSet<>(written));
+        assertFalse(writer.log("after close"));
+    }
+
+    @Test
+    void perEntryReturnsAfterItsEntryIsForced() throws Exception {
+        durableCallWaitsForTheWrite(AsyncLogWriter.Durability.PER_ENTRY);
+    }
+
+    @Test
+    void groupCommitReturnsAfterTheBatchIsForced() throws Exception {
+        durableCallWaitsForTheWrite(AsyncLogWriter.Durability.GROUP_COMMIT);
+    }
+
+    private void durableCallWaitsForTheWrite(AsyncLogWriter.Durability durability) throws Exception {
+        LogSegments segments = LogSegments.forWriter(logFile(), 0);
+        AsyncLogWriter writer = new AsyncLogWriter(segments, durability, 16, 16, 60_000);
+        Thread caller;
+        synchronized (segments) {
+            caller = new Thread(() -> writer.logAll(List.of("first", "second")));
+            caller.start();
+            Thread.sleep(100);
+            assertTrue(caller.isAlive(), "returned before the entry was written");
+            assertEquals(0, logFile().length());
+        }
+        caller.join();
+        assertEquals(List.of("first", "second"), messages());
+        AsyncLogWriter.Stats stats = writer.getStats();
+        assertEquals(2, stats.written);
+        // one force per entry, or per batch (the writer may have taken "first" on its own)
+        assertEquals(durability == AsyncLogWriter.Durability.PER_ENTRY ? 2 : stats.batches, stats.forces);
+
+        assertTrue(writer.log("third")); // nothing holds it back now
+        assertEquals(List.of("first", "second", "third"), messages());
+        writer.close();
+    }
+
+    // BEST_EFFORT returns as soon as the entry is queued, and never forces
+    @Test
+    void bestEffortReturnsOnceQueued() throws Exception {
+        LogSegments segments = LogSegments.forWriter(logFile(), 0);
+        AsyncLogWriter writer = new AsyncLogWriter(segments, AsyncLogWriter.Durability.BEST_EFFORT, 16, 16, 60_000);
+        synchronized (segments) {
+            assertTrue(writer.log("queued"));
+            assertEquals(0, logFile().length());
+        }
+        writer.flush();
+        assertEquals(List.of("queued"), messages());
+        assertEquals(0, writer.getStats().forces);
+        writer.close();
+    }
+
+    // Without a caller waiting, entries go out maxBatch at a time, and a short batch waits
+    // for the timer or a flush.
+    @Test
+    void entriesAreWrittenInFullBatches() throws Exception {
+        AsyncLogWriter writer = new AsyncLogWriter(LogSegments.forWriter(logFile(), 0), AsyncLogWriter.Durability.BEST_EFFORT,
+                64, 8, 60_000);
+        List<String> logged = new ArrayList<>();
+        for (int i = 0; i < 19; i++) {
+            logged.add("entry " + i);
+            assertTrue(writer.log("entry " + i));
+        }
+        await(() -> writer.getStats().written == 16, "two full batches");
+        Thread.sleep(100);
+        AsyncLogWriter.Stats stats = writer.getStats();
+        assertEquals(16, stats.written);
+        assertEquals(2, stats.batches);
+        assertEquals(logged.subList(0, 16), messages());
+
+        writer.flush();
+        assertEquals(3, writer.getStats().batches);
+        assertEquals(logged, messages());
+        writer.close();
+    }
+
+    // A full queue blocks the caller, and counts it, until the writer makes room.
+    @Test
+    void fullQueueBlocksTheCaller() throws Exception {
+        LogSegments segments = LogSegments.forWriter(logFile(), 0);
+        AsyncLogWriter writer = new AsyncLogWriter(segments, AsyncLogWriter.Durability.BEST_EFFORT, 2, 1, 60_000);
+        Thread caller;
+        synchronized (segments) {
+            caller = new Thread(() -> {
+                for (int i = 0; i < 4; i++) writer.log("entry " + i);
+            });
+            caller.start();
+            // one entry is held by the stalled writer, two fill the queue, the fourth waits
+            await(() -> caller.getState() == Thread.State.WAITING && writer.getStats().queueDepth == 2,
+                    "a blocked put");
+            assertTrue(writer.getStats().blockedPuts >= 1); // the third may have waited too
+        }
+        caller.join();
+        writer.flush();
+        assertEquals(List.of("entry 0", "entry 1", "entry 2", "entry 3"), messages());
+        assertTrue(writer.getStats().blockedNanos > 0);
+        writer.close();
+    }
+
+    // close() writes out everything queued before it, however far behind the writer is
+    @Test
+    void closeDrainsTheQueue() throws Exception {
+        LogSegments segments = LogSegments.forWriter(logFile(), 0);
+        AsyncLogWriter writer = new AsyncLogWriter(segments, AsyncLogWriter.Durability.BEST_EFFORT, 64, 4, 60_000);
+        List<String> logged = new ArrayList<>();
+        Thread closer = new Thread(() -> {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        synchronized (segments) {
+            for (int i = 0; i < 50; i++) {
+                logged.add("entry " + i);
+                assertTrue(writer.log("entry " + i));
+            }
+            closer.start();
+            await(() -> closer.getState() == Thread.State.WAITING, "close() to wait for the writer");
+            assertFalse(writer.log("too late"));
+        }
+        closer.join();
+        assertEquals(logged, messages());
+    }
+}
@@ -0,0 +1,142 @@
+package bank;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BalanceHistoryTest {
+    private static final int RECORDS = 3 * BalanceHistory.CHECKPOINT + 5;
+
+    // unique across test runs: the history next to the shared test log outlives them
+    private static final AtomicLong NUMBERS = new AtomicLong(ThreadLocalRandom.current().nextLong(1L << 40));
+
+    @TempDir
+    File dir;
+
+    // two accounts written alternately, balance i at time 1000 + 10 * i
+    private static void fill(BalanceHistory h) {
+        for (int i = 0; i < RECORDS; i++) {
+            h.event(1000 + 10 * i, EventType.DEPOSIT, "A", "", i, 0);
+            h.event(1000 + 10 * i, EventType.TRANSFER, "B", "C", -i, 2 * i);
+        }
+    }
+
+    private static void assertBalances(BalanceHistory h) throws Exception {
+        assertNull(h.balanceAt("A", 999));
+        for (int i = 0; i < RECORDS; i++) {
+            long t = 1000 + 10 * i;
+            assertEquals(i, h.balanceAt("A", t), "A at record " + i);
+            assertEquals(i, h.balanceAt("A", t + 9), "A after record " + i);
+            assertEquals(-i, h.balanceAt("B", t), "B at record " + i);
+            assertEquals(2 * i, h.balanceAt("C", t + 5), "C after record " + i);
+        }
+        assertNull(h.balanceAt("D", Long.MAX_VALUE));
+    }
+
+    @Test
+    void everyTimeAcrossCheckpointBoundaries() throws Exception {
+        File f = new File(dir, "balances.hist");
+        try (BalanceHistory h = new BalanceHistory(f)) {
+            fill(h);
+            assertBalances(h);
+        }
+        // checkpoints are rebuilt from the file
+        try (BalanceHistory h = new BalanceHistory(f)) {
+            assertEquals(3, h.getAccountCount());
+            assertBalances(h);
+        }
+    }
+
+    @Test
+    void closedAccountHasNoBalanceAfterwards() throws Exception {
+        File f = new File(dir, "balances.hist");
+        try (BalanceHistory h = new BalanceHistory(f)) {
+            h.event(1000, EventType.ACCOUNT_OPENED, "A", "", 50_00, 0);
+            h.event(2000, EventType.ACCOUNT_CLOSED, "A", "", 50_00, 0);
+            h.event(3000, EventType.DEPOSIT_FAILED, "A", "", 0, 0); // no balance, ignored
+        }
+        try (BalanceHistory h = new BalanceHistory(f)) {
+            assertEquals(50_00, h.balanceAt("A", 1999));
+            assertNull(h.balanceAt("A", 2000));
+            assertNull(h.balanceAt("A", 5000));
+        }
+    }
+
+    @Test
+    void tornRecordIsDroppedOnOpen() throws Exception {
+        File f = new File(dir, "balances.hist");
+        try (BalanceHistory h = new BalanceHistory(f)) {
+            fill(h);
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+            raf.setLength(raf.length() - BalanceHistory.RECORD / 2);
+        }
+        try (BalanceHistory h = new BalanceHistory(f)) {
+            assertEquals(RECORDS - 1, h.balanceAt("A", Long.MAX_VALUE));
+            assertEquals(2L * (RECORDS - 2), h.balanceAt("C", Long.MAX_VALUE)); // its last record was torn
+        }
+    }
+
+    // Writers deposit into and transfer between the same accounts, everything flowing into
+    // one sink whose balance therefore only grows. Its records must grow too: a late record
+    // from a slower writer landing on top of a newer one would show as a drop.
+    @Test
+    void interleavedWritersKeepEachAccountInChangeOrder() throws Exception {
+        BalanceHistory history = TransactionLogger.balanceHistory();
+        assertNotNull(history, "balance history is off");
+        BankSystem bank = new BankSystem(new File(dir, "bankdata.dat").getPath(), PersistenceMode.JOURNAL,
+                () -> String.format("h%012x", NUMBERS.incrementAndGet()));
+        bank.createUser("hist", "History Tester", "pw", "customer");
+        String sink = bank.createAccountForUserCents("hist", "current", 0);
+        String[] sources = new String[3];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = bank.createAccountForUserCents("hist", "current", 1_000_000_00);
+        }
+
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int me = t;
+            Thread th = new Thread(() -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                for (int i = 0; i < 2000; i++) {
+                    String source = sources[(me + i) % sources.length];
+                    long cents = 1 + rnd.nextInt(100);
+                    if (me % 4 == 0) bank.depositCents(sink, cents);
+                    else if (me % 4 == 1) bank.depositCents(source, cents);
+                    else bank.transferCents(source, sink, cents);
+                }
+            });
+            writers.add(th);
+            th.start();
+        }
+        for (Thread th : writers) th.join();
+        // after every change, before anything getBalanceCentsAt may reconcile
+        long end = System.currentTimeMillis();
+        Thread.sleep(5);
+
+        long[] balances = history.balancesOf(sink);
+        assertEquals(1 + 8 * 2000 * 3 / 4, balances.length); // opened, then every change once
+        for (int i = 1; i < balances.length; i++) {
+            assertTrue(balances[i] > balances[i - 1], "sink went from " + balances[i - 1] + " to " + balances[i]);
+        }
+        LocalDateTime at = LocalDateTime.ofInstant(Instant.ofEpochMilli(end), ZoneId.systemDefault());
+        for (String a : List.of(sink, sources[0], sources[1], sources[2])) {
+            assertEquals(bank.getAccount(a).getBalanceCents(), history.balanceAt(a, end), a);
+            assertEquals(bank.getAccount(a).getBalanceCents(), bank.getBalanceCentsAt(a, at), a);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package bank;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BankServerTest {
+    @TempDir
+    File dir;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private BankSystem bank;
+    private BankServer server;
+    private String account; // u1's
+
+    @BeforeEach
+    void start() throws IOException {
+        System.setProperty("bank.http.maxSessions", "3");
+        bank = new BankSystem(new File(dir, "bankdata.dat").getPath(), PersistenceMode.JOURNAL);
+        bank.createUser("u1", "User One", "pw1", "customer");
+        bank.createUser("u2", "User Two", "pw2", "customer");
+        account = bank.createAccountForUserCents("u1", "current", 100_00);
+        server = new BankServer(bank, new InetSocketAddress("127.0.0.1", 0));
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+        System.clearProperty("bank.http.maxSessions");
+    }
+
+    private HttpResponse<String> send(String method, String path, String token, String body) throws Exception {
+        HttpRequest.Builder b = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getPort() + path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(body));
+        if (token != null) b.header("Authorization", "Bearer " + token);
+        return client.send(b.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private int status(String method, String path, String token, String body) throws Exception {
+        return send(method, path, token, body).statusCode();
+    }
+
+    private String login(String userId, String password) throws Exception {
+        HttpResponse<String> r = send("POST", "/login",
+                null, "{\"userId\":\"" + userId + "\",\"password\":\"" + password + "\"}");
+        assertEquals(200, r.statusCode(), r.body());
+        Map<String, Object> json = Json.parseObject(r.body());
+        return (String) json.get("token");
+    }
+
+    @Test
+    void errorsMapToTheirStatus() throws Exception {
+        String u1 = login("u1", "pw1");
+        String u2 = login("u2", "pw2");
+        assertEquals(200, status("GET", "/accounts/" + account, u1, null));
+
+        assertEquals(401, status("POST", "/login", null, "{\"userId\":\"u1\",\"password\":\"wrong\"}"));
+        assertEquals(401, status("GET", "/accounts/" + account, null, null));
+        assertEquals(401, status("GET", "/accounts/" + account, "not-a-token", null));
+        assertEquals(403, status("POST", "/accounts", u1, "{\"userId\":\"u1\",\"type\":\"current\"}"));
+        assertEquals(403, status("GET", "/log?count=10", u1, null));
+        assertEquals(404, status("GET", "/nowhere", u1, null));
+        assertEquals(404, status("GET", "/accounts/" + account, u2, null)); // not u2's
+        assertEquals(405, status("GET", "/login", null, null));
+        assertEquals(405, status("POST", "/accounts/" + account, u1, "{}"));
+        assertEquals(413, status("POST", "/accounts/" + account + "/deposit", u1,
+                "{\"amountCents\":1,\"pad\":\"" + "x".repeat(70_000) + "\"}"));
+        assertEquals(422, status("POST", "/accounts/" + account + "/withdraw", u1, "{\"amountCents\":100000000}"));
+        assertEquals(400, status("POST", "/accounts/" + account + "/deposit", u1, "{\"amountCents\":-5}"));
+        assertEquals(100_00, bank.getAccount(account).getBalanceCents());
+    }
+
+    @Test
+    void sessionsBeyondTheCapDropTheLeastRecentlyUsed() throws Exception {
+        String first = login("u1", "pw1");
+        String second = login("u1", "pw1");
+        Thread.sleep(2);
+        assertEquals(200, status("GET", "/accounts/" + account, first, null)); // now used after second
+        login("u1", "pw1");
+        login("u1", "pw1"); // the map holds 3: second goes
+        assertEquals(401, status("GET", "/accounts/" + account, second, null));
+        assertEquals(200, status("GET", "/accounts/" + account, first, null));
+    }
+}
@@ -0,0 +1,57 @@
+package bank;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BankServiceTest {
+    @TempDir
+    File dir;
+
+    // With the one worker busy and its queue full, a call fails its future instead of
+    // throwing at the caller; once the pool drains, calls run again.
+    @Test
+    void callsRefusedByAFullPoolFailTheirFuture() throws Exception {
+        BankSystem bank = new BankSystem(new File(dir, "bankdata.dat").getPath(), PersistenceMode.SNAPSHOT);
+        bank.createUser("u1", "User One", "pw", "customer");
+        String acct = bank.createAccountForUserCents("u1", "current", 100_00);
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1));
+        try (BankService service = new BankService(bank, pool)) {
+            CountDownLatch release = new CountDownLatch(1);
+            CountDownLatch running = new CountDownLatch(1);
+            pool.execute(() -> {
+                running.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            running.await();
+            CompletableFuture<Boolean> queued = service.deposit(acct, 1.00);
+
+            CompletableFuture<Boolean> refused = service.deposit(acct, 2.00);
+            assertTrue(refused.isCompletedExceptionally());
+            ExecutionException e = assertThrows(ExecutionException.class, refused::get);
+            assertInstanceOf(RejectedExecutionException.class, e.getCause());
+
+            release.countDown();
+            assertTrue(queued.get(10, TimeUnit.SECONDS));
+            assertTrue(service.deposit(acct, 4.00).get(10, TimeUnit.SECONDS));
+            assertEquals(105_00, bank.getAccount(acct).getBalanceCents());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package bank;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchTest {
+    @TempDir
+    File dir;
+
+    private String dataFile() {
+        return new File(dir, "bankdata.dat").getPath();
+    }
+
+    // two current accounts of 100.00, both flagged dormant by an end-of-day run a few days on
+    private static String[] openDormant(BankSystem bank) {
+        bank.createUser("u1", "User One", "pw", "customer");
+        String[] a = {
+                bank.createAccountForUserCents("u1", "current", 100_00),
+                bank.createAccountForUserCents("u1", "current", 100_00)};
+        bank.runEndOfDay(null, LocalDate.now().plusDays(3), Collections.singletonList(new DormancyJob(1)), null);
+        for (String acct : a) assertTrue(bank.getAccount(acct).isDormant(), acct);
+        return a;
+    }
+
+    @Test
+    void failedAtomicBatchLeavesBalancesAndDormancyAlone() {
+        BankSystem bank = new BankSystem(dataFile(), PersistenceMode.JOURNAL);
+        String[] a = openDormant(bank);
+        long activity = bank.getAccount(a[0]).getLastActivityMillis();
+
+        BatchResult result = bank.applyBatch(List.of(
+                Posting.deposit(a[0], 10_00),
+                Posting.withdrawal(a[1], 5_00),
+                Posting.withdrawal(a[1], 10_000_00)), true); // past the overdraft limit
+        assertEquals(0, result.getAppliedCount());
+
+        for (BankSystem b : new BankSystem[] {bank, new BankSystem(dataFile(), PersistenceMode.JOURNAL)}) {
+            for (String acct : a) {
+                assertEquals(100_00, b.getAccount(acct).getBalanceCents(), acct);
+                assertTrue(b.getAccount(acct).isDormant(), acct);
+            }
+        }
+        assertEquals(activity, bank.getAccount(a[0]).getLastActivityMillis());
+    }
+
+    @Test
+    void partialBatchAppliesTheLegsThatPass() {
+        BankSystem bank = new BankSystem(dataFile(), PersistenceMode.JOURNAL);
+        String[] a = openDormant(bank);
+
+        BatchResult result = bank.applyBatch(List.of(
+                Posting.deposit(a[0], 10_00),
+                Posting.withdrawal(a[1], 10_000_00)), false);
+        assertEquals(1, result.getAppliedCount());
+        assertEquals(110_00, bank.getAccount(a[0]).getBalanceCents());
+        assertFalse(bank.getAccount(a[0]).isDormant());
+        assertEquals(100_00, bank.getAccount(a[1]).getBalanceCents());
+        assertTrue(bank.getAccount(a[1]).isDormant());
+    }
+}
@@ -0,0 +1,100 @@
+package bank;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BlockAccountNumberAllocatorTest {
+    @TempDir
+    File dir;
+
+    private File seqFile() {
+        return new File(dir, "bankdata.dat.seq");
+    }
+
+    @Test
+    void formattedNumbersAreValid() {
+        assertEquals("0000123455", BlockAccountNumberAllocator.format(12345));
+        for (long seq : new long[] {0, 1, 9, 10, 12345, 987_654_321, 999_999_999}) {
+            String n = BlockAccountNumberAllocator.format(seq);
+            assertEquals(BlockAccountNumberAllocator.DIGITS, n.length(), n);
+            assertTrue(BlockAccountNumberAllocator.isValid(n), n);
+            assertEquals(seq, BlockAccountNumberAllocator.sequenceOf(n), n);
+        }
+    }
+
+    // Luhn catches every change of a single digit, check digit included
+    @Test
+    void singleDigitChangesAreRejected() {
+        for (long seq : new long[] {1, 12345, 987_654_321}) {
+            String n = BlockAccountNumberAllocator.format(seq);
+            for (int i = 0; i < n.length(); i++) {
+                for (char d = '0'; d <= '9'; d++) {
+                    if (d == n.charAt(i)) continue;
+                    String wrong = n.substring(0, i) + d + n.substring(i + 1);
+                    assertFalse(BlockAccountNumberAllocator.isValid(wrong), wrong);
+                    assertEquals(-1, BlockAccountNumberAllocator.sequenceOf(wrong), wrong);
+                }
+            }
+        }
+        assertFalse(BlockAccountNumberAllocator.isValid(null));
+        assertFalse(BlockAccountNumberAllocator.isValid("000012345"));
+        assertFalse(BlockAccountNumberAllocator.isValid("00001234555"));
+        assertFalse(BlockAccountNumberAllocator.isValid("00001a3455"));
+        assertFalse(BlockAccountNumberAllocator.isValid("deadbeef"));
+    }
+
+    // Numbers handed out before a restart, including the unused rest of their blocks, are
+    // never handed out again; the same holds for the floor when the file is missing.
+    @Test
+    void restartNeverReusesNumbers() throws Exception {
+        Set<String> issued = new HashSet<>();
+        BlockAccountNumberAllocator first = new BlockAccountNumberAllocator(seqFile(), 0, 10, 4);
+        List<Thread> threads = new ArrayList<>();
+        List<String> fromThreads = Collections.synchronizedList(new ArrayList<>());
+        for (int t = 0; t < 4; t++) {
+            Thread th = new Thread(() -> {
+                for (int i = 0; i < 25; i++) fromThreads.add(first.next());
+            });
+            threads.add(th);
+            th.start();
+        }
+        for (Thread th : threads) th.join();
+        for (String n : fromThreads) {
+            assertTrue(BlockAccountNumberAllocator.isValid(n), n);
+            assertTrue(issued.add(n), "handed out twice: " + n);
+        }
+        assertTrue(seqFile().length() >= 8);
+        long highest = issued.stream().mapToLong(BlockAccountNumberAllocator::sequenceOf).max().orElseThrow();
+
+        BlockAccountNumberAllocator restarted = new BlockAccountNumberAllocator(seqFile(), 0, 10, 4);
+        for (int i = 0; i < 25; i++) {
+            String n = restarted.next();
+            assertTrue(BlockAccountNumberAllocator.sequenceOf(n) > highest, n + " after " + highest);
+            assertTrue(issued.add(n), "handed out twice: " + n);
+        }
+
+        // file lost: the caller's floor (the highest number loaded) still holds
+        assertTrue(seqFile().delete());
+        long floor = issued.stream().mapToLong(BlockAccountNumberAllocator::sequenceOf).max().orElseThrow();
+        String n = new BlockAccountNumberAllocator(seqFile(), floor, 10, 1).next();
+        assertEquals(floor + 1, BlockAccountNumberAllocator.sequenceOf(n));
+    }
+
+    @Test
+    void unwritableSequenceFileHandsOutNothing() {
+        File missingDir = new File(new File(dir, "missing"), "bankdata.dat.seq");
+        assertNull(new BlockAccountNumberAllocator(missingDir, 0, 10, 1).next());
+    }
+}
@@ -0,0 +1,186 @@
+package bank;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Producers send deposits, withdrawals, transfers and account openings through the pipeline
+// at once. Every balance must equal what the successful commands add up to, and the journal
+// (or snapshot) its stages wrote must reload to the same balances, which only holds if the
+// records reached the file in the order the business thread applied them.
+class CommandPipelineTest {
+    private static final int PRODUCERS = 6;
+    private static final int SHARED = 4;
+    private static final long OPENING = 1000_00;
+
+    @TempDir
+    File dir;
+
+    private String dataFile() {
+        return new File(dir, "bankdata.dat").getPath();
+    }
+
+    private static final class Ledger {
+        final String[] accts;
+        final AtomicLong[] expected;
+
+        Ledger(BankSystem bank) {
+            bank.createUser("pipe", "Pipeline Tester", "pw", "customer");
+            accts = new String[SHARED];
+            expected = new AtomicLong[SHARED];
+            for (int i = 0; i < SHARED; i++) {
+                accts[i] = bank.createAccountForUserCents("pipe", "current", OPENING);
+                expected[i] = new AtomicLong(OPENING);
+            }
+        }
+
+        // one random command against the shared accounts, booked here if it succeeded
+        void step(BankSystem bank, ThreadLocalRandom rnd) {
+            int a = rnd.nextInt(SHARED);
+            long cents = 1 + rnd.nextInt(500_00);
+            switch (rnd.nextInt(3)) {
+                case 0:
+                    if (bank.depositCents(accts[a], cents)) expected[a].addAndGet(cents);
+                    break;
+                case 1:
+                    if (bank.withdrawCents(accts[a], cents)) expected[a].addAndGet(-cents);
+                    break;
+                default:
+                    int b = (a + 1 + rnd.nextInt(SHARED - 1)) % SHARED;
+                    if (bank.transferCents(accts[a], accts[b], cents)) {
+                        expected[a].addAndGet(-cents);
+                        expected[b].addAndGet(cents);
+                    }
+                    break;
+            }
+        }
+
+        void check(String phase, BankSystem bank) {
+            for (int i = 0; i < SHARED; i++) {
+                assertEquals(expected[i].get(), bank.getAccount(accts[i]).getBalanceCents(), phase + ": " + accts[i]);
+            }
+        }
+    }
+
+    @Test
+    void journaledCommandsReplayInOrder() throws Exception {
+        interleavedProducers(PersistenceMode.JOURNAL);
+    }
+
+    @Test
+    void snapshotCommandsReload() throws Exception {
+        interleavedProducers(PersistenceMode.SNAPSHOT);
+    }
+
+    private void interleavedProducers(PersistenceMode mode) throws Exception {
+        BankSystem bank = new BankSystem(dataFile(), mode);
+        Ledger ledger = new Ledger(bank);
+        bank.startPipeline(64); // small, so producers wrap around the ring many times
+        assertTrue(bank.isPipelined());
+
+        String[] own = new String[PRODUCERS]; // each producer's account, only it deposits there
+        long[] ownTotal = new long[PRODUCERS];
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < PRODUCERS; t++) {
+            int me = t;
+            Thread p = new Thread(() -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                own[me] = bank.createAccountForUserCents("pipe", "savings", 100_00);
+                ownTotal[me] = 100_00;
+                for (int i = 0; i < 2000; i++) {
+                    ledger.step(bank, rnd);
+                    if (i % 10 == 0 && bank.depositCents(own[me], i)) ownTotal[me] += i;
+                }
+            });
+            producers.add(p);
+            p.start();
+        }
+        for (Thread p : producers) p.join();
+        bank.stopPipeline();
+        assertFalse(bank.isPipelined());
+
+        ledger.check("in memory", bank);
+        BankSystem reloaded = new BankSystem(dataFile(), mode); // no saveState: the stages' output only
+        ledger.check("after reload", reloaded);
+        for (int t = 0; t < PRODUCERS; t++) {
+            assertNotNull(own[t]);
+            assertEquals(ownTotal[t], reloaded.getAccount(own[t]).getBalanceCents(), own[t]);
+            assertEquals("pipe", reloaded.getOwnerId(own[t]));
+        }
+    }
+
+    // Stopping while producers keep sending: commands already queued run, later ones run
+    // directly on the caller, and none is lost or applied twice.
+    @Test
+    void stopDrainsQueuedCommands() throws Exception {
+        BankSystem bank = new BankSystem(dataFile(), PersistenceMode.JOURNAL);
+        Ledger ledger = new Ledger(bank);
+        bank.startPipeline(16);
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < PRODUCERS; t++) {
+            Thread p = new Thread(() -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                while (running.get()) ledger.step(bank, rnd);
+            });
+            producers.add(p);
+            p.start();
+        }
+        Thread.sleep(200);
+        bank.stopPipeline();
+        Thread.sleep(50); // producers now call in directly
+        running.set(false);
+        for (Thread p : producers) p.join();
+
+        ledger.check("in memory", bank);
+        ledger.check("after reload", new BankSystem(dataFile(), PersistenceMode.JOURNAL));
+    }
+
+    // A journal write failing under the pipeline: the command it held still completes, the
+    // full snapshot written instead keeps it, and the journal carries on after it. Balance
+    // records are absolute, so the failed one is the last to touch its accounts.
+    @Test
+    void failedJournalWriteFallsBackToASnapshot() throws Exception {
+        JournalFaults faults = new JournalFaults();
+        BankSystem bank = new BankSystem(dataFile(), PersistenceMode.JOURNAL, null, null, faults::wrap);
+        Ledger ledger = new Ledger(bank);
+        bank.startPipeline(16);
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < PRODUCERS; t++) {
+            Thread p = new Thread(() -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                for (int i = 0; i < 200; i++) ledger.step(bank, rnd);
+            });
+            producers.add(p);
+            p.start();
+        }
+        for (Thread p : producers) p.join();
+
+        assertTrue(bank.depositCents(ledger.accts[1], 10_000_00)); // whatever the producers left
+        ledger.expected[1].addAndGet(10_000_00);
+
+        faults.failNextWrite(new IOException("disk full"), 13); // part of the batch reaches the file
+        assertTrue(bank.transferCents(ledger.accts[1], ledger.accts[2], 3_00));
+        ledger.expected[1].addAndGet(-3_00);
+        ledger.expected[2].addAndGet(3_00);
+        assertFalse(faults.isArmed(), "no journal write was attempted");
+        assertTrue(bank.depositCents(ledger.accts[0], 1_00)); // journaled after the snapshot
+        ledger.expected[0].addAndGet(1_00);
+        bank.stopPipeline();
+
+        ledger.check("in memory", bank);
+        ledger.check("after reload", new BankSystem(dataFile(), PersistenceMode.JOURNAL));
+    }
+}
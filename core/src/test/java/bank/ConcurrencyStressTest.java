@@ -0,0 +1,109 @@
+package bank;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Many threads deposit into, withdraw from and transfer between a small set of shared
+// accounts; every balance must then equal the sum of the operations that reported success,
+// and the total must match the money deposited and withdrawn, in memory and after a reload.
+class ConcurrencyStressTest {
+    private static final int THREADS = 8;
+    private static final int OPS_PER_THREAD = 5_000;
+    private static final int ACCOUNTS = 16;
+    private static final long OPENING = 1000_00;
+
+    @TempDir
+    File dir;
+
+    @BeforeAll
+    static void quietLogging() {
+        TransactionLogger.startAsync(AsyncLogWriter.Durability.BEST_EFFORT, 8192, 512, 50);
+    }
+
+    @AfterAll
+    static void stopLogging() {
+        TransactionLogger.stopAsync();
+    }
+
+    @Test
+    void journal() throws Exception {
+        run(PersistenceMode.JOURNAL);
+    }
+
+    @Test
+    void snapshot() throws Exception {
+        run(PersistenceMode.SNAPSHOT);
+    }
+
+    private void run(PersistenceMode mode) throws Exception {
+        String dataFile = new File(dir, "bankdata.dat").getPath();
+        BankSystem bank = new BankSystem(dataFile, mode);
+        bank.createUser("stress", "Stress Tester", "pw", "customer");
+        String[] accts = new String[ACCOUNTS];
+        AtomicLong[] expected = new AtomicLong[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accts[i] = bank.createAccountForUserCents("stress", i % 2 == 0 ? "savings" : "current", OPENING);
+            expected[i] = new AtomicLong(OPENING);
+        }
+        AtomicLong net = new AtomicLong(); // deposited minus withdrawn
+
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            Thread w = new Thread(() -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                for (int i = 0; i < OPS_PER_THREAD; i++) {
+                    int a = rnd.nextInt(ACCOUNTS);
+                    long cents = 1 + rnd.nextInt(200_00);
+                    switch (rnd.nextInt(3)) {
+                        case 0:
+                            if (bank.depositCents(accts[a], cents)) {
+                                expected[a].addAndGet(cents);
+                                net.addAndGet(cents);
+                            }
+                            break;
+                        case 1:
+                            if (bank.withdrawCents(accts[a], cents)) {
+                                expected[a].addAndGet(-cents);
+                                net.addAndGet(-cents);
+                            }
+                            break;
+                        default:
+                            int b = (a + 1 + rnd.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+                            if (bank.transferCents(accts[a], accts[b], cents)) {
+                                expected[a].addAndGet(-cents);
+                                expected[b].addAndGet(cents);
+                            }
+                            break;
+                    }
+                }
+            });
+            workers.add(w);
+            w.start();
+        }
+        for (Thread w : workers) w.join();
+
+        check("in memory", bank, accts, expected, ACCOUNTS * OPENING + net.get());
+        bank.saveState();
+        check("after reload", new BankSystem(dataFile, mode), accts, expected, ACCOUNTS * OPENING + net.get());
+    }
+
+    private static void check(String phase, BankSystem bank, String[] accts, AtomicLong[] expected, long total) {
+        long sum = 0;
+        for (int i = 0; i < accts.length; i++) {
+            long actual = bank.getAccount(accts[i]).getBalanceCents();
+            assertEquals(expected[i].get(), actual, phase + ": " + accts[i]);
+            sum += actual;
+        }
+        assertEquals(total, sum, phase + ": total");
+    }
+}
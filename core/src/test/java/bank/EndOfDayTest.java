@@ -0,0 +1,136 @@
+package bank;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EndOfDayTest {
+    private static final LocalDate DAY = LocalDate.of(2026, 3, 2);
+    private static final List<EndOfDayJob> INTEREST = Collections.singletonList(new InterestAccrualJob());
+
+    @TempDir
+    File dir;
+
+    private String dataFile() {
+        return new File(dir, "bankdata.dat").getPath();
+    }
+
+    private List<String> openSavings(BankSystem bank, int n) {
+        bank.createUser("u1", "User One", "pw", "customer");
+        List<String> accts = new ArrayList<>();
+        for (int i = 0; i < n; i++) accts.add(bank.createAccountForUserCents("u1", "savings", 10_000_00 + i));
+        return accts;
+    }
+
+    private static long total(BankSystem bank, List<String> accts) {
+        long sum = 0;
+        for (String a : accts) sum += bank.getAccount(a).getBalanceCents();
+        return sum;
+    }
+
+    // as if the process died after posting every partition but before writing any progress line
+    private void forgetProgress() throws IOException {
+        File progress = new File(dataFile() + ".eod");
+        List<String> lines = Files.readAllLines(progress.toPath(), StandardCharsets.UTF_8);
+        Files.write(progress.toPath(), lines.subList(0, 2), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void resumedJournaledRunSkipsPostedPartitions() throws IOException {
+        resumeAfterLostProgress(PersistenceMode.JOURNAL);
+    }
+
+    @Test
+    void resumedSnapshotRunSkipsPostedPartitions() throws IOException {
+        resumeAfterLostProgress(PersistenceMode.SNAPSHOT);
+    }
+
+    private void resumeAfterLostProgress(PersistenceMode mode) throws IOException {
+        BankSystem bank = new BankSystem(dataFile(), mode);
+        List<String> accts = openSavings(bank, 40);
+        long opening = total(bank, accts);
+        EndOfDayReport first = bank.runEndOfDay("day-1", DAY, INTEREST, null);
+        long posted = total(bank, accts);
+        assertNotEquals(opening, posted);
+        assertEquals(40, first.getChanges("interest"));
+
+        forgetProgress();
+        BankSystem restarted = new BankSystem(dataFile(), mode);
+        assertEquals(posted, total(restarted, accts));
+        EndOfDayReport resumed = restarted.runEndOfDay("day-1", DAY, INTEREST, null);
+        assertEquals(posted, total(restarted, accts));
+        assertEquals(0, resumed.getChanges("interest"));
+        assertEquals(0, resumed.getAccountsProcessed());
+        assertEquals(posted, total(new BankSystem(dataFile(), mode), accts));
+    }
+
+    @Test
+    void dailyRunCreditsOneDaysInterest() {
+        BankSystem bank = new BankSystem(dataFile(), PersistenceMode.JOURNAL);
+        bank.createUser("u1", "User One", "pw", "customer");
+        String acct = bank.createAccountForUserCents("u1", "savings", 365_000_00); // at 4%
+        bank.runEndOfDay("day-1", DAY, BankSystem.defaultEndOfDayJobs(), null);
+        assertEquals(365_040_00, bank.getAccount(acct).getBalanceCents());
+        bank.runEndOfDay(null, DAY, Collections.singletonList(new InterestAccrualJob(1)), null);
+        assertEquals(365_040_00 + 14_601_60, bank.getAccount(acct).getBalanceCents());
+    }
+
+    @Test
+    void newRunIdPostsAgain() {
+        BankSystem bank = new BankSystem(dataFile(), PersistenceMode.JOURNAL);
+        List<String> accts = openSavings(bank, 8);
+        bank.runEndOfDay("day-1", DAY, INTEREST, null);
+        long afterFirst = total(bank, accts);
+        bank.runEndOfDay("day-2", DAY.plusDays(1), INTEREST, null);
+        assertNotEquals(afterFirst, total(bank, accts));
+    }
+
+    // Dormancy set by a run, then cleared by activity after a checkpoint: only the journal
+    // holds the change, and a restart must not bring back the flag from the snapshot.
+    @Test
+    void dormancyAndActivitySurviveARestart() {
+        BankSystem bank = new BankSystem(dataFile(), PersistenceMode.JOURNAL);
+        List<String> accts = openSavings(bank, 3);
+        List<EndOfDayJob> dormancy = Collections.singletonList(new DormancyJob(1));
+        LocalDate later = LocalDate.now().plusDays(3);
+        bank.runEndOfDay("day-1", later, dormancy, null);
+        for (String a : accts) assertTrue(bank.getAccount(a).isDormant(), a);
+
+        BankSystem restarted = new BankSystem(dataFile(), PersistenceMode.JOURNAL);
+        for (String a : accts) assertTrue(restarted.getAccount(a).isDormant(), a);
+        restarted.saveState();
+        assertTrue(restarted.depositCents(accts.get(0), 1_00));
+        // a batch whose postings cancel out leaves the balance alone but is still activity
+        BatchResult batch = restarted.applyBatch(List.of(new Posting(accts.get(1), Posting.Type.DEPOSIT, 5_00),
+                new Posting(accts.get(1), Posting.Type.WITHDRAWAL, 5_00)), true);
+        assertEquals(2, batch.getAppliedCount());
+        long[] activity = new long[accts.size()];
+        for (int i = 0; i < accts.size(); i++) activity[i] = restarted.getAccount(accts.get(i)).getLastActivityMillis();
+
+        BankSystem again = new BankSystem(dataFile(), PersistenceMode.JOURNAL);
+        assertFalse(again.getAccount(accts.get(0)).isDormant());
+        assertFalse(again.getAccount(accts.get(1)).isDormant());
+        assertTrue(again.getAccount(accts.get(2)).isDormant());
+        for (int i = 0; i < accts.size(); i++) {
+            assertEquals(activity[i], again.getAccount(accts.get(i)).getLastActivityMillis(), accts.get(i));
+        }
+        assertEquals(10_000_00 + 1_00, again.getAccount(accts.get(0)).getBalanceCents());
+
+        // flagged again by an unkeyed run, which journals the partition as balances
+        again.runEndOfDay(null, later, dormancy, null);
+        assertTrue(new BankSystem(dataFile(), PersistenceMode.JOURNAL).getAccount(accts.get(1)).isDormant());
+    }
+}
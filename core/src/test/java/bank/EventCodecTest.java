@@ -0,0 +1,170 @@
+package bank;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class EventCodecTest {
+    private static final long TIME = LocalDateTime.of(2026, 3, 1, 12, 0)
+            .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    private static final String A = BlockAccountNumberAllocator.format(11);
+    private static final String B = BlockAccountNumberAllocator.format(12);
+    private static final String C = BlockAccountNumberAllocator.format(13);
+
+    @TempDir
+    File dir;
+
+    // one event of every type, with the fields that type uses; i spreads times and amounts
+    private static List<TransactionEvent> everyType() {
+        List<TransactionEvent> events = new ArrayList<>();
+        int i = 0;
+        for (EventType type : EventType.values()) {
+            int detail = type == EventType.ACCOUNT_OPENED ? 'S' : type.name().endsWith("_FAILED")
+                    ? EventType.INSUFFICIENT_FUNDS : i % 2;
+            String account = type == EventType.USER_CREATED || type == EventType.USER_DELETED ? "" : i % 2 == 0 ? A : B;
+            String counterparty = type == EventType.TRANSFER || type == EventType.TRANSFER_FAILED ? C : "";
+            long amount = type == EventType.DORMANT ? 20_000 : 1_00L * (i + 1);
+            events.add(new TransactionEvent(TIME + 1000L * i, type, detail, account, counterparty, amount,
+                    -5_00L + 1_000_00L * i, 7_00L * i, type == EventType.INTEREST ? "" : "actor" + i));
+            i++;
+        }
+        return events;
+    }
+
+    private static void encode(ByteBuffer buf, int at, TransactionEvent e) {
+        EventCodec.encode(buf, at, e.getTimeMillis(), e.getType(), e.getDetail(), e.getAccountNumber(),
+                e.getCounterparty(), e.getAmountCents(), e.getBalanceCents(), e.getCounterBalanceCents(), e.getActor());
+    }
+
+    private static void assertSameEvent(TransactionEvent want, TransactionEvent got) {
+        assertNotNull(got, want.getType().name());
+        assertEquals(want.getTimeMillis(), got.getTimeMillis());
+        assertEquals(want.getType(), got.getType());
+        assertEquals(want.getDetail(), got.getDetail());
+        assertEquals(want.getAccountNumber(), got.getAccountNumber());
+        assertEquals(want.getCounterparty(), got.getCounterparty());
+        assertEquals(want.getAmountCents(), got.getAmountCents());
+        assertEquals(want.getBalanceCents(), got.getBalanceCents());
+        assertEquals(want.getCounterBalanceCents(), got.getCounterBalanceCents());
+        assertEquals(want.getActor(), got.getActor());
+        assertEquals(want.toString(), got.toString());
+    }
+
+    private static List<String> lines(List<TransactionEvent> events) {
+        List<String> out = new ArrayList<>();
+        for (TransactionEvent e : events) out.add(e.toString());
+        return out;
+    }
+
+    @Test
+    void everyTypeRoundTrips() {
+        List<TransactionEvent> events = everyType();
+        ByteBuffer buf = ByteBuffer.allocate(events.size() * EventCodec.RECORD);
+        for (int i = 0; i < events.size(); i++) encode(buf, i * EventCodec.RECORD, events.get(i));
+        assertEquals(0, buf.position());
+        for (int i = 0; i < events.size(); i++) {
+            assertSameEvent(events.get(i), EventCodec.decode(buf, i * EventCodec.RECORD));
+            assertEquals(events.get(i).toString(), EventCodec.render(buf, i * EventCodec.RECORD));
+        }
+    }
+
+    @Test
+    void longActorIsCutAtACharacterBoundary() {
+        ByteBuffer buf = ByteBuffer.allocate(EventCodec.RECORD);
+        // 3 + 8 * 2 bytes: the last two-byte character does not fit in 18
+        String e = "\u00e9";
+        EventCodec.encode(buf, 0, TIME, EventType.USER_CREATED, 0, "", "", 0, 0, 0, "abc" + e.repeat(8));
+        assertEquals("abc" + e.repeat(7), EventCodec.decode(buf, 0).getActor());
+        buf.put(32, (byte) 0); // no such type
+        assertNull(EventCodec.decode(buf, 0));
+    }
+
+    @Test
+    void writerRoundTripsEveryTypeThroughTheLog() throws IOException {
+        File log = new File(dir, "transactions.evt");
+        List<TransactionEvent> events = everyType();
+        EventLogWriter writer = new EventLogWriter(LogSegments.forWriter(log, EventCodec.RECORD),
+                AsyncLogWriter.Durability.GROUP_COMMIT, 4, 4, 5); // several buffers' worth
+        for (TransactionEvent e : events) {
+            writer.append(e.getTimeMillis(), e.getType(), e.getDetail(), e.getAccountNumber(), e.getCounterparty(),
+                    e.getAmountCents(), e.getBalanceCents(), e.getCounterBalanceCents(), e.getActor());
+        }
+        writer.close();
+
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(log.toPath()));
+        assertEquals(events.size() * EventCodec.RECORD, data.capacity());
+        for (int i = 0; i < events.size(); i++) assertSameEvent(events.get(i), EventCodec.decode(data, i * EventCodec.RECORD));
+        try (LogReader reader = new LogReader(LogSegments.forReader(log, EventCodec.RECORD))) {
+            assertEquals(lines(events), reader.readLines(0, events.size()));
+        }
+    }
+
+    // A crash part-way through a record: readers ignore the partial record, and a writer
+    // cuts it off on start so the records after it line up again.
+    @Test
+    void truncatedTailIsIgnoredThenDropped() throws IOException {
+        File log = new File(dir, "transactions.evt");
+        List<TransactionEvent> events = everyType();
+        ByteBuffer buf = ByteBuffer.allocate(events.size() * EventCodec.RECORD);
+        for (int i = 0; i < events.size(); i++) encode(buf, i * EventCodec.RECORD, events.get(i));
+        try (FileOutputStream out = new FileOutputStream(log)) {
+            out.write(buf.array(), 0, buf.capacity() - EventCodec.RECORD / 2);
+        }
+
+        List<TransactionEvent> whole = events.subList(0, events.size() - 1);
+        try (LogReader reader = new LogReader(LogSegments.forReader(log, EventCodec.RECORD))) {
+            assertEquals(whole.size(), reader.getLineCount());
+            assertEquals(lines(whole), reader.readLines(0, events.size()));
+        }
+
+        EventLogWriter writer = new EventLogWriter(LogSegments.forWriter(log, EventCodec.RECORD),
+                AsyncLogWriter.Durability.GROUP_COMMIT, 16, 16, 5);
+        assertEquals(whole.size() * EventCodec.RECORD, log.length());
+        TransactionEvent last = events.get(events.size() - 1);
+        writer.append(last.getTimeMillis(), last.getType(), last.getDetail(), last.getAccountNumber(),
+                last.getCounterparty(), last.getAmountCents(), last.getBalanceCents(), last.getCounterBalanceCents(),
+                last.getActor());
+        writer.close();
+        try (LogReader reader = new LogReader(LogSegments.forReader(log, EventCodec.RECORD))) {
+            assertEquals(lines(events), reader.readLines(0, events.size()));
+        }
+    }
+
+    @Test
+    void statementRendersRecordsAsTextLines() throws IOException {
+        File log = new File(dir, "transactions.evt");
+        List<TransactionEvent> events = everyType();
+        EventLogWriter writer = new EventLogWriter(LogSegments.forWriter(log, EventCodec.RECORD),
+                AsyncLogWriter.Durability.GROUP_COMMIT, 64, 64, 5);
+        for (TransactionEvent e : events) {
+            writer.append(e.getTimeMillis(), e.getType(), e.getDetail(), e.getAccountNumber(), e.getCounterparty(),
+                    e.getAmountCents(), e.getBalanceCents(), e.getCounterBalanceCents(), e.getActor());
+        }
+        writer.close();
+
+        try (StatementIndex index = new StatementIndex(LogSegments.forReader(log, EventCodec.RECORD),
+                new File(dir, "transactions.evt.idx").toPath())) {
+            for (String acct : List.of(A, B, C)) {
+                List<String> expected = new ArrayList<>();
+                for (TransactionEvent e : events) {
+                    if (e.getAccountNumber().equals(acct) || e.getCounterparty().equals(acct)) expected.add(e.toString());
+                }
+                assertEquals(expected, index.statement(acct, null, null), acct);
+            }
+            assertEquals(3, index.getAccountCount());
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package bank;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdempotencyTest {
+    @TempDir
+    File dir;
+
+    private String dataFile() {
+        return new File(dir, "bankdata.dat").getPath();
+    }
+
+    private static String[] open(BankSystem bank) {
+        bank.createUser("u1", "User One", "pw", "customer");
+        return new String[] {
+                bank.createAccountForUserCents("u1", "current", 100_00),
+                bank.createAccountForUserCents("u1", "current", 100_00)};
+    }
+
+    @Test
+    void retriesReturnTheFirstOutcomeWithoutMovingMoneyAgain() {
+        BankSystem bank = new BankSystem(dataFile(), PersistenceMode.JOURNAL);
+        String[] a = open(bank);
+        assertTrue(bank.depositCents("k1", a[0], 10_00));
+        assertTrue(bank.depositCents("k1", a[0], 10_00));
+        assertTrue(bank.withdrawCents("k2", a[0], 5_00));
+        assertTrue(bank.withdrawCents("k2", a[0], 5_00));
+        assertTrue(bank.transferCents("k3", a[0], a[1], 20_00));
+        assertTrue(bank.transferCents("k3", a[0], a[1], 20_00));
+        assertEquals(85_00, bank.getAccount(a[0]).getBalanceCents());
+        assertEquals(120_00, bank.getAccount(a[1]).getBalanceCents());
+    }
+
+    @Test
+    void keyReusedForADifferentRequestIsRefused() {
+        BankSystem bank = new BankSystem(dataFile(), PersistenceMode.JOURNAL);
+        String[] a = open(bank);
+        assertTrue(bank.depositCents("k1", a[0], 10_00));
+        assertFalse(bank.depositCents("k1", a[0], 99_00));
+        assertFalse(bank.withdrawCents("k1", a[0], 10_00));
+        assertEquals(110_00, bank.getAccount(a[0]).getBalanceCents());
+    }
+
+    @Test
+    void failedRequestStaysFailed() {
+        BankSystem bank = new BankSystem(dataFile(), PersistenceMode.JOURNAL);
+        String[] a = open(bank);
+        assertFalse(bank.withdrawCents("k1", a[0], 1_000_00)); // past the overdraft limit
+        assertTrue(bank.depositCents(a[0], 1_000_00));
+        assertFalse(bank.withdrawCents("k1", a[0], 1_000_00));
+        assertEquals(1_100_00, bank.getAccount(a[0]).getBalanceCents());
+    }
+
+    @Test
+    void outcomesSurviveAJournalReplay() {
+        outcomesSurviveARestart(PersistenceMode.JOURNAL, false);
+    }
+
+    @Test
+    void outcomesSurviveACheckpoint() {
+        outcomesSurviveARestart(PersistenceMode.JOURNAL, true);
+    }
+
+    @Test
+    void outcomesSurviveASnapshot() {
+        outcomesSurviveARestart(PersistenceMode.SNAPSHOT, false);
+    }
+
+    private void outcomesSurviveARestart(PersistenceMode mode, boolean save) {
+        BankSystem bank = new BankSystem(dataFile(), mode);
+        String[] a = open(bank);
+        assertTrue(bank.transferCents("t1", a[0], a[1], 30_00));
+        assertFalse(bank.withdrawCents("w1", a[0], 1_000_00));
+        if (save) bank.saveState();
+
+        BankSystem restarted = new BankSystem(dataFile(), mode);
+        assertTrue(restarted.transferCents("t1", a[0], a[1], 30_00));
+        assertFalse(restarted.withdrawCents("w1", a[0], 1_000_00));
+        assertEquals(70_00, restarted.getAccount(a[0]).getBalanceCents());
+        assertEquals(130_00, restarted.getAccount(a[1]).getBalanceCents());
+    }
+
+    @Test
+    void concurrentDuplicatesApplyOnce() throws InterruptedException {
+        BankSystem bank = new BankSystem(dataFile(), PersistenceMode.JOURNAL);
+        String[] a = open(bank);
+        AtomicInteger succeeded = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread th = new Thread(() -> {
+                for (int i = 0; i < 200; i++) {
+                    if (bank.depositCents("dup-" + i, a[0], 1_00)) succeeded.incrementAndGet();
+                }
+            });
+            threads.add(th);
+            th.start();
+        }
+        for (Thread th : threads) th.join();
+        assertEquals(8 * 200, succeeded.get());
+        assertEquals(100_00 + 200 * 1_00, bank.getAccount(a[0]).getBalanceCents());
+    }
+}
@@ -0,0 +1,44 @@
+package bank;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+// Wraps a journal's file stream (see BankSystem's package-private constructor). Once armed,
+// the next write fails after passing on its first `partial` bytes, as a full disk would.
+final class JournalFaults {
+    private IOException next;
+    private int partial;
+    private int failures;
+
+    synchronized void failNextWrite(IOException e, int partial) {
+        this.next = e;
+        this.partial = partial;
+    }
+
+    synchronized boolean isArmed() { return next != null; }
+
+    synchronized int getFailures() { return failures; }
+
+    OutputStream wrap(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                IOException e;
+                int through;
+                synchronized (JournalFaults.this) {
+                    e = next;
+                    through = partial;
+                    if (e != null) failures++;
+                    next = null;
+                }
+                if (e == null) {
+                    out.write(b, off, len);
+                    return;
+                }
+                out.write(b, off, Math.min(through, len));
+                throw e;
+            }
+        };
+    }
+}
@@ -0,0 +1,181 @@
+package bank;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JournalTest {
+    @TempDir
+    File dir;
+
+    private String dataFile() {
+        return new File(dir, "bankdata.dat").getPath();
+    }
+
+    private File wal() {
+        return new File(dataFile() + ".wal");
+    }
+
+    private String openAccount(BankSystem bank) {
+        bank.createUser("u1", "User One", "pw", "customer");
+        return bank.createAccountForUserCents("u1", "current", 100_00);
+    }
+
+    @Test
+    void changesSinceTheLastCheckpointAreReplayed() {
+        BankSystem bank = new BankSystem(dataFile(), PersistenceMode.JOURNAL);
+        String acct = openAccount(bank);
+        bank.saveState();
+        assertTrue(bank.depositCents(acct, 25_00));
+        assertTrue(bank.withdrawCents(acct, 5_00));
+        assertTrue(wal().length() > 8);
+
+        BankSystem reloaded = new BankSystem(dataFile(), PersistenceMode.JOURNAL);
+        assertEquals(120_00, reloaded.getAccount(acct).getBalanceCents());
+    }
+
+    @Test
+    void deletionsAreReplayed() {
+        BankSystem bank = new BankSystem(dataFile(), PersistenceMode.JOURNAL);
+        String acct = openAccount(bank);
+        bank.saveState();
+        assertTrue(bank.deleteAccount(acct));
+
+        BankSystem reloaded = new BankSystem(dataFile(), PersistenceMode.JOURNAL);
+        assertNull(reloaded.getAccount(acct));
+        assertNull(reloaded.getOwnerId(acct));
+    }
+
+    @Test
+    void tornTailIsDropped() throws IOException {
+        BankSystem bank = new BankSystem(dataFile(), PersistenceMode.JOURNAL);
+        String acct = openAccount(bank);
+        assertTrue(bank.depositCents(acct, 1_00));
+        try (FileOutputStream out = new FileOutputStream(wal(), true)) {
+            out.write(new byte[] {0, 0, 0, 40, 5, 1, 2}); // a record cut short
+        }
+
+        BankSystem reloaded = new BankSystem(dataFile(), PersistenceMode.JOURNAL);
+        assertEquals(101_00, reloaded.getAccount(acct).getBalanceCents());
+        assertTrue(reloaded.depositCents(acct, 1_00));
+        assertEquals(102_00, new BankSystem(dataFile(), PersistenceMode.JOURNAL).getAccount(acct).getBalanceCents());
+    }
+
+    @Test
+    void checkpointEmptiesTheJournal() {
+        BankSystem bank = new BankSystem(dataFile(), PersistenceMode.JOURNAL);
+        String acct = openAccount(bank);
+        assertTrue(bank.depositCents(acct, 1_00));
+        bank.saveState();
+        assertFalse(Journal.rolledFileFor(wal()).exists());
+        assertTrue(wal().length() <= 8);
+        assertEquals(101_00, new BankSystem(dataFile(), PersistenceMode.JOURNAL).getAccount(acct).getBalanceCents());
+    }
+
+    @Test
+    void journalThatFailsToReplayIsKept() throws IOException {
+        BankSystem bank = new BankSystem(dataFile(), PersistenceMode.JOURNAL);
+        String acct = openAccount(bank);
+        bank.saveState();
+        assertTrue(bank.depositCents(acct, 7_00));
+        setJournalVersion(99); // as if written by a later version
+        byte[] journal = Files.readAllBytes(wal().toPath());
+        byte[] snapshot = Files.readAllBytes(new File(dataFile()).toPath());
+
+        BankSystem damaged = new BankSystem(dataFile(), PersistenceMode.JOURNAL);
+        assertEquals(100_00, damaged.getAccount(acct).getBalanceCents());
+        assertTrue(damaged.depositCents(acct, 1_00));
+        damaged.saveState();
+        assertArrayEquals(journal, Files.readAllBytes(wal().toPath()));
+        assertArrayEquals(snapshot, Files.readAllBytes(new File(dataFile()).toPath()));
+
+        setJournalVersion(2);
+        assertEquals(107_00, new BankSystem(dataFile(), PersistenceMode.JOURNAL).getAccount(acct).getBalanceCents());
+    }
+
+    // Journal writes failing while checkpoints run back to back: the depositor holds its
+    // account's lock when the append fails and a checkpoint holds saveLock while it locks
+    // accounts, so the fallback snapshot must not be written under the account lock.
+    @Test
+    void failedAppendsDuringCheckpointsNeitherDeadlockNorLoseChanges() throws Exception {
+        JournalFaults faults = new JournalFaults();
+        BankSystem bank = new BankSystem(dataFile(), PersistenceMode.JOURNAL, null, null, faults::wrap);
+        bank.createUser("u1", "User One", "pw", "customer");
+        String[] accts = new String[4];
+        for (int i = 0; i < accts.length; i++) accts[i] = bank.createAccountForUserCents("u1", "current", 100_00);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            AtomicBoolean running = new AtomicBoolean(true);
+            Thread checkpoints = new Thread(() -> {
+                while (running.get()) bank.saveState();
+            });
+            Thread failures = new Thread(() -> {
+                while (running.get()) {
+                    if (!faults.isArmed()) faults.failNextWrite(new IOException("disk full"), 0);
+                    Thread.onSpinWait();
+                }
+            });
+            checkpoints.start();
+            failures.start();
+            List<Thread> depositors = new ArrayList<>();
+            for (String acct : accts) {
+                Thread d = new Thread(() -> {
+                    for (int i = 0; i < 500; i++) bank.depositCents(acct, 1_00);
+                });
+                depositors.add(d);
+                d.start();
+            }
+            for (Thread d : depositors) d.join();
+            running.set(false);
+            checkpoints.join();
+            failures.join();
+        });
+        assertTrue(faults.getFailures() > 0);
+
+        BankSystem reloaded = new BankSystem(dataFile(), PersistenceMode.JOURNAL);
+        for (String acct : accts) assertEquals(600_00, reloaded.getAccount(acct).getBalanceCents(), acct);
+    }
+
+    // A write that fails part way leaves no partial record behind: the records appended after
+    // it (beyond the snapshot the failure triggers) are still replayed.
+    @Test
+    void partWrittenRecordIsCutBack() throws IOException {
+        JournalFaults faults = new JournalFaults();
+        BankSystem bank = new BankSystem(dataFile(), PersistenceMode.JOURNAL, null, null, faults::wrap);
+        String acct = openAccount(bank);
+        assertTrue(bank.depositCents(acct, 1_00));
+        long before = wal().length();
+        faults.failNextWrite(new IOException("disk full"), 9);
+        assertTrue(bank.depositCents(acct, 2_00)); // applied; a snapshot covers it instead
+        assertEquals(1, faults.getFailures());
+        assertEquals(before, wal().length());
+        assertTrue(bank.depositCents(acct, 4_00));
+        assertTrue(bank.depositCents(acct, 8_00));
+
+        BankSystem reloaded = new BankSystem(dataFile(), PersistenceMode.JOURNAL);
+        assertEquals(115_00, reloaded.getAccount(acct).getBalanceCents());
+    }
+
+    private void setJournalVersion(int version) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(wal(), "rw")) {
+            raf.seek(4);
+            raf.writeInt(version);
+        }
+    }
+}
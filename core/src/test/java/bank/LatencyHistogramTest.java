@@ -0,0 +1,82 @@
+package bank;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+    @Test
+    void emptyReportsZero() {
+        LatencyHistogram h = new LatencyHistogram("empty");
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.percentile(50));
+        assertEquals(0, h.percentile(100));
+        assertEquals(0.0, h.getMeanMicros());
+    }
+
+    // below 128ns every value has a bucket of its own, so percentiles are exact
+    @Test
+    void smallValuesAreExact() {
+        LatencyHistogram h = new LatencyHistogram("small");
+        for (long v = 100; v >= 1; v--) h.record(v);
+        assertEquals(100, h.getCount());
+        assertEquals(1, h.percentile(0));
+        assertEquals(1, h.percentile(1));
+        assertEquals(50, h.percentile(50));
+        assertEquals(51, h.percentile(50.5));
+        assertEquals(90, h.percentile(90));
+        assertEquals(99, h.percentile(99));
+        assertEquals(100, h.percentile(100));
+        assertEquals(50.5 / 1000, h.getMeanMicros(), 1e-12);
+        assertEquals(0.1, h.getMaxMicros(), 1e-12);
+    }
+
+    // 1us, 2us, ... 1000us: each percentile is the true value or at most 1/64 above it
+    @Test
+    void largeValuesAreWithinABucket() {
+        LatencyHistogram h = new LatencyHistogram("large");
+        for (long k = 1; k <= 1000; k++) h.record(k * 1000);
+        assertWithinBucket(500_000, h.percentile(50));
+        assertWithinBucket(900_000, h.percentile(90));
+        assertWithinBucket(990_000, h.percentile(99));
+        assertWithinBucket(999_000, h.percentile(99.9));
+        assertEquals(1_000_000, h.percentile(100)); // never above the largest value seen
+        assertEquals(500.5, h.getMeanMicros(), 1e-9);
+        assertEquals(1000.0, h.getMaxMicros());
+        assertEquals(h.percentile(50) / 1000.0, h.getP50Micros());
+        assertEquals(h.percentile(99) / 1000.0, h.getP99Micros());
+    }
+
+    private static void assertWithinBucket(long expected, long actual) {
+        assertTrue(actual >= expected && actual <= expected + expected / 64, expected + " reported as " + actual);
+    }
+
+    // a handful of very slow calls shows in p99.9 and max, not in the median
+    @Test
+    void outliersMoveOnlyTheTail() {
+        LatencyHistogram h = new LatencyHistogram("tail");
+        for (int i = 0; i < 9_990; i++) h.record(20_000);
+        for (int i = 0; i < 10; i++) h.record(50_000_000);
+        assertWithinBucket(20_000, h.percentile(50));
+        assertWithinBucket(20_000, h.percentile(99));
+        assertWithinBucket(20_000, h.percentile(99.9));
+        assertWithinBucket(50_000_000, h.percentile(99.95));
+        assertEquals(50_000_000, h.percentile(100));
+    }
+
+    @Test
+    void outOfRangeValuesAreClamped() {
+        LatencyHistogram h = new LatencyHistogram("clamped");
+        h.record(-5);
+        h.record(Long.MAX_VALUE);
+        assertEquals(0, h.percentile(50));
+        assertEquals((1L << 40) - 1, h.percentile(100));
+
+        h.reset();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.percentile(100));
+        h.record(7);
+        assertEquals(7, h.percentile(100));
+    }
+}
@@ -0,0 +1,82 @@
+package bank;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Fixtures written by the original, unpackaged classes, which kept money in doubles:
+//  shipped-bankdata.ser  - the bankdata.ser the project shipped with
+//  rounding-bankdata.ser - balances left by double arithmetic, e.g. 0.1 + 0.2
+class LegacySnapshotTest {
+    @TempDir
+    File dir;
+
+    private File fixture(String name) throws IOException {
+        File f = new File(dir, name);
+        try (InputStream in = LegacySnapshotTest.class.getResourceAsStream(name)) {
+            assertNotNull(in, name);
+            Files.copy(in, f.toPath());
+        }
+        return f;
+    }
+
+    // the same bank, whether converted to a snapshot first or loaded straight from the old file
+    private BankSystem[] load(String fixture) throws IOException {
+        File legacy = fixture(fixture);
+        File data = new File(dir, "bankdata.dat");
+        SnapshotConverter.convert(legacy, data);
+        return new BankSystem[] {
+                new BankSystem(data.getPath(), PersistenceMode.SNAPSHOT),
+                new BankSystem(legacy.getPath(), PersistenceMode.SNAPSHOT)
+        };
+    }
+
+    @Test
+    void shippedDataFileLoads() throws IOException {
+        for (BankSystem bank : load("shipped-bankdata.ser")) {
+            assertEquals(Set.of("admin", "UBI101", "UBI102", "UBIC101", "karthi26"), bank.getUsers().keySet());
+            assertNotNull(bank.login("UBIC101", "123"));
+            assertEquals("employee", bank.getUsers().get("karthi26").getRole());
+
+            assertEquals(6489_60, bank.getAccount("3c07c097").getBalanceCents());
+            assertEquals(200_00, bank.getAccount("d2401fde").getBalanceCents());
+            assertEquals(-450_00, bank.getAccount("8d9a7a42").getBalanceCents());
+            assertEquals(0, bank.getAccount("6a11a49a").getBalanceCents());
+            assertTrue(bank.getAccount("8d9a7a42") instanceof CurrentAccount);
+            assertEquals(Set.of("3c07c097", "6a11a49a", "8d9a7a42"),
+                    Set.copyOf(bank.getUsers().get("UBIC101").getAccountNumbers()));
+            assertEquals("UBIC101", bank.getOwnerId("8d9a7a42"));
+        }
+    }
+
+    // each double balance becomes the cents it was meant to be, not the cents below it
+    @Test
+    void doubleBalancesRoundToTheNearestCent() throws IOException {
+        for (BankSystem bank : load("rounding-bankdata.ser")) {
+            assertEquals(30, bank.getAccount("LEGACY01").getBalanceCents());     // 0.1 + 0.2 = 0.30000000000000004
+            assertEquals(30, ((CurrentAccount) bank.getAccount("LEGACY01")).getOverdraftLimitCents()); // ditto
+            assertEquals(1_00, bank.getAccount("LEGACY02").getBalanceCents());   // 0.1 ten times = 0.9999999999999999
+            assertEquals(999_30, bank.getAccount("LEGACY03").getBalanceCents()); // 1000 - 0.7 = 999.29999999999995
+            assertEquals(-3_30, bank.getAccount("LEGACY04").getBalanceCents());  // -1.1 - 2.2 = -3.3000000000000003
+            assertEquals(250_00, ((CurrentAccount) bank.getAccount("LEGACY04")).getOverdraftLimitCents());
+            assertEquals(0.04, ((SavingsAccount) bank.getAccount("LEGACY02")).getInterestRate());
+
+            // and they behave as cents from then on
+            assertTrue(bank.depositCents("LEGACY01", 70));
+            assertEquals(1_00, bank.getAccount("LEGACY01").getBalanceCents());
+            assertTrue(bank.withdrawCents("LEGACY04", 246_70));
+            assertEquals(-250_00, bank.getAccount("LEGACY04").getBalanceCents());
+            assertFalse(bank.withdrawCents("LEGACY04", 1));
+        }
+    }
+}
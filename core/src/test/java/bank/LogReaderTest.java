@@ -0,0 +1,147 @@
+package bank;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogReaderTest {
+    private static final LocalDateTime TIME = LocalDateTime.of(2026, 3, 1, 10, 0);
+    private static final int LINES = 2 * LogReader.STRIDE + 300; // three strides of the index
+
+    @TempDir
+    File dir;
+
+    private Path logFile() {
+        return new File(dir, "transactions.log").toPath();
+    }
+
+    // entry i, stamped i seconds after TIME; lengths vary so offsets are not a multiple of anything
+    private static String entry(int i) {
+        return TIME.plusSeconds(i) + " - entry " + i + " " + "x".repeat(i % 7);
+    }
+
+    private static List<String> entries(int from, int to) {
+        List<String> out = new ArrayList<>();
+        for (int i = from; i < to; i++) out.add(entry(i));
+        return out;
+    }
+
+    private void append(String text) throws IOException {
+        Files.write(logFile(), text.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+    }
+
+    private void appendLines(int from, int to) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (String line : entries(from, to)) sb.append(line).append('\n');
+        append(sb.toString());
+    }
+
+    // Pages that start on an indexed line, inside a stride, and straddle the index's strides;
+    // paging forward and back; requests past either end.
+    @Test
+    void pagesCrossIndexStrides() throws IOException {
+        appendLines(0, LINES);
+        try (LogReader reader = new LogReader(logFile())) {
+            assertEquals(LINES, reader.getLineCount());
+            int stride = LogReader.STRIDE;
+            assertEquals(entries(0, 10), reader.readLines(0, 10));
+            assertEquals(entries(stride, stride + 10), reader.readLines(stride, 10));
+            assertEquals(entries(stride - 5, stride + 5), reader.readLines(stride - 5, 10));
+            assertEquals(entries(517, 517 + stride + 600), reader.readLines(517, stride + 600));
+            assertEquals(entries(LINES - 3, LINES), reader.readLines(LINES - 3, 10));
+            assertEquals(List.of(), reader.readLines(LINES, 10));
+            assertEquals(List.of(), reader.readLines(-1, 10));
+
+            LogPage page = reader.page(stride - 50, 100);
+            assertEquals(stride - 50, page.getFirstLine());
+            assertEquals(entries(stride - 50, stride + 50), page.getLines());
+            assertTrue(page.hasPrevious() && page.hasNext());
+            page = reader.next(page);
+            assertEquals(entries(stride + 50, stride + 150), page.getLines());
+            page = reader.previous(reader.previous(page));
+            assertEquals(entries(stride - 150, stride - 50), page.getLines());
+
+            page = reader.page(LINES + 100, 100); // clamped to the last line
+            assertEquals(LINES - 1, page.getFirstLine());
+            assertFalse(page.hasNext());
+            page = reader.tail(100);
+            assertEquals(entries(LINES - 100, LINES), page.getLines());
+            assertEquals(0, reader.page(-5, 10).getFirstLine());
+        }
+    }
+
+    // Every byte of a line maps to that line, however far it is from an indexed offset.
+    @Test
+    void lineAtOffsetFindsTheLineHoldingEachByte() throws IOException {
+        appendLines(0, LINES);
+        try (LogReader reader = new LogReader(logFile())) {
+            long offset = 0;
+            for (int i = 0; i < LINES; i++) {
+                int length = entry(i).length() + 1;
+                if (i % 97 == 0 || i % LogReader.STRIDE < 2 || i % LogReader.STRIDE == LogReader.STRIDE - 1) {
+                    assertEquals(i, reader.lineAtOffset(offset), "start of " + i);
+                    assertEquals(i, reader.lineAtOffset(offset + length / 2), "middle of " + i);
+                    assertEquals(i, reader.lineAtOffset(offset + length - 1), "newline of " + i);
+                }
+                offset += length;
+            }
+            assertEquals(0, reader.lineAtOffset(-1));
+            assertEquals(LINES - 1, reader.lineAtOffset(offset));
+            assertEquals(LINES - 1, reader.lineAtOffset(offset + 1_000));
+        }
+    }
+
+    @Test
+    void lineAtTimeFindsTheFirstLineAtOrAfter() throws IOException {
+        appendLines(0, LINES);
+        try (LogReader reader = new LogReader(logFile())) {
+            for (int i : new int[] {0, 1, 700, LogReader.STRIDE - 1, LogReader.STRIDE, LogReader.STRIDE + 1, LINES - 1}) {
+                assertEquals(i, reader.lineAtTime(TIME.plusSeconds(i)), "at " + i);
+                if (i > 0) assertEquals(i, reader.lineAtTime(TIME.plusSeconds(i).minusNanos(1)), "just before " + i);
+            }
+            assertEquals(0, reader.lineAtTime(TIME.minusDays(1))); // before the log starts
+            assertEquals(LINES - 1, reader.lineAtTime(TIME.plusSeconds(LINES + 60))); // past its end
+        }
+    }
+
+    // Lines written while the reader is open show up on refresh(); one still being written
+    // (no newline yet) is left out until it is complete, even when a page asks for it.
+    @Test
+    void readerFollowsAGrowingLog() throws IOException {
+        appendLines(0, 10);
+        try (LogReader reader = new LogReader(logFile())) {
+            assertEquals(10, reader.getLineCount());
+            appendLines(10, LogReader.STRIDE + 20);
+            assertEquals(10, reader.getLineCount()); // not until refresh()
+            assertEquals(LogReader.STRIDE + 20, reader.refresh());
+
+            String partial = entry(LogReader.STRIDE + 20);
+            append(partial.substring(0, 15));
+            assertEquals(LogReader.STRIDE + 20, reader.refresh());
+            assertEquals(entries(LogReader.STRIDE, LogReader.STRIDE + 20), reader.tail(20).getLines());
+            assertEquals(entries(LogReader.STRIDE + 15, LogReader.STRIDE + 20), reader.readLines(LogReader.STRIDE + 15, 10));
+
+            append(partial.substring(15) + "\r\n"); // \r\n endings read the same
+            appendLines(LogReader.STRIDE + 21, 3 * LogReader.STRIDE);
+            LogPage tail = reader.tail(LogReader.STRIDE + 5);
+            assertEquals(3 * LogReader.STRIDE, tail.getTotalLines());
+            assertEquals(entries(2 * LogReader.STRIDE - 5, 3 * LogReader.STRIDE), tail.getLines());
+            assertEquals(entries(LogReader.STRIDE + 19, LogReader.STRIDE + 22), reader.readLines(LogReader.STRIDE + 19, 3));
+            assertEquals(3 * LogReader.STRIDE - 1, reader.lineAtTime(TIME.plusSeconds(3 * LogReader.STRIDE - 1)));
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package bank;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogSegmentsTest {
+    private static final int SEGMENT_BYTES = 256;
+    private static final LocalDateTime TIME = LocalDateTime.of(2026, 3, 1, 10, 0);
+
+    @TempDir
+    File dir;
+
+    @AfterEach
+    void resetSegments() {
+        System.clearProperty("bank.log.segmentBytes");
+        System.clearProperty("bank.log.rollDaily");
+        System.clearProperty("bank.log.retentionBytes");
+    }
+
+    private File logFile() {
+        return new File(dir, "transactions.log");
+    }
+
+    // a writer rolling every SEGMENT_BYTES, keeping retentionBytes of compressed segments
+    private LogSegments writer(long retentionBytes) {
+        System.setProperty("bank.log.segmentBytes", String.valueOf(SEGMENT_BYTES));
+        System.setProperty("bank.log.rollDaily", "false");
+        System.setProperty("bank.log.retentionBytes", String.valueOf(retentionBytes));
+        return LogSegments.forWriter(logFile(), 0);
+    }
+
+    // entry i: a deposit into the account with sequence 1 + i % 3, all the same length
+    private static String entry(int i) {
+        return TIME.plusSeconds(i) + ".000 - Deposit to " + BlockAccountNumberAllocator.format(1 + i % 3)
+                + " amount " + String.format("%05d", i);
+    }
+
+    private void append(LogSegments log, List<String> written, int count) throws IOException {
+        for (int k = 0; k < count; k++) {
+            String line = entry(written.size());
+            log.rollIfDue(TIME.plusSeconds(written.size()));
+            Files.write(logFile().toPath(), (line + "\n").getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            written.add(line);
+        }
+    }
+
+    @Test
+    void rollsAtTheSizeThreshold() throws IOException {
+        LogSegments log = writer(0);
+        List<String> written = new ArrayList<>();
+        append(log, written, 40);
+        log.awaitCompression();
+
+        int lineBytes = entry(0).length() + 1;
+        LogSegments.View view = log.view();
+        assertTrue(view.closed.size() >= 5, "closed " + view.closed.size());
+        long base = 0, lines = 0;
+        for (LogSegments.Segment s : view.closed) {
+            assertEquals(base, s.base);
+            assertTrue(s.bytes >= SEGMENT_BYTES && s.bytes - lineBytes < SEGMENT_BYTES, "segment of " + s.bytes);
+            assertTrue(s.isCompressed(), s.file);
+            assertEquals(s.bytes / lineBytes, s.lines);
+            assertTrue(new File(dir, s.file).exists(), s.file);
+            assertFalse(new File(dir, s.file.substring(0, s.file.length() - 3)).exists(), s.file);
+            base = s.end();
+            lines += s.lines;
+        }
+        assertEquals(base, view.activeBase);
+        assertEquals(written.size() - lines, logFile().length() / lineBytes);
+
+        // a reader sees the same list through the manifest
+        LogSegments.View read = LogSegments.forReader(logFile(), 0).view();
+        assertEquals(view.closed.size(), read.closed.size());
+        assertEquals(view.activeBase, read.activeBase);
+    }
+
+    @Test
+    void readerReadsAcrossCompressedSegments() throws IOException {
+        LogSegments log = writer(0);
+        List<String> written = new ArrayList<>();
+        append(log, written, 12);
+        log.awaitCompression();
+        append(log, written, 12); // the newest closed segment may still be plain
+
+        try (LogReader reader = new LogReader(logFile().toPath())) {
+            assertEquals(written.size(), reader.getLineCount());
+            assertEquals(written, reader.readLines(0, written.size()));
+            assertEquals(written.subList(3, 17), reader.readLines(3, 14));
+            LogSegments.Segment first = log.view().closed.get(0);
+            assertEquals(first.bytes / (entry(0).length() + 1), reader.lineAtOffset(first.end()));
+            assertEquals(written.subList(20, 24), reader.tail(4).getLines());
+        }
+        log.awaitCompression(); // before the directory is removed
+    }
+
+    // Retention deletes segments a statement index and a log reader still point into: both
+    // keep working, reading only what is left.
+    @Test
+    void retentionDropsSegmentsStillReferenced() throws IOException {
+        LogSegments log = writer(0);
+        List<String> written = new ArrayList<>();
+        append(log, written, 30);
+        log.awaitCompression();
+        String acct = BlockAccountNumberAllocator.format(1);
+
+        try (StatementIndex index = new StatementIndex(logFile().toPath(), new File(dir, "transactions.idx").toPath());
+             LogReader reader = new LogReader(logFile().toPath())) {
+            assertEquals(10, index.statement(acct, null, null).size());
+            assertEquals(written.subList(0, 5), reader.readLines(0, 5));
+            long oldest = log.view().closed.get(0).base;
+
+            // everything compressed beyond one byte goes
+            LogSegments expiring = writer(1);
+            append(expiring, written, 12);
+            expiring.awaitCompression();
+            LogSegments.View view = expiring.view();
+            assertTrue(view.firstBase() > oldest);
+            for (File f : dir.listFiles((d, name) -> name.endsWith(".gz"))) {
+                assertTrue(view.closed.stream().anyMatch(s -> s.file.equals(f.getName())), f.getName());
+            }
+
+            // the reader's line numbers are stale: lines of deleted segments are skipped
+            List<String> stale = reader.readLines(0, written.size());
+            assertTrue(written.containsAll(stale));
+            assertEquals(0, reader.lineAtOffset(oldest));
+
+            long kept = view.closed.stream().mapToLong(s -> s.lines < 0 ? s.bytes / (entry(0).length() + 1) : s.lines)
+                    .sum() + logFile().length() / (entry(0).length() + 1);
+            assertEquals(kept, reader.refresh());
+            List<String> remaining = written.subList(written.size() - (int) kept, written.size());
+            assertEquals(remaining, reader.readLines(0, (int) kept));
+
+            List<String> statement = index.statement(acct, null, null);
+            List<String> expected = new ArrayList<>();
+            for (String line : remaining) {
+                if (line.contains(" " + acct + " ")) expected.add(line);
+            }
+            assertEquals(expected, statement);
+        }
+    }
+}
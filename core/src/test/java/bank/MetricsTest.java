@@ -0,0 +1,80 @@
+package bank;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The instruments are process-wide and other tests use them too, so these look at how far
+// each one moves across the operations here.
+class MetricsTest {
+    private static final String[] COUNTERS = {"deposits", "deposits.failed", "withdrawals", "withdrawals.failed",
+            "transfers", "transfers.failed", "insufficientFunds"};
+
+    @TempDir
+    File dir;
+
+    private static Map<String, Long> counts() {
+        Map<String, Long> out = new HashMap<>();
+        for (String name : COUNTERS) out.put(name, Metrics.counter(name).getValue());
+        out.put("deposit latency", Metrics.histogram("deposit").getCount());
+        out.put("withdraw latency", Metrics.histogram("withdraw").getCount());
+        return out;
+    }
+
+    private static void assertMoved(Map<String, Long> before, Map<String, Long> expected) {
+        Map<String, Long> after = counts();
+        for (String name : before.keySet()) {
+            assertEquals(expected.getOrDefault(name, 0L), after.get(name) - before.get(name), name);
+        }
+    }
+
+    @Test
+    void operationsCountSuccessesAndFailures() {
+        assertTrue(Metrics.ENABLED);
+        BankSystem bank = new BankSystem(new File(dir, "bankdata.dat").getPath(), PersistenceMode.SNAPSHOT);
+        bank.createUser("u1", "User One", "pw", "customer");
+        String from = bank.createAccountForUserCents("u1", "savings", 200_00);
+        String to = bank.createAccountForUserCents("u1", "current", 0);
+
+        Map<String, Long> before = counts();
+        assertTrue(bank.depositCents(from, 10_00));
+        assertTrue(bank.depositCents(to, 5_00));
+        assertFalse(bank.depositCents("no-such-account", 1_00));
+        assertTrue(bank.withdrawCents(from, 10_00));
+        assertFalse(bank.withdrawCents(from, 1_000_00)); // savings keep a minimum balance
+        assertFalse(bank.withdrawCents("no-such-account", 1_00));
+        assertTrue(bank.transferCents(from, to, 50_00));
+        assertFalse(bank.transferCents(to, from, 10_000_00)); // beyond the overdraft
+        Map<String, Long> expected = new HashMap<>();
+        expected.put("deposits", 2L);
+        expected.put("deposits.failed", 1L);
+        expected.put("withdrawals", 1L);
+        expected.put("withdrawals.failed", 2L);
+        expected.put("transfers", 1L);
+        expected.put("transfers.failed", 1L);
+        expected.put("insufficientFunds", 2L);
+        expected.put("deposit latency", 3L);
+        expected.put("withdraw latency", 3L);
+        assertMoved(before, expected);
+    }
+
+    @Test
+    void instrumentsAreRegisteredOncePerName() {
+        assertSame(Metrics.counter("deposits"), Metrics.counter("deposits"));
+        assertSame(Metrics.histogram("deposit"), Metrics.histogram("deposit"));
+        Counter c = Metrics.counter("test.counter");
+        long start = c.getValue();
+        c.increment();
+        c.add(41);
+        assertEquals(start + 42, c.getValue());
+        assertTrue(Metrics.dump().contains("test.counter"));
+    }
+}
@@ -0,0 +1,136 @@
+package bank;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The owner index (account -> user id) and each Customer's own account set describe the same
+// ownership, whatever was created, deleted or reloaded.
+class OwnerIndexTest {
+    @TempDir
+    File dir;
+
+    private String dataFile() {
+        return new File(dir, "bankdata.dat").getPath();
+    }
+
+    // every account listed by a user is owned by that user, and every account has an owner listing it
+    private static Map<String, String> assertConsistent(BankSystem bank) {
+        Map<String, String> owners = new HashMap<>();
+        for (Customer c : bank.getUsers().values()) {
+            for (String acctNo : c.getAccountNumbers()) {
+                assertNotNull(bank.getAccount(acctNo), acctNo + " of " + c.getUserId());
+                assertEquals(c.getUserId(), bank.getOwnerId(acctNo), acctNo);
+                assertEquals(c, bank.getOwner(acctNo), acctNo);
+                owners.put(acctNo, c.getUserId());
+            }
+        }
+        for (String acctNo : bank.getAccounts().keySet()) {
+            String ownerId = bank.getOwnerId(acctNo);
+            assertNotNull(ownerId, acctNo);
+            assertTrue(bank.getUsers().get(ownerId).hasAccount(acctNo), acctNo + " of " + ownerId);
+        }
+        assertEquals(owners.size(), bank.getAccounts().size());
+        return owners;
+    }
+
+    @Test
+    void createAndDelete() {
+        BankSystem bank = new BankSystem(dataFile(), PersistenceMode.SNAPSHOT);
+        bank.createUser("u1", "User One", "pw", "customer");
+        bank.createUser("u2", "User Two", "pw", "customer");
+        String a1 = bank.createAccountForUser("u1", "savings", 10.0);
+        String a2 = bank.createAccountForUser("u1", "current", 0);
+        String b1 = bank.createAccountForUser("u2", "current", 5.0);
+        assertNull(bank.createAccountForUser("nobody", "current", 0));
+        assertEquals(Map.of(a1, "u1", a2, "u1", b1, "u2"), assertConsistent(bank));
+        assertEquals(2, bank.getUsers().get("u1").getAccountCount());
+
+        assertTrue(bank.deleteAccount(a2));
+        assertFalse(bank.deleteAccount(a2));
+        assertNull(bank.getOwnerId(a2));
+        assertFalse(bank.getUsers().get("u1").hasAccount(a2));
+        assertEquals(Map.of(a1, "u1", b1, "u2"), assertConsistent(bank));
+
+        assertTrue(bank.deleteUser("u1")); // takes a1 with it
+        assertNull(bank.getOwnerId(a1));
+        assertNull(bank.getAccount(a1));
+        assertEquals(Map.of(b1, "u2"), assertConsistent(bank));
+
+        // a user re-created under the same id starts without the old accounts
+        bank.createUser("u1", "User One Again", "pw", "customer");
+        assertEquals(0, bank.getUsers().get("u1").getAccountCount());
+        String a3 = bank.createAccountForUser("u1", "current", 0);
+        assertEquals(Map.of(a3, "u1", b1, "u2"), assertConsistent(bank));
+    }
+
+    @Test
+    void survivesASnapshotReload() {
+        survivesAReload(PersistenceMode.SNAPSHOT);
+    }
+
+    @Test
+    void survivesAJournalReplay() {
+        survivesAReload(PersistenceMode.JOURNAL);
+    }
+
+    private void survivesAReload(PersistenceMode mode) {
+        BankSystem bank = new BankSystem(dataFile(), mode);
+        List<String> kept = new ArrayList<>();
+        for (int u = 0; u < 5; u++) {
+            bank.createUser("u" + u, "User " + u, "pw", "customer");
+            for (int i = 0; i < 3; i++) kept.add(bank.createAccountForUserCents("u" + u, "current", i * 1_00));
+        }
+        assertTrue(bank.deleteAccount(kept.remove(1)));
+        assertTrue(bank.deleteUser("u2"));
+        kept.removeIf(acctNo -> bank.getOwnerId(acctNo) == null); // u2's
+        bank.saveState();
+        // changes after the save: replayed from the journal, or in the snapshot each change writes
+        String late = bank.createAccountForUserCents("u4", "savings", 0);
+        assertTrue(bank.deleteAccount(kept.remove(kept.size() - 1)));
+        kept.add(late);
+        bank.flushJournal();
+        Map<String, String> before = assertConsistent(bank);
+        assertEquals(kept.size(), before.size());
+
+        BankSystem reloaded = new BankSystem(dataFile(), mode);
+        assertEquals(before, assertConsistent(reloaded));
+        reloaded.loadState(); // and once more in place
+        assertEquals(before, assertConsistent(reloaded));
+    }
+
+    // Accounts opened for a user while it is deleted either go with it or never appear:
+    // none is left behind with an owner that no longer lists it.
+    @Test
+    void accountsOpenedDuringADeleteAreNotOrphaned() {
+        BankSystem bank = new BankSystem(dataFile(), PersistenceMode.SNAPSHOT);
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            for (int round = 0; round < 50; round++) {
+                String id = "u" + round;
+                bank.createUser(id, "User " + round, "pw", "customer");
+                Thread opener = new Thread(() -> {
+                    for (int i = 0; i < 20; i++) bank.createAccountForUserCents(id, "current", 0);
+                });
+                opener.start();
+                Thread.yield();
+                assertTrue(bank.deleteUser(id));
+                opener.join();
+                assertFalse(bank.getUsers().containsKey(id));
+            }
+        });
+        assertEquals(Map.of(), assertConsistent(bank));
+    }
+}
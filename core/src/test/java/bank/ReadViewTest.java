@@ -0,0 +1,110 @@
+package bank;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// A view taken before a burst of transfers keeps showing the balances committed when it was
+// taken, and every view taken during the burst sees each transfer on both sides or neither.
+class ReadViewTest {
+    private static final int THREADS = 6;
+    private static final int ACCOUNTS = 12;
+    private static final long OPENING = 1000_00;
+
+    @TempDir
+    File dir;
+
+    @BeforeAll
+    static void quietLogging() {
+        TransactionLogger.startAsync(AsyncLogWriter.Durability.BEST_EFFORT, 8192, 512, 50);
+    }
+
+    @AfterAll
+    static void stopLogging() {
+        TransactionLogger.stopAsync();
+    }
+
+    private static Map<String, Long> balancesOf(ReadView view) {
+        Map<String, Long> out = new HashMap<>();
+        view.getAccounts().forEach((acct, state) -> out.put(acct, state.getBalanceCents()));
+        return out;
+    }
+
+    @Test
+    void viewKeepsItsBalancesWhileTransfersRun() throws Exception {
+        BankSystem bank = new BankSystem(new File(dir, "bankdata.dat").getPath(), PersistenceMode.JOURNAL);
+        bank.createUser("mvcc", "View Tester", "pw", "customer");
+        List<String> accts = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accts.add(bank.createAccountForUserCents("mvcc", "current", OPENING + i * 10_00));
+        }
+        // nothing runs yet: what the view holds is what is committed
+        assertTrue(bank.transferCents(accts.get(0), accts.get(1), 5_00));
+        ReadView before = bank.readView();
+        Map<String, Long> committed = new HashMap<>();
+        long total = 0;
+        for (String a : accts) {
+            committed.put(a, bank.getAccount(a).getBalanceCents());
+            total += bank.getAccount(a).getBalanceCents();
+        }
+        assertEquals(committed, balancesOf(before));
+        assertEquals(total, before.getTotalBalanceCents());
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            Thread th = new Thread(() -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                for (int i = 0; i < 3_000; i++) {
+                    String from = accts.get(rnd.nextInt(ACCOUNTS));
+                    String to = accts.get(rnd.nextInt(ACCOUNTS));
+                    if (!from.equals(to)) bank.transferCents(from, to, 1 + rnd.nextInt(50_00));
+                }
+            });
+            writers.add(th);
+            th.start();
+        }
+        Thread reader = new Thread(() -> {
+            long lastVersion = -1;
+            while (running.get()) {
+                ReadView during = bank.readView();
+                assertTrue(during.getVersion() >= lastVersion);
+                lastVersion = during.getVersion();
+                assertEquals(ACCOUNTS, during.getAccounts().size());
+                long sum = 0;
+                for (ReadView.AccountState s : during.getAccounts().values()) sum += s.getBalanceCents();
+                assertEquals(sum, during.getTotalBalanceCents());
+                assertEquals(before.getTotalBalanceCents(), during.getTotalBalanceCents(), "at version " + lastVersion);
+            }
+        });
+        List<Throwable> failures = new ArrayList<>();
+        reader.setUncaughtExceptionHandler((th, e) -> failures.add(e));
+        reader.start();
+        for (Thread th : writers) th.join();
+        running.set(false);
+        reader.join();
+        assertEquals(List.of(), failures);
+
+        // the old view is untouched, the new one matches what is committed now
+        assertEquals(committed, balancesOf(before));
+        assertEquals(total, before.getTotalBalanceCents());
+        ReadView after = bank.readView();
+        assertTrue(after.getVersion() > before.getVersion());
+        for (String a : accts) {
+            assertEquals(bank.getAccount(a).getBalanceCents(), after.getAccount(a).getBalanceCents(), a);
+        }
+        assertEquals(total, after.getTotalBalanceCents());
+    }
+}
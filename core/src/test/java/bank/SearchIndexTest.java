@@ -0,0 +1,98 @@
+package bank;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchIndexTest {
+    @TempDir
+    File dir;
+
+    private BankSystem bank;
+    private String bobs, alices;
+
+    @BeforeEach
+    void users() {
+        bank = new BankSystem(new File(dir, "bankdata.dat").getPath(), PersistenceMode.SNAPSHOT);
+        bank.createUser("alice", "Alice Smith", "pw", "customer");
+        bank.createUser("alan", "Alan Jones", "pw", "employee");
+        bank.createUser("bob", "Bob Alder", "pw", "customer");
+        bobs = bank.createAccountForUserCents("bob", "current", 0);
+        alices = bank.createAccountForUserCents("alice", "savings", 0);
+    }
+
+    // the longest prefix the two account numbers share, so it matches both
+    private String sharedPrefix() {
+        int n = 0;
+        while (bobs.charAt(n) == alices.charAt(n)) n++;
+        assertTrue(n > 0, bobs + " " + alices);
+        return bobs.substring(0, n);
+    }
+
+    // id matches come first, then name words, then account numbers, each sorted; no id twice
+    @Test
+    void prefixMatchesIdsNamesAndAccountNumbers() {
+        assertEquals(List.of("alan", "alice", "bob"), bank.searchUsers("al", null, 10));
+        assertEquals(List.of("alan", "alice", "bob"), bank.searchUsers(" AL", null, 10));
+        assertEquals(List.of("alice"), bank.searchUsers("sm", null, 10));
+        assertEquals(List.of("alice"), bank.searchUsers("alice s", null, 10));
+        assertEquals(List.of(), bank.searchUsers("alice j", null, 10));
+        assertEquals(List.of("bob"), bank.searchUsers(bobs, null, 10));
+        assertEquals(List.of("alice"), bank.searchUsers(alices, null, 10));
+        assertEquals(List.of("bob", "alice"), bank.searchUsers(sharedPrefix(), null, 10)); // bob's was opened first
+        assertEquals(List.of(), bank.searchUsers("zed", null, 10));
+    }
+
+    @Test
+    void roleFilterAndLimit() {
+        assertEquals(List.of("alice", "bob"), bank.searchUsers("al", "customer", 10));
+        assertEquals(List.of("alan"), bank.searchUsers("al", "EMPLOYEE", 10));
+        assertEquals(List.of(), bank.searchUsers(bobs, "employee", 10));
+
+        // everyone by id, the built-in admin included
+        assertEquals(List.of("admin", "alan", "alice", "bob"), bank.searchUsers("", null, 10));
+        assertEquals(List.of("admin", "alan"), bank.searchUsers("", null, 2));
+        assertEquals(List.of("alice"), bank.searchUsers("", "customer", 1));
+        assertEquals(List.of("alan"), bank.searchUsers("al", null, 1));
+        assertEquals(List.of("bob"), bank.searchUsers(sharedPrefix(), null, 1));
+        assertEquals(List.of(), bank.searchUsers("al", null, 0));
+    }
+
+    // Once built, the index follows every change to users and accounts, and is rebuilt
+    // from what a reload brings back.
+    @Test
+    void indexFollowsUsersAndAccounts() {
+        bank.prepareSearch();
+        bank.createUser("carol", "Carol Alvarez", "pw", "customer");
+        String carols = bank.createAccountForUserCents("carol", "current", 0);
+        assertEquals(List.of("alan", "alice", "bob", "carol"), bank.searchUsers("al", null, 10));
+        assertEquals(List.of("carol"), bank.searchUsers(carols, null, 10));
+
+        assertTrue(bank.deleteAccount(carols));
+        assertEquals(List.of(), bank.searchUsers(carols, null, 10));
+        assertEquals(List.of("carol"), bank.searchUsers("carol", null, 10));
+
+        assertTrue(bank.deleteUser("bob")); // with bob's account
+        assertEquals(List.of("alan", "alice", "carol"), bank.searchUsers("al", null, 10));
+        assertEquals(List.of(), bank.searchUsers(bobs, null, 10));
+        assertEquals(List.of(), bank.searchUsers("bob", null, 10));
+
+        // the same id under a new name is found by the new name only
+        bank.createUser("bob", "Robert Young", "pw", "employee");
+        assertEquals(List.of("bob"), bank.searchUsers("you", null, 10));
+        assertEquals(List.of("alan", "alice", "carol"), bank.searchUsers("al", null, 10));
+        assertEquals(List.of("alan", "bob"), bank.searchUsers("", "employee", 10));
+
+        bank.createUser("dave", "Dave Allen", "pw", "customer");
+        bank.loadState();
+        assertEquals(List.of("alan", "alice", "dave", "carol"), bank.searchUsers("al", null, 10)); // "allen" < "alvarez"
+        assertEquals(List.of("alice"), bank.searchUsers(alices, null, 10));
+        assertEquals(List.of("bob"), bank.searchUsers("rob", null, 10));
+    }
+}
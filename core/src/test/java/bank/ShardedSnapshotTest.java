@@ -0,0 +1,191 @@
+package bank;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardedSnapshotTest {
+    @TempDir
+    File dir;
+
+    @AfterEach
+    void resetShards() {
+        System.clearProperty("bank.shards");
+    }
+
+    private String dataFile() {
+        return new File(dir, "bankdata.dat").getPath();
+    }
+
+    private BankSystem open(int shards) {
+        System.setProperty("bank.shards", String.valueOf(shards));
+        return new BankSystem(dataFile(), PersistenceMode.SNAPSHOT);
+    }
+
+    // the files of a count-shard layout in dir, by shard; every generation the write left behind
+    private File[] shardFiles(File dir, int count) {
+        File[] files = new File[count];
+        for (int i = 0; i < count; i++) {
+            String prefix = "bankdata.dat." + i + "of" + count + ".";
+            File[] found = dir.listFiles((d, name) -> name.startsWith(prefix) && !name.endsWith(".tmp"));
+            assertEquals(1, found.length, "shard " + i + " of " + count);
+            files[i] = found[0];
+        }
+        return files;
+    }
+
+    private File[] shardFiles(int count) {
+        return shardFiles(dir, count);
+    }
+
+    private static List<String> populate(BankSystem bank) {
+        List<String> accts = new ArrayList<>();
+        for (int u = 0; u < 10; u++) {
+            bank.createUser("u" + u, "User " + u, "pw" + u, "customer");
+            for (int i = 0; i < 3; i++) {
+                accts.add(bank.createAccountForUserCents("u" + u, i % 2 == 0 ? "savings" : "current", 100_00 * (u + i + 1)));
+            }
+        }
+        return accts;
+    }
+
+    private static void assertSame(BankSystem expected, BankSystem actual, List<String> accts) {
+        for (String a : accts) {
+            Account want = expected.getAccount(a);
+            Account got = actual.getAccount(a);
+            assertNotNull(got, a);
+            assertEquals(want.getBalanceCents(), got.getBalanceCents(), a);
+            assertEquals(want.getAccountType(), got.getAccountType(), a);
+            assertEquals(expected.getOwnerId(a), actual.getOwnerId(a), a);
+        }
+        for (int u = 0; u < 10; u++) assertNotNull(actual.login("u" + u, "pw" + u));
+    }
+
+    @Test
+    void shardedSnapshotReloads() {
+        BankSystem bank = open(4);
+        List<String> accts = populate(bank);
+        bank.saveState();
+        shardFiles(4);
+        assertSame(bank, open(4), accts);
+    }
+
+    @Test
+    void changingTheShardCountRewritesTheLayout() {
+        BankSystem bank = open(4);
+        List<String> accts = populate(bank);
+        bank.saveState();
+
+        BankSystem eight = open(8);
+        eight.saveState();
+        assertEquals(0, dir.listFiles((d, name) -> name.contains("of4")).length);
+        shardFiles(8);
+        assertSame(bank, open(8), accts);
+
+        BankSystem single = open(1);
+        single.saveState();
+        assertEquals(0, dir.listFiles((d, name) -> name.contains("of8")).length);
+        assertSame(bank, open(1), accts);
+    }
+
+    @Test
+    void onlyChangedShardsAreRewritten() throws IOException {
+        BankSystem bank = open(4);
+        List<String> accts = populate(bank);
+        bank.saveState();
+        String changed = accts.get(0);
+        int changedShard = SnapshotStore.shardOf(changed, 4);
+        File[] before = shardFiles(4);
+        byte[][] bytes = new byte[4][];
+        for (int i = 0; i < 4; i++) bytes[i] = Files.readAllBytes(before[i].toPath());
+
+        assertTrue(bank.depositCents(changed, 1_00));
+        File[] after = shardFiles(4); // the replaced generation is gone
+        for (int i = 0; i < 4; i++) {
+            if (i == changedShard) {
+                assertNotEquals(before[i], after[i], "shard " + i);
+                assertFalse(before[i].exists(), "shard " + i);
+            } else {
+                assertEquals(before[i], after[i], "shard " + i);
+                assertArrayEquals(bytes[i], Files.readAllBytes(after[i].toPath()), "shard " + i);
+            }
+        }
+        assertEquals(bank.getAccount(changed).getBalanceCents(), open(4).getAccount(changed).getBalanceCents());
+    }
+
+    @Test
+    void deletedAccountStaysDeleted() {
+        BankSystem bank = open(4);
+        List<String> accts = populate(bank);
+        bank.saveState();
+        BankSystem reloaded = open(4);
+        assertTrue(reloaded.deleteAccount(accts.get(5)));
+        assertNull(reloaded.getAccount(accts.get(5)));
+        assertNull(open(4).getAccount(accts.get(5)));
+    }
+
+    // A process dying after one shard of a write is in place but before the manifest: the
+    // files as they were then must load as the snapshot before the write, both sides of a
+    // transfer between two shards unchanged, and the orphaned shard file is removed.
+    @Test
+    void crashBetweenShardWritesKeepsTheLastCommittedSnapshot() throws IOException {
+        File crashed = new File(dir, "crashed");
+        assertTrue(crashed.mkdir());
+        AtomicBoolean armed = new AtomicBoolean();
+        AtomicBoolean copied = new AtomicBoolean();
+        System.setProperty("bank.shards", "4");
+        BankSystem bank = new BankSystem(dataFile(), PersistenceMode.SNAPSHOT, null, shard -> {
+            if (!armed.get() || copied.getAndSet(true)) return;
+            for (File f : dir.listFiles(File::isFile)) {
+                try {
+                    Files.copy(f.toPath(), new File(crashed, f.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+                } catch (NoSuchFileException e) {
+                    // a temp file renamed meanwhile
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }, UnaryOperator.identity());
+        List<String> accts = populate(bank);
+        bank.saveState();
+        String from = accts.get(1); // a current account
+        String to = accts.stream()
+                .filter(a -> SnapshotStore.shardOf(a, 4) != SnapshotStore.shardOf(from, 4))
+                .findFirst().orElseThrow();
+        long fromBefore = bank.getAccount(from).getBalanceCents();
+        long toBefore = bank.getAccount(to).getBalanceCents();
+
+        armed.set(true);
+        assertTrue(bank.transferCents(from, to, 10_00));
+        armed.set(false);
+        assertTrue(copied.get());
+
+        BankSystem restarted = new BankSystem(new File(crashed, "bankdata.dat").getPath(), PersistenceMode.SNAPSHOT);
+        assertEquals(fromBefore, restarted.getAccount(from).getBalanceCents());
+        assertEquals(toBefore, restarted.getAccount(to).getBalanceCents());
+        shardFiles(crashed, 4);
+
+        BankSystem reloaded = open(4);
+        assertEquals(fromBefore - 10_00, reloaded.getAccount(from).getBalanceCents());
+        assertEquals(toBefore + 10_00, reloaded.getAccount(to).getBalanceCents());
+    }
+}
@@ -0,0 +1,126 @@
+package bank;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnapshotFileTest {
+    @TempDir
+    File dir;
+
+    private String dataFile() {
+        return new File(dir, "bankdata.dat").getPath();
+    }
+
+    @Test
+    void everyFieldSurvivesAReload() {
+        BankSystem bank = new BankSystem(dataFile(), PersistenceMode.SNAPSHOT);
+        bank.createUser("u1", "User One", "secret", "customer");
+        String savings = bank.createAccountForUserCents("u1", "savings", 250_00);
+        String current = bank.createAccountForUserCents("u1", "current", 10_00);
+        assertTrue(bank.withdrawCents(current, 300_00)); // into the overdraft
+        bank.saveState();
+        assertTrue(SnapshotFile.isSnapshot(new File(dataFile())));
+
+        BankSystem reloaded = new BankSystem(dataFile(), PersistenceMode.SNAPSHOT);
+        Customer c = reloaded.login("u1", "secret");
+        assertNotNull(c);
+        assertEquals("User One", c.getName());
+        assertEquals("customer", c.getRole());
+        assertTrue(c.getAccountNumbers().contains(savings));
+        assertTrue(c.getAccountNumbers().contains(current));
+
+        SavingsAccount s = (SavingsAccount) reloaded.getAccount(savings);
+        assertEquals(250_00, s.getBalanceCents());
+        assertEquals(0.04, s.getInterestRate());
+        CurrentAccount a = (CurrentAccount) reloaded.getAccount(current);
+        assertEquals(-290_00, a.getBalanceCents());
+        assertEquals(500_00, a.getOverdraftLimitCents());
+        assertEquals("u1", reloaded.getOwnerId(current));
+    }
+
+    // an account's record is only decoded (and its checksum checked) when the account is used
+    @Test
+    void accountsAreDecodedOnFirstUse() throws IOException {
+        BankSystem bank = new BankSystem(dataFile(), PersistenceMode.SNAPSHOT);
+        bank.createUser("u1", "User One", "pw", "customer");
+        String first = bank.createAccountForUserCents("u1", "savings", 100_00);
+        String second = bank.createAccountForUserCents("u1", "current", 200_00);
+        bank.saveState();
+        corruptBalance(second, "User One");
+
+        BankSystem reloaded = new BankSystem(dataFile(), PersistenceMode.SNAPSHOT);
+        assertEquals(100_00, reloaded.getAccount(first).getBalanceCents());
+        assertNull(reloaded.getAccount(second));
+    }
+
+    // flips a bit of the balance in the account's record, the last place its number appears
+    private void corruptBalance(String accountNumber, String owner) throws IOException {
+        Path file = Paths.get(dataFile());
+        byte[] bytes = Files.readAllBytes(file);
+        byte[] number = accountNumber.getBytes(StandardCharsets.UTF_8);
+        int at = -1;
+        for (int i = 0; i + number.length <= bytes.length; i++) {
+            if (Arrays.equals(bytes, i, i + number.length, number, 0, number.length)) at = i;
+        }
+        assertTrue(at > 0);
+        // number, type byte, owner (length-prefixed), then the balance
+        int balance = at + number.length + 1 + 2 + owner.getBytes(StandardCharsets.UTF_8).length;
+        bytes[balance + 7] ^= 1;
+        Files.write(file, bytes);
+    }
+
+    @Test
+    void deletedAccountIsNotLoadedAgain() {
+        BankSystem bank = new BankSystem(dataFile(), PersistenceMode.SNAPSHOT);
+        bank.createUser("u1", "User One", "pw", "customer");
+        String acct = bank.createAccountForUserCents("u1", "savings", 100_00);
+        bank.saveState();
+
+        BankSystem reloaded = new BankSystem(dataFile(), PersistenceMode.SNAPSHOT);
+        assertTrue(reloaded.deleteAccount(acct));
+        assertNull(reloaded.getAccount(acct));
+        assertFalse(reloaded.readView().getAccounts().containsKey(acct));
+        assertNull(new BankSystem(dataFile(), PersistenceMode.SNAPSHOT).getAccount(acct));
+    }
+
+    @Test
+    void legacySerializedFileIsConverted() throws IOException {
+        Map<String, Customer> users = new HashMap<>();
+        Map<String, Account> accounts = new HashMap<>();
+        Customer c = new Customer("old", "Old Customer", "pw", "customer");
+        c.addAccount("LEGACY01");
+        users.put(c.getUserId(), c);
+        accounts.put("LEGACY01", new SavingsAccount("LEGACY01", c.getName(), 1_234_56, 0.02));
+        File legacy = new File(dir, "bankdata.ser");
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(legacy))) {
+            out.writeObject(users);
+            out.writeObject(accounts);
+            out.writeLong(0);
+        }
+
+        assertEquals(1, SnapshotConverter.convert(legacy, new File(dataFile())));
+        BankSystem bank = new BankSystem(dataFile(), PersistenceMode.SNAPSHOT);
+        assertEquals(1_234_56, bank.getAccount("LEGACY01").getBalanceCents());
+        assertEquals(0.02, ((SavingsAccount) bank.getAccount("LEGACY01")).getInterestRate());
+        assertEquals("old", bank.getOwnerId("LEGACY01"));
+        assertNotNull(bank.login("old", "pw"));
+    }
+}
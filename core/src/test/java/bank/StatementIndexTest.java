@@ -0,0 +1,162 @@
+package bank;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StatementIndexTest {
+    private static final LocalDateTime TIME = LocalDateTime.of(2026, 3, 1, 10, 0);
+    private static final String[] ACCOUNTS = {
+            BlockAccountNumberAllocator.format(21), BlockAccountNumberAllocator.format(22), "cafe0123"};
+
+    @TempDir
+    File dir;
+
+    @AfterEach
+    void resetWindow() {
+        StatementIndex.windowBytes = 32L << 20;
+        System.clearProperty("bank.log.segmentBytes");
+        System.clearProperty("bank.log.rollDaily");
+    }
+
+    private Path logFile() {
+        return new File(dir, "transactions.log").toPath();
+    }
+
+    private Path indexFile() {
+        return new File(dir, "transactions.idx").toPath();
+    }
+
+    // entry i: a transfer, deposit or withdrawal, cycling over the accounts, i seconds after TIME
+    private static String entry(int i) {
+        long millis = TIME.plusSeconds(i).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        String a = ACCOUNTS[i % ACCOUNTS.length], b = ACCOUNTS[(i + 1) % ACCOUNTS.length];
+        EventType type = i % 3 == 0 ? EventType.TRANSFER : i % 3 == 1 ? EventType.DEPOSIT : EventType.WITHDRAWAL;
+        return new TransactionEvent(millis, type, 0, a, type == EventType.TRANSFER ? b : "", 1_00L * i, 50_00L + i,
+                70_00L + i, "Owner " + i).toString();
+    }
+
+    private void append(LogSegments log, List<String> written, int count) throws IOException {
+        for (int k = 0; k < count; k++) {
+            String line = entry(written.size());
+            if (log != null) log.rollIfDue(TIME.plusSeconds(written.size()));
+            Files.write(logFile(), (line + "\n").getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            written.add(line);
+        }
+    }
+
+    private static List<String> linesOf(List<String> written, String acct) {
+        List<String> out = new ArrayList<>();
+        for (String line : written) {
+            if (line.contains(" " + acct + " ") || line.contains(" " + acct + ".")) out.add(line);
+        }
+        return out;
+    }
+
+    // Windows of a few lines and segments of a few windows: entries straddle both, and the
+    // index is updated between rolls as well as across several at once.
+    @Test
+    void statementsSpanWindowsAndRolledSegments() throws IOException {
+        StatementIndex.windowBytes = 300;
+        System.setProperty("bank.log.segmentBytes", "1000");
+        System.setProperty("bank.log.rollDaily", "false");
+        LogSegments log = LogSegments.forWriter(logFile().toFile(), 0);
+        List<String> written = new ArrayList<>();
+        append(log, written, 20);
+
+        try (StatementIndex index = new StatementIndex(logFile(), indexFile())) {
+            for (String acct : ACCOUNTS) assertEquals(linesOf(written, acct), index.statement(acct, null, null), acct);
+            append(log, written, 60);
+            log.awaitCompression();
+            append(log, written, 7); // the newest segment may still be plain
+            assertTrue(log.view().closed.size() >= 4);
+            for (String acct : ACCOUNTS) assertEquals(linesOf(written, acct), index.statement(acct, null, null), acct);
+
+            // bounds: [from, to) by entry time
+            List<String> between = new ArrayList<>();
+            for (String line : linesOf(written, ACCOUNTS[0])) {
+                LocalDateTime t = LogReader.timeOf(line);
+                if (!t.isBefore(TIME.plusSeconds(10)) && t.isBefore(TIME.plusSeconds(50))) between.add(line);
+            }
+            assertEquals(between, index.statement(ACCOUNTS[0], TIME.plusSeconds(10), TIME.plusSeconds(50)));
+        }
+        log.awaitCompression();
+        // reopened: postings come from the file, no rescan
+        try (StatementIndex index = new StatementIndex(logFile(), indexFile())) {
+            assertEquals(ACCOUNTS.length, index.getAccountCount());
+            for (String acct : ACCOUNTS) assertEquals(linesOf(written, acct), index.statement(acct, null, null), acct);
+        }
+    }
+
+    // A crash after appending index records but before the header covering them is written:
+    // on open they are dropped, and the entries they stood for are indexed once again.
+    @Test
+    void recordsPastIndexedUpToAreDiscarded() throws IOException {
+        List<String> written = new ArrayList<>();
+        append(null, written, 12);
+        long indexed;
+        try (StatementIndex index = new StatementIndex(logFile(), indexFile())) {
+            indexed = index.update();
+        }
+        long indexBytes = Files.size(indexFile());
+
+        append(null, written, 6);
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(indexFile().toFile(), true))) {
+            String acct = ACCOUNTS[0];
+            for (long offset = indexed; offset < indexed + 3 * 100; offset += 100) {
+                out.writeByte(acct.length());
+                out.writeBytes(acct);
+                out.writeLong(offset);
+                out.writeLong(0);
+            }
+            out.write(new byte[] {5, '1', '2'}); // and a torn one
+        }
+
+        try (StatementIndex index = new StatementIndex(logFile(), indexFile())) {
+            assertEquals(indexBytes, Files.size(indexFile()));
+            for (String acct : ACCOUNTS) assertEquals(linesOf(written, acct), index.statement(acct, null, null), acct);
+        }
+    }
+
+    // Names, user ids and amounts in the account number formats are not account numbers.
+    @Test
+    void onlyAccountFieldsAreIndexed() throws IOException {
+        String acct = ACCOUNTS[0];
+        List<String> lines = List.of(
+                TIME + " - User created: deadbeef",
+                TIME + " - " + new TransactionEvent(0, EventType.ACCOUNT_OPENED, 'C', "cafe0123", "", 0, 10_00, 0,
+                        "deadbeef").getMessage(),
+                TIME + " - Deposit: deadbeef deposited 1.00 to " + acct + ". New bal=2.00",
+                TIME + " - Deposit: " + BlockAccountNumberAllocator.format(99) + " deposited "
+                        + BlockAccountNumberAllocator.format(98) + ".00 to " + acct + ". New bal=3.00",
+                TIME + " - Account deleted: cafe0123. Final bal=10.00",
+                TIME + " - User deleted: deadbeef");
+        Files.write(logFile(), lines, StandardCharsets.UTF_8);
+
+        try (StatementIndex index = new StatementIndex(logFile(), indexFile())) {
+            assertEquals(List.of(), index.statement("deadbeef", null, null));
+            assertEquals(List.of(), index.statement(BlockAccountNumberAllocator.format(99), null, null));
+            assertEquals(List.of(), index.statement(BlockAccountNumberAllocator.format(98), null, null));
+            assertEquals(lines.subList(2, 4), index.statement(acct, null, null));
+            assertEquals(List.of(lines.get(1), lines.get(4)), index.statement("cafe0123", null, null));
+            assertEquals(2, index.getAccountCount());
+        }
+    }
+}
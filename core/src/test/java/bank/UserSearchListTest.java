@@ -0,0 +1,106 @@
+package bank;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.ListModel;
+import javax.swing.SwingUtilities;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Queries are answered by futures the test completes itself, in whatever order it likes.
+class UserSearchListTest {
+    private final List<CompletableFuture<List<String>>> queries = new ArrayList<>();
+    private final List<Integer> limits = new ArrayList<>();
+
+    @BeforeAll
+    static void headless() {
+        System.setProperty("java.awt.headless", "true");
+    }
+
+    private UserSearchList newList() throws Exception {
+        UserSearchList[] list = new UserSearchList[1];
+        SwingUtilities.invokeAndWait(() -> list[0] = new UserSearchList((prefix, limit) -> {
+            CompletableFuture<List<String>> f = new CompletableFuture<>();
+            queries.add(f);
+            limits.add(limit);
+            return f;
+        }));
+        return list[0];
+    }
+
+    private static <T extends Component> T find(Container in, Class<T> type) {
+        for (Component c : in.getComponents()) {
+            if (type.isInstance(c)) return type.cast(c);
+            if (c instanceof Container) {
+                T found = find((Container) c, type);
+                if (found != null) return found;
+            }
+        }
+        return null;
+    }
+
+    // what the list shows once the EDT has run everything queued so far
+    private static List<String> shown(UserSearchList list) throws Exception {
+        List<String> out = new ArrayList<>();
+        SwingUtilities.invokeAndWait(() -> {
+            ListModel<?> model = find(list, JList.class).getModel();
+            for (int i = 0; i < model.getSize(); i++) out.add((String) model.getElementAt(i));
+        });
+        return out;
+    }
+
+    // the status line: the one label directly on the panel (the other labels the filter box)
+    private static String status(UserSearchList list) throws Exception {
+        String[] text = new String[1];
+        SwingUtilities.invokeAndWait(() -> {
+            for (Component c : list.getComponents()) {
+                if (c instanceof JLabel) text[0] = ((JLabel) c).getText();
+            }
+        });
+        return text[0];
+    }
+
+    // The answer to an older query arriving last, or failing, never replaces a newer one.
+    @Test
+    void olderAnswersNeverOverwriteNewerOnes() throws Exception {
+        UserSearchList list = newList();
+        SwingUtilities.invokeAndWait(list::refresh);
+        SwingUtilities.invokeAndWait(list::refresh);
+        SwingUtilities.invokeAndWait(list::refresh);
+        assertEquals(3, queries.size());
+        assertEquals(UserSearchList.LIMIT + 1, limits.get(0)); // one more, to tell when there are more
+
+        queries.get(2).complete(List.of("carol", "dave"));
+        assertEquals(List.of("carol", "dave"), shown(list));
+        queries.get(0).complete(List.of("alice"));
+        queries.get(1).completeExceptionally(new IllegalStateException("stale"));
+        assertEquals(List.of("carol", "dave"), shown(list));
+        assertTrue(status(list).startsWith("2 users"), status(list));
+
+        // the newest query failing leaves the results in place and says so
+        SwingUtilities.invokeAndWait(list::refresh);
+        queries.get(3).completeExceptionally(new IllegalStateException("pool full"));
+        assertEquals(List.of("carol", "dave"), shown(list));
+        assertEquals("Search failed: pool full", status(list));
+    }
+
+    @Test
+    void resultsAreCutAtTheLimit() throws Exception {
+        UserSearchList list = newList();
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i <= UserSearchList.LIMIT; i++) ids.add(String.format("user%06d", i));
+        SwingUtilities.invokeAndWait(list::refresh);
+        queries.get(0).complete(ids);
+        assertEquals(ids.subList(0, UserSearchList.LIMIT), shown(list));
+        assertTrue(status(list).startsWith(String.format("First %,d matches", UserSearchList.LIMIT)), status(list));
+    }
+}